@@ -1,16 +1,47 @@
 package com.christianmol.booktracker;
 
+import com.christianmol.booktracker.catalog.TitleIndex;
+import com.christianmol.booktracker.changelog.ChangeLog;
 import com.christianmol.booktracker.database.DatabaseManager;
+import com.christianmol.booktracker.database.MaintenanceService;
+import com.christianmol.booktracker.database.ShardedDatabaseManager;
+import com.christianmol.booktracker.database.StorageProfile;
+import com.christianmol.booktracker.database.TrackerDatabase;
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Scanner;
 
 public class Main {
+    // Used by the appcds build profile: run startup once, then exit so the JVM dumps its class archive
+    private static final String EXIT_AFTER_STARTUP = "--exit-after-startup";
+    // Converts an existing database to incremental auto-vacuum; the full VACUUM blocks until done
+    private static final String ENABLE_COMPACTION = "--enable-compaction";
+    private static final double DEFAULT_MERGE_SIMILARITY = 0.8;
+
     public static void main(String[] args) {
-        DatabaseManager dbManager = null;
+        StartupTimer timer = new StartupTimer();
+        TrackerDatabase dbManager = null;
+        ChangeLog changeLog = null;
+        MaintenanceService maintenance = null;
         Scanner scanner = null;
         
         try {
             System.out.println("Starting BookTracker Application...");
-            dbManager = new DatabaseManager();
+            StorageProfile profile = StorageProfile.load(new File(StorageProfile.DEFAULT_PROPERTIES_FILE), args);
+            boolean sharded = profile.getShardCount() > 0;
+            dbManager = sharded ? new ShardedDatabaseManager(profile) : new DatabaseManager(profile);
+            timer.mark("connect");
+            
+            try {
+                // Kept next to the database, so each database gets its own log
+                File databaseDirectory = new File(profile.getDatabasePath()).getAbsoluteFile().getParentFile();
+                changeLog = new ChangeLog(new File(databaseDirectory, "changelog"));
+                dbManager.setChangeLog(changeLog);
+            } catch (Exception e) {
+                System.err.println("Change log unavailable, continuing without it: " + e.getMessage());
+            }
+            timer.mark("change log");
             
             try {
                 dbManager.initializeDatabase();
@@ -20,6 +51,31 @@ public class Main {
                 e.printStackTrace();
                 System.out.println("Continuing with application startup despite initialization error.");
             }
+            timer.mark("schema");
+            
+            if (sharded) {
+                System.out.println("Using " + profile.getShardCount() + " shard(s); database maintenance "
+                        + "is not available for sharded storage.");
+            } else {
+                try {
+                    maintenance = new MaintenanceService(new File(profile.getDatabasePath()));
+                    if (Arrays.asList(args).contains(ENABLE_COMPACTION)) {
+                        maintenance.enableIncrementalVacuum();
+                    } else if (!maintenance.isIncrementalVacuumEnabled()) {
+                        System.out.println("Compaction is off for this database; start once with "
+                                + ENABLE_COMPACTION + " to turn it on.");
+                    }
+                    // Backup every 6 hours, compact every 30 minutes, analyze hourly, check integrity daily
+                    maintenance.start(360, 30, 60, 1440);
+                } catch (Exception e) {
+                    System.err.println("Database maintenance unavailable: " + e.getMessage());
+                }
+            }
+            timer.mark("maintenance");
+            System.out.println("Startup " + timer);
+            if (Arrays.asList(args).contains(EXIT_AFTER_STARTUP)) {
+                return;
+            }
         
             scanner = new Scanner(System.in);
             boolean running = true;
@@ -37,9 +93,15 @@ public class Main {
                 System.out.println("7. Get total pages read by all users");
                 System.out.println("8. Get number of users who read multiple books");
                 System.out.println("9. View database structure");
-                System.out.println("10. Exit");
+                System.out.println("10. Show books that readers of a book also read");
+                System.out.println("11. Show database maintenance status");
+                System.out.println("12. Show reading statistics by age band and gender");
+                System.out.println("13. Rename book titles from a mapping file");
+                System.out.println("14. Delete reading habits listed in a file");
+                System.out.println("15. Suggest titles that may name the same book");
+                System.out.println("16. Exit");
                 
-                System.out.print("\nEnter your choice (1-10): ");
+                System.out.print("\nEnter your choice (1-16): ");
                 String choice = scanner.nextLine();
                 
                 try {
@@ -58,9 +120,9 @@ public class Main {
                             break;
                             
                         case "2":
-                            System.out.println("Enter user ID (1-66) or name to view reading habits:");
+                            System.out.println("Enter user ID or name to view reading habits:");
                             System.out.println("Note: You can enter either:");
-                            System.out.println("- A number between 1-66 (user ID)");
+                            System.out.println("- A user ID (number)");
                             System.out.println("- A user's name (partial name will work)");
                             String userInput = scanner.nextLine();
                             
@@ -108,6 +170,49 @@ public class Main {
                             break;
                             
                         case "10":
+                            System.out.print("Enter book title: ");
+                            String readTitle = scanner.nextLine();
+                            
+                            dbManager.getBooksAlsoRead(readTitle);
+                            break;
+                            
+                        case "11":
+                            if (maintenance != null) {
+                                System.out.println(maintenance.getStatus());
+                            } else {
+                                System.out.println("Database maintenance is not running.");
+                            }
+                            break;
+                            
+                        case "12":
+                            dbManager.getCohortStatistics();
+                            break;
+                            
+                        case "13":
+                            if (dbManager instanceof DatabaseManager) {
+                                bulkRename((DatabaseManager) dbManager, scanner);
+                            } else {
+                                System.out.println("Bulk cleanup is not available for sharded storage.");
+                            }
+                            break;
+                            
+                        case "14":
+                            if (dbManager instanceof DatabaseManager) {
+                                bulkDelete((DatabaseManager) dbManager, scanner);
+                            } else {
+                                System.out.println("Bulk cleanup is not available for sharded storage.");
+                            }
+                            break;
+                            
+                        case "15":
+                            if (dbManager instanceof DatabaseManager) {
+                                suggestTitleMerges((DatabaseManager) dbManager, scanner);
+                            } else {
+                                System.out.println("Title merge suggestions are not available for sharded storage.");
+                            }
+                            break;
+                            
+                        case "16":
                             running = false;
                             System.out.println("Exiting the application...");
                             break;
@@ -128,9 +233,80 @@ public class Main {
             if (scanner != null) {
                 scanner.close();
             }
+            if (maintenance != null) {
+                maintenance.close();
+            }
             if (dbManager != null) {
                 dbManager.close();
             }
+            if (changeLog != null) {
+                changeLog.close();
+            }
+        }
+    }
+
+    /**
+     * Shows how many records a mapping file would rename and applies it once confirmed.
+     */
+    private static void bulkRename(DatabaseManager dbManager, Scanner scanner) {
+        System.out.print("Enter mapping file (one 'old title<TAB>new title' per line): ");
+        File mappingFile = new File(scanner.nextLine().trim());
+        if (dbManager.bulkChangeBookTitles(mappingFile, true) > 0 && confirm(scanner)) {
+            dbManager.bulkChangeBookTitles(mappingFile, false);
+        }
+    }
+
+    /**
+     * Shows how many of the habit IDs in a file exist and deletes them once confirmed.
+     */
+    private static void bulkDelete(DatabaseManager dbManager, Scanner scanner) {
+        System.out.print("Enter habit ID file (one ID per line): ");
+        File idFile = new File(scanner.nextLine().trim());
+        if (dbManager.bulkDeleteReadingHabits(idFile, true) > 0 && confirm(scanner)) {
+            dbManager.bulkDeleteReadingHabits(idFile, false);
+        }
+    }
+
+    /**
+     * Lists pairs of stored titles at least as similar as the entered threshold.
+     */
+    private static void suggestTitleMerges(DatabaseManager dbManager, Scanner scanner) {
+        System.out.print("Enter minimum similarity, above 0 and at most 1 (blank for " + DEFAULT_MERGE_SIMILARITY + "): ");
+        String input = scanner.nextLine().trim();
+        double minSimilarity = input.isEmpty() ? DEFAULT_MERGE_SIMILARITY : Double.parseDouble(input);
+        List<TitleIndex.MergeSuggestion> suggestions = dbManager.suggestTitleMerges(minSimilarity);
+        if (suggestions.isEmpty()) {
+            System.out.println("No similar titles found");
+            return;
+        }
+        for (TitleIndex.MergeSuggestion suggestion : suggestions) {
+            System.out.println("  " + suggestion);
+        }
+        System.out.println(suggestions.size() + " suggestion(s); use option 3 to rename a title onto its match");
+    }
+
+    private static boolean confirm(Scanner scanner) {
+        System.out.print("Apply these changes? (y/n): ");
+        return scanner.nextLine().trim().equalsIgnoreCase("y");
+    }
+
+    /**
+     * Collects the duration of each startup phase, measured from the start of main.
+     */
+    private static final class StartupTimer {
+        private final long start = System.nanoTime();
+        private final StringBuilder phases = new StringBuilder();
+        private long last = start;
+
+        void mark(String phase) {
+            long now = System.nanoTime();
+            phases.append(phases.length() == 0 ? "" : ", ").append(phase).append(' ').append((now - last) / 1_000_000).append(" ms");
+            last = now;
+        }
+
+        @Override
+        public String toString() {
+            return "took " + (last - start) / 1_000_000 + " ms (" + phases + ")";
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,54 @@
+package com.christianmol.booktracker.analytics;
+
+import com.christianmol.booktracker.util.IntIntHashMap;
+
+/**
+ * Running totals for one cohort. Accumulators built over different users merge by
+ * addition, and a reader's contribution can be taken out again when their history
+ * changes.
+ */
+final class CohortAccumulator {
+    int users;
+    int readers;
+    long habits;
+    long pages;
+    // Sum of the distinct books of every reader, for the mean
+    long readerBooks;
+    final QuantileSketch pagesPerHabit = new QuantileSketch();
+    final QuantileSketch booksPerReader = new QuantileSketch();
+    final QuantileSketch pagesPerReader = new QuantileSketch();
+    // Book number to the number of readers in this cohort who read it
+    final IntIntHashMap titleReaders = new IntIntHashMap();
+
+    void addHabit(int pagesRead) {
+        habits++;
+        pages += pagesRead;
+        pagesPerHabit.add(pagesRead);
+    }
+
+    void addReader(int books, long readerPages) {
+        readers++;
+        readerBooks += books;
+        booksPerReader.add(books);
+        pagesPerReader.add(readerPages);
+    }
+
+    void removeReader(int books, long readerPages) {
+        readers--;
+        readerBooks -= books;
+        booksPerReader.remove(books);
+        pagesPerReader.remove(readerPages);
+    }
+
+    void merge(CohortAccumulator other) {
+        users += other.users;
+        readers += other.readers;
+        habits += other.habits;
+        pages += other.pages;
+        readerBooks += other.readerBooks;
+        pagesPerHabit.merge(other.pagesPerHabit);
+        booksPerReader.merge(other.booksPerReader);
+        pagesPerReader.merge(other.pagesPerReader);
+        titleReaders.addAll(other.titleReaders);
+    }
+}
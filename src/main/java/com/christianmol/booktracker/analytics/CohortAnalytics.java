@@ -0,0 +1,407 @@
+package com.christianmol.booktracker.analytics;
+
+import com.christianmol.booktracker.catalog.TitleNormalizer;
+import com.christianmol.booktracker.util.IntIntHashMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Reading statistics broken down by age band and gender: pages read, books per reader
+ * and the most widely read titles, with percentiles from {@link QuantileSketch}es.
+ *
+ * <p>Users and habits are held in primitive arrays. The initial build groups the habits
+ * by user and scans the users as a fork-join computation, each task filling one
+ * {@link CohortAccumulator} per cohort and merging them on the way back up. Afterwards
+ * {@link #addUser(int, int, String)} and {@link #addHabit(int, String, int)} keep the
+ * statistics current: a reader whose history changes is taken out of their cohort and
+ * added back with the new totals.</p>
+ */
+public class CohortAnalytics {
+    private static final int USERS_PER_TASK = 1024;
+    private static final int[] AGE_BAND_STARTS = {0, 18, 25, 35, 45, 55, 65};
+    private static final String[] AGE_BANDS = {"<18", "18-24", "25-34", "35-44", "45-54", "55-64", "65+", "unknown"};
+    private static final int UNKNOWN_AGE_BAND = AGE_BANDS.length - 1;
+    private static final double[] PERCENTILES = {0.5, 0.9, 0.99};
+
+    public enum Gender {
+        MALE, FEMALE, OTHER;
+
+        public static Gender of(String gender) {
+            if (gender == null) {
+                return OTHER;
+            }
+            switch (gender.trim().toLowerCase(Locale.ROOT)) {
+                case "male":
+                case "m":
+                    return MALE;
+                case "female":
+                case "f":
+                    return FEMALE;
+                default:
+                    return OTHER;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return name().charAt(0) + name().substring(1).toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private static final int COHORTS = AGE_BANDS.length * Gender.values().length;
+
+    private final Map<String, Integer> bookIds;
+    private final List<String> titles;
+    private final IntIntHashMap userSlots;
+    private byte[] userCohorts;
+    private int[][] userBooks;
+    private int[] userBookCounts;
+    private long[] userPages;
+    private int userCount;
+    private final CohortAccumulator[] cohorts;
+
+    private CohortAnalytics(Map<String, Integer> bookIds, List<String> titles, IntIntHashMap userSlots,
+                            byte[] userCohorts, int[][] userBooks, int[] userBookCounts, long[] userPages,
+                            int userCount, CohortAccumulator[] cohorts) {
+        this.bookIds = bookIds;
+        this.titles = titles;
+        this.userSlots = userSlots;
+        this.userCohorts = userCohorts;
+        this.userBooks = userBooks;
+        this.userBookCounts = userBookCounts;
+        this.userPages = userPages;
+        this.userCount = userCount;
+        this.cohorts = cohorts;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Records a new user. Returns false, and changes nothing, if the user is already
+     * known, since moving an existing reader to another cohort would need their full
+     * history; rebuild instead.
+     */
+    public synchronized boolean addUser(int userID, int age, String gender) {
+        if (userSlots.containsKey(userID)) {
+            return false;
+        }
+        int slot = newUserSlot(userID, cohort(age, gender));
+        cohorts[userCohorts[slot]].users++;
+        return true;
+    }
+
+    /**
+     * Records a reading habit. A habit of a user that was never added counts towards the
+     * unknown age band.
+     */
+    public synchronized void addHabit(int userID, String bookTitle, int pagesRead) {
+        int pages = Math.max(0, pagesRead);
+        int slot;
+        if (userSlots.containsKey(userID)) {
+            slot = userSlots.get(userID);
+        } else {
+            slot = newUserSlot(userID, cohort(-1, null));
+            cohorts[userCohorts[slot]].users++;
+        }
+        CohortAccumulator cohort = cohorts[userCohorts[slot]];
+        int count = userBookCounts[slot];
+        if (count > 0) {
+            cohort.removeReader(count, userPages[slot]);
+        }
+        cohort.addHabit(pages);
+        userPages[slot] += pages;
+
+        int book = bookId(bookTitle);
+        int[] history = userBooks[slot];
+        boolean known = false;
+        for (int i = 0; i < count; i++) {
+            if (history[i] == book) {
+                known = true;
+                break;
+            }
+        }
+        if (!known) {
+            if (history == null || count == history.length) {
+                userBooks[slot] = history = history == null ? new int[4] : Arrays.copyOf(history, count * 2);
+            }
+            history[count++] = book;
+            userBookCounts[slot] = count;
+            cohort.titleReaders.addTo(book, 1);
+        }
+        cohort.addReader(count, userPages[slot]);
+    }
+
+    /**
+     * Statistics for every cohort that has at least one user, in age band order.
+     */
+    public synchronized List<CohortSummary> summarize(int topTitles) {
+        List<CohortSummary> summaries = new ArrayList<>();
+        for (int cohort = 0; cohort < COHORTS; cohort++) {
+            if (cohorts[cohort].users > 0) {
+                summaries.add(summary(AGE_BANDS[cohort / Gender.values().length],
+                        Gender.values()[cohort % Gender.values().length].toString(), cohorts[cohort], topTitles));
+            }
+        }
+        return summaries;
+    }
+
+    /**
+     * Statistics over all users, merged from the cohorts.
+     */
+    public synchronized CohortSummary total(int topTitles) {
+        CohortAccumulator all = new CohortAccumulator();
+        for (CohortAccumulator cohort : cohorts) {
+            all.merge(cohort);
+        }
+        return summary("all", "all", all, topTitles);
+    }
+
+    public synchronized int getUserCount() {
+        return userCount;
+    }
+
+    private CohortSummary summary(String ageBand, String gender, CohortAccumulator cohort, int topTitles) {
+        if (topTitles < 0) {
+            throw new IllegalArgumentException("Number of top titles cannot be negative");
+        }
+        PriorityQueue<long[]> best = new PriorityQueue<>(topTitles + 1, (a, b) ->
+                a[1] != b[1] ? Long.compare(a[1], b[1]) : Long.compare(b[0], a[0]));
+        if (topTitles > 0) {
+            cohort.titleReaders.forEach((book, readers) -> {
+                best.offer(new long[]{book, readers});
+                if (best.size() > topTitles) {
+                    best.poll();
+                }
+            });
+        }
+        List<CohortSummary.TitleCount> top = new ArrayList<>();
+        while (!best.isEmpty()) {
+            long[] entry = best.poll();
+            top.add(new CohortSummary.TitleCount(titles.get((int) entry[0]), (int) entry[1]));
+        }
+        Collections.reverse(top);
+        double meanBooks = cohort.readers == 0 ? 0 : (double) cohort.readerBooks / cohort.readers;
+        return new CohortSummary(ageBand, gender, cohort.users, cohort.readers, cohort.habits, cohort.pages,
+                meanBooks, cohort.pagesPerHabit.quantiles(PERCENTILES), cohort.booksPerReader.quantiles(PERCENTILES),
+                cohort.pagesPerReader.quantiles(PERCENTILES), top);
+    }
+
+    private int newUserSlot(int userID, int cohort) {
+        int slot = userCount++;
+        if (slot == userCohorts.length) {
+            int capacity = Math.max(16, slot * 2);
+            userCohorts = Arrays.copyOf(userCohorts, capacity);
+            userBooks = Arrays.copyOf(userBooks, capacity);
+            userBookCounts = Arrays.copyOf(userBookCounts, capacity);
+            userPages = Arrays.copyOf(userPages, capacity);
+        }
+        userCohorts[slot] = (byte) cohort;
+        userSlots.put(userID, slot);
+        return slot;
+    }
+
+    private int bookId(String bookTitle) {
+        return bookId(bookIds, titles, bookTitle);
+    }
+
+    private static int bookId(Map<String, Integer> bookIds, List<String> titles, String bookTitle) {
+        String key = TitleNormalizer.canonicalize(bookTitle);
+        Integer id = bookIds.get(key);
+        if (id == null) {
+            id = titles.size();
+            bookIds.put(key, id);
+            titles.add(TitleNormalizer.displayTitle(bookTitle));
+        }
+        return id;
+    }
+
+    static int cohort(int age, String gender) {
+        int band = UNKNOWN_AGE_BAND;
+        if (age >= 0) {
+            band = AGE_BAND_STARTS.length - 1;
+            while (age < AGE_BAND_STARTS[band]) {
+                band--;
+            }
+        }
+        return band * Gender.values().length + Gender.of(gender).ordinal();
+    }
+
+    /**
+     * Collects users and habits into primitive arrays and builds the statistics in
+     * parallel.
+     */
+    public static final class Builder {
+        private final Map<String, Integer> bookIds = new HashMap<>();
+        private final List<String> titles = new ArrayList<>();
+        private final IntIntHashMap userSlots = new IntIntHashMap();
+        private byte[] userCohorts = new byte[16];
+        private int userCount;
+        private int[] habitUsers = new int[16];
+        private int[] habitBooks = new int[16];
+        private int[] habitPages = new int[16];
+        private int habitCount;
+
+        private Builder() {
+        }
+
+        public Builder addUser(int userID, int age, String gender) {
+            int cohort = cohort(age, gender);
+            if (userSlots.containsKey(userID)) {
+                // Habits may arrive before their user; the user row decides the cohort
+                userCohorts[userSlots.get(userID)] = (byte) cohort;
+            } else {
+                slot(userID, cohort);
+            }
+            return this;
+        }
+
+        public Builder addHabit(int userID, String bookTitle, int pagesRead) {
+            int slot = userSlots.containsKey(userID) ? userSlots.get(userID) : slot(userID, cohort(-1, null));
+            if (habitCount == habitUsers.length) {
+                habitUsers = Arrays.copyOf(habitUsers, habitCount * 2);
+                habitBooks = Arrays.copyOf(habitBooks, habitCount * 2);
+                habitPages = Arrays.copyOf(habitPages, habitCount * 2);
+            }
+            habitUsers[habitCount] = slot;
+            habitBooks[habitCount] = bookId(bookIds, titles, bookTitle);
+            habitPages[habitCount] = Math.max(0, pagesRead);
+            habitCount++;
+            return this;
+        }
+
+        public CohortAnalytics build() {
+            return build(ForkJoinPool.commonPool());
+        }
+
+        public CohortAnalytics build(ForkJoinPool pool) {
+            // Group the habits by user with a counting sort so each user's habits are contiguous
+            int[] offsets = new int[userCount + 1];
+            for (int i = 0; i < habitCount; i++) {
+                offsets[habitUsers[i] + 1]++;
+            }
+            for (int slot = 0; slot < userCount; slot++) {
+                offsets[slot + 1] += offsets[slot];
+            }
+            int[] books = new int[habitCount];
+            int[] pages = new int[habitCount];
+            int[] next = Arrays.copyOf(offsets, userCount);
+            for (int i = 0; i < habitCount; i++) {
+                int position = next[habitUsers[i]]++;
+                books[position] = habitBooks[i];
+                pages[position] = habitPages[i];
+            }
+
+            int capacity = Math.max(16, userCount);
+            int[][] userBooks = new int[capacity][];
+            int[] userBookCounts = new int[capacity];
+            long[] userPages = new long[capacity];
+            CohortAccumulator[] cohorts = pool.invoke(new ScanTask(userCohorts, offsets, books, pages,
+                    userBooks, userBookCounts, userPages, 0, userCount));
+            return new CohortAnalytics(bookIds, titles, userSlots, Arrays.copyOf(userCohorts, capacity),
+                    userBooks, userBookCounts, userPages, userCount, cohorts);
+        }
+
+        private int slot(int userID, int cohort) {
+            int slot = userCount++;
+            if (slot == userCohorts.length) {
+                userCohorts = Arrays.copyOf(userCohorts, slot * 2);
+            }
+            userCohorts[slot] = (byte) cohort;
+            userSlots.put(userID, slot);
+            return slot;
+        }
+    }
+
+    /**
+     * Accumulates a range of users, splitting the range until it is small enough and
+     * merging the per-cohort accumulators on the way back up. Each task also records the
+     * distinct books and total pages of its own users, which later updates start from.
+     */
+    private static final class ScanTask extends RecursiveTask<CohortAccumulator[]> {
+        private static final long serialVersionUID = 1L;
+
+        private final byte[] userCohorts;
+        private final int[] offsets;
+        private final int[] books;
+        private final int[] pages;
+        private final int[][] userBooks;
+        private final int[] userBookCounts;
+        private final long[] userPages;
+        private final int from;
+        private final int to;
+
+        ScanTask(byte[] userCohorts, int[] offsets, int[] books, int[] pages, int[][] userBooks,
+                 int[] userBookCounts, long[] userPages, int from, int to) {
+            this.userCohorts = userCohorts;
+            this.offsets = offsets;
+            this.books = books;
+            this.pages = pages;
+            this.userBooks = userBooks;
+            this.userBookCounts = userBookCounts;
+            this.userPages = userPages;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected CohortAccumulator[] compute() {
+            if (to - from > USERS_PER_TASK) {
+                int middle = (from + to) >>> 1;
+                ScanTask left = new ScanTask(userCohorts, offsets, books, pages, userBooks, userBookCounts,
+                        userPages, from, middle);
+                left.fork();
+                CohortAccumulator[] right = new ScanTask(userCohorts, offsets, books, pages, userBooks,
+                        userBookCounts, userPages, middle, to).compute();
+                CohortAccumulator[] merged = left.join();
+                for (int cohort = 0; cohort < COHORTS; cohort++) {
+                    merged[cohort].merge(right[cohort]);
+                }
+                return merged;
+            }
+
+            CohortAccumulator[] cohorts = new CohortAccumulator[COHORTS];
+            for (int cohort = 0; cohort < COHORTS; cohort++) {
+                cohorts[cohort] = new CohortAccumulator();
+            }
+            for (int slot = from; slot < to; slot++) {
+                CohortAccumulator cohort = cohorts[userCohorts[slot]];
+                cohort.users++;
+                int start = offsets[slot];
+                int end = offsets[slot + 1];
+                if (start == end) {
+                    continue;
+                }
+                long total = 0;
+                for (int i = start; i < end; i++) {
+                    cohort.addHabit(pages[i]);
+                    total += pages[i];
+                }
+                int[] distinct = Arrays.copyOfRange(books, start, end);
+                Arrays.sort(distinct);
+                int count = 0;
+                for (int i = 0; i < distinct.length; i++) {
+                    if (i == 0 || distinct[i] != distinct[i - 1]) {
+                        distinct[count++] = distinct[i];
+                        cohort.titleReaders.addTo(distinct[i], 1);
+                    }
+                }
+                userBooks[slot] = distinct;
+                userBookCounts[slot] = count;
+                userPages[slot] = total;
+                cohort.addReader(count, total);
+            }
+            return cohorts;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.christianmol.booktracker.analytics;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Snapshot of the statistics of one cohort. Percentile arrays hold p50, p90 and p99.
+ */
+public final class CohortSummary {
+    private final String ageBand;
+    private final String gender;
+    private final int users;
+    private final int readers;
+    private final long habits;
+    private final long pages;
+    private final double meanBooksPerReader;
+    private final double[] pagesPerHabit;
+    private final double[] booksPerReader;
+    private final double[] pagesPerReader;
+    private final List<TitleCount> topTitles;
+
+    CohortSummary(String ageBand, String gender, int users, int readers, long habits, long pages,
+                  double meanBooksPerReader, double[] pagesPerHabit, double[] booksPerReader,
+                  double[] pagesPerReader, List<TitleCount> topTitles) {
+        this.ageBand = ageBand;
+        this.gender = gender;
+        this.users = users;
+        this.readers = readers;
+        this.habits = habits;
+        this.pages = pages;
+        this.meanBooksPerReader = meanBooksPerReader;
+        this.pagesPerHabit = pagesPerHabit;
+        this.booksPerReader = booksPerReader;
+        this.pagesPerReader = pagesPerReader;
+        this.topTitles = Collections.unmodifiableList(topTitles);
+    }
+
+    public String getAgeBand() {
+        return ageBand;
+    }
+
+    public String getGender() {
+        return gender;
+    }
+
+    public int getUsers() {
+        return users;
+    }
+
+    /**
+     * Users with at least one reading habit.
+     */
+    public int getReaders() {
+        return readers;
+    }
+
+    public long getHabits() {
+        return habits;
+    }
+
+    public long getPages() {
+        return pages;
+    }
+
+    public double getMeanBooksPerReader() {
+        return meanBooksPerReader;
+    }
+
+    public double getMeanPagesPerReader() {
+        return readers == 0 ? 0 : (double) pages / readers;
+    }
+
+    public double[] getPagesPerHabit() {
+        return pagesPerHabit.clone();
+    }
+
+    public double[] getBooksPerReader() {
+        return booksPerReader.clone();
+    }
+
+    public double[] getPagesPerReader() {
+        return pagesPerReader.clone();
+    }
+
+    public List<TitleCount> getTopTitles() {
+        return topTitles;
+    }
+
+    public static final class TitleCount {
+        private final String title;
+        private final int readers;
+
+        public TitleCount(String title, int readers) {
+            this.title = title;
+            this.readers = readers;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public int getReaders() {
+            return readers;
+        }
+
+        @Override
+        public String toString() {
+            return title + " (" + readers + ")";
+        }
+    }
+}
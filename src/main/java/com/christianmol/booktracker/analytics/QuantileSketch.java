@@ -0,0 +1,153 @@
+package com.christianmol.booktracker.analytics;
+
+import com.christianmol.booktracker.util.IntIntHashMap;
+
+import java.util.Arrays;
+
+/**
+ * Quantile sketch for non-negative counts with a bounded relative error, after DDSketch.
+ *
+ * <p>Values are counted in logarithmic buckets: bucket {@code i} holds the values in
+ * {@code (gamma^(i-1), gamma^i]} with {@code gamma = (1 + a) / (1 - a)}, so every
+ * reported quantile is within a relative error {@code a} of a value that was actually
+ * added. Zero gets its own counter. Because a value always lands in the same bucket,
+ * sketches with the same accuracy merge by adding bucket counts, and a value that was
+ * added can be removed again exactly.</p>
+ */
+public class QuantileSketch {
+    public static final double DEFAULT_RELATIVE_ACCURACY = 0.01;
+
+    private final double relativeAccuracy;
+    private final double gamma;
+    private final double logGamma;
+    private final IntIntHashMap buckets;
+    private long zeroCount;
+    private long count;
+
+    public QuantileSketch() {
+        this(DEFAULT_RELATIVE_ACCURACY);
+    }
+
+    public QuantileSketch(double relativeAccuracy) {
+        if (relativeAccuracy <= 0 || relativeAccuracy >= 1) {
+            throw new IllegalArgumentException("Relative accuracy must be between 0 and 1");
+        }
+        this.relativeAccuracy = relativeAccuracy;
+        this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        this.logGamma = Math.log(gamma);
+        this.buckets = new IntIntHashMap();
+    }
+
+    public double getRelativeAccuracy() {
+        return relativeAccuracy;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    public void add(long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Value cannot be negative");
+        }
+        if (value == 0) {
+            zeroCount++;
+        } else {
+            buckets.addTo(bucket(value), 1);
+        }
+        count++;
+    }
+
+    /**
+     * Removes one occurrence of a value that was added before.
+     */
+    public void remove(long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Value cannot be negative");
+        }
+        if (value == 0) {
+            if (zeroCount == 0) {
+                throw new IllegalStateException("Value 0 was never added");
+            }
+            zeroCount--;
+        } else {
+            int bucket = bucket(value);
+            if (buckets.get(bucket) == 0) {
+                throw new IllegalStateException("Value " + value + " was never added");
+            }
+            if (buckets.addTo(bucket, -1) == 0) {
+                buckets.remove(bucket);
+            }
+        }
+        count--;
+    }
+
+    /**
+     * Adds every value of other, which must have the same relative accuracy.
+     */
+    public void merge(QuantileSketch other) {
+        if (other.relativeAccuracy != relativeAccuracy) {
+            throw new IllegalArgumentException("Cannot merge sketches with different relative accuracy");
+        }
+        buckets.addAll(other.buckets);
+        zeroCount += other.zeroCount;
+        count += other.count;
+    }
+
+    public QuantileSketch copy() {
+        QuantileSketch copy = new QuantileSketch(relativeAccuracy);
+        copy.merge(this);
+        return copy;
+    }
+
+    /**
+     * Returns the value at quantile q (0 to 1), or NaN if the sketch is empty.
+     */
+    public double quantile(double q) {
+        return quantiles(q)[0];
+    }
+
+    /**
+     * Returns the values at several quantiles with a single pass over the buckets.
+     */
+    public double[] quantiles(double... qs) {
+        double[] result = new double[qs.length];
+        if (count == 0) {
+            Arrays.fill(result, Double.NaN);
+            return result;
+        }
+        int[] keys = new int[buckets.size()];
+        int[] next = new int[1];
+        buckets.forEach((key, value) -> keys[next[0]++] = key);
+        Arrays.sort(keys);
+
+        for (int i = 0; i < qs.length; i++) {
+            if (qs[i] < 0 || qs[i] > 1) {
+                throw new IllegalArgumentException("Quantile must be between 0 and 1");
+            }
+            long rank = (long) (qs[i] * (count - 1));
+            if (rank < zeroCount) {
+                result[i] = 0;
+                continue;
+            }
+            long seen = zeroCount;
+            for (int key : keys) {
+                seen += buckets.get(key);
+                if (seen > rank) {
+                    // Midpoint of the bucket in relative terms
+                    result[i] = 2 * Math.pow(gamma, key) / (gamma + 1);
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    private int bucket(long value) {
+        return (int) Math.ceil(Math.log(value) / logGamma);
+    }
+}
@@ -0,0 +1,292 @@
+package com.christianmol.booktracker.catalog;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In-memory catalogue of known book titles keyed by their canonical form.
+ *
+ * <p>Exact variants collapse onto one stored title through {@link #resolve(String)}.
+ * Near-duplicates ("Hobit", "The Hobbit: Or There and Back Again") are found through a
+ * character trigram index: a lookup only visits the posting lists of the query's own
+ * trigrams and prunes candidates by length, so it does not scan the whole catalogue.
+ * Similarity is the Jaccard coefficient of the two trigram sets.</p>
+ *
+ * <p>Besides the spelling that new rows get, the index remembers every spelling that is
+ * already stored for a key ({@link #addStoredTitle(String)}), so queries can match rows
+ * written before titles were canonicalized.</p>
+ *
+ * <p>Instances are not safe for unsynchronized concurrent use; all public methods are
+ * synchronized.</p>
+ */
+public class TitleIndex {
+    private final Map<String, Integer> idByKey = new HashMap<>();
+    private final Map<Long, IntList> postings = new HashMap<>();
+    private final Map<String, Set<String>> storedSpellings = new HashMap<>();
+    private String[] keys = new String[64];
+    private String[] titles = new String[64];
+    private int[] trigramCounts = new int[64];
+    private int[] scratch = new int[64];
+    private int entryCount;
+    private int liveCount;
+
+    public synchronized int size() {
+        return liveCount;
+    }
+
+    /**
+     * Returns the stored spelling for the given title. The first spelling seen for a
+     * canonical key wins; later variants are mapped onto it.
+     */
+    public synchronized String resolve(String title) {
+        String display = TitleNormalizer.displayTitle(title);
+        String key = TitleNormalizer.canonicalize(display);
+        Integer id = idByKey.get(key);
+        if (id != null && titles[id] != null) {
+            return titles[id];
+        }
+        register(key, display);
+        return display;
+    }
+
+    /**
+     * Registers a title exactly as it is stored in the database. If it is a variant of a
+     * known title it is remembered as another spelling of that title.
+     */
+    public synchronized void addStoredTitle(String storedTitle) {
+        String key = TitleNormalizer.canonicalize(TitleNormalizer.displayTitle(storedTitle));
+        resolve(storedTitle);
+        storedSpellings.get(key).add(storedTitle);
+    }
+
+    /**
+     * Returns every stored spelling of the given title, the canonical one first, or an
+     * empty list if no variant of it is known.
+     */
+    public synchronized List<String> storedVariants(String title) {
+        Set<String> spellings = storedSpellings.get(TitleNormalizer.canonicalize(TitleNormalizer.displayTitle(title)));
+        return spellings == null ? Collections.<String>emptyList() : new ArrayList<>(spellings);
+    }
+
+    /**
+     * Returns the stored spelling for the given title, or null if no variant of it is
+     * known. Unlike {@link #resolve(String)} this never adds an entry.
+     */
+    public synchronized String lookup(String title) {
+        Integer id = idByKey.get(TitleNormalizer.canonicalize(TitleNormalizer.displayTitle(title)));
+        return id == null ? null : titles[id];
+    }
+
+    /**
+     * Works out the title a rename should write. If the new title is a variant of a
+     * different book that already exists, that book's spelling is returned so the two
+     * are merged. Otherwise the new spelling becomes the stored spelling for its key.
+     * Every stored spelling of the old title is assumed to be rewritten to the result.
+     */
+    public synchronized String rename(String oldTitle, String newTitle) {
+        String oldDisplay = TitleNormalizer.displayTitle(oldTitle);
+        String newDisplay = TitleNormalizer.displayTitle(newTitle);
+        String oldKey = TitleNormalizer.canonicalize(oldDisplay);
+        String newKey = TitleNormalizer.canonicalize(newDisplay);
+
+        Integer target = idByKey.get(newKey);
+        if (target != null && titles[target] != null && !newKey.equals(oldKey)) {
+            remove(oldKey);
+            return titles[target];
+        }
+        if (target != null && titles[target] != null) {
+            titles[target] = newDisplay;
+            storedSpellings.put(newKey, new LinkedHashSet<>(Collections.singleton(newDisplay)));
+        } else {
+            remove(oldKey);
+            register(newKey, newDisplay);
+        }
+        return newDisplay;
+    }
+
+    /**
+     * Returns known titles whose trigram similarity to the given title is at least
+     * {@code minSimilarity}, best match first. The title's own canonical entry is not
+     * included.
+     */
+    public synchronized List<MergeSuggestion> findSimilar(String title, double minSimilarity, int limit) {
+        if (minSimilarity <= 0 || minSimilarity > 1) {
+            throw new IllegalArgumentException("Minimum similarity must be in (0, 1]");
+        }
+        String display = TitleNormalizer.displayTitle(title);
+        String key = TitleNormalizer.canonicalize(display);
+        Integer self = idByKey.get(key);
+        List<MergeSuggestion> matches = collect(display, key, self == null ? -1 : self, minSimilarity, false);
+        Collections.sort(matches);
+        return matches.size() > limit ? new ArrayList<>(matches.subList(0, limit)) : matches;
+    }
+
+    /**
+     * Returns every pair of stored titles that look like the same book, best match first.
+     */
+    public synchronized List<MergeSuggestion> suggestMerges(double minSimilarity) {
+        if (minSimilarity <= 0 || minSimilarity > 1) {
+            throw new IllegalArgumentException("Minimum similarity must be in (0, 1]");
+        }
+        List<MergeSuggestion> suggestions = new ArrayList<>();
+        for (int id = 0; id < entryCount; id++) {
+            if (titles[id] != null) {
+                suggestions.addAll(collect(titles[id], keys[id], id, minSimilarity, true));
+            }
+        }
+        Collections.sort(suggestions);
+        return suggestions;
+    }
+
+    private List<MergeSuggestion> collect(String display, String key, int self, double minSimilarity,
+                                          boolean higherIdsOnly) {
+        long[] grams = trigrams(key);
+        int queryCount = grams.length;
+        int[] touched = new int[16];
+        int touchedCount = 0;
+
+        for (long gram : grams) {
+            IntList posting = postings.get(gram);
+            if (posting == null) {
+                continue;
+            }
+            for (int i = 0; i < posting.size; i++) {
+                int id = posting.values[i];
+                if (id == self || (higherIdsOnly && id < self) || titles[id] == null) {
+                    continue;
+                }
+                // A Jaccard score of t is impossible when one set is much larger than the other
+                int other = trigramCounts[id];
+                if (other < minSimilarity * queryCount || other * minSimilarity > queryCount) {
+                    continue;
+                }
+                if (scratch[id]++ == 0) {
+                    if (touchedCount == touched.length) {
+                        touched = Arrays.copyOf(touched, touchedCount * 2);
+                    }
+                    touched[touchedCount++] = id;
+                }
+            }
+        }
+
+        List<MergeSuggestion> matches = new ArrayList<>();
+        for (int i = 0; i < touchedCount; i++) {
+            int id = touched[i];
+            int shared = scratch[id];
+            scratch[id] = 0;
+            double similarity = (double) shared / (queryCount + trigramCounts[id] - shared);
+            if (similarity >= minSimilarity) {
+                matches.add(new MergeSuggestion(display, titles[id], similarity));
+            }
+        }
+        return matches;
+    }
+
+    private void register(String key, String display) {
+        if (entryCount == titles.length) {
+            int capacity = entryCount * 2;
+            keys = Arrays.copyOf(keys, capacity);
+            titles = Arrays.copyOf(titles, capacity);
+            trigramCounts = Arrays.copyOf(trigramCounts, capacity);
+            scratch = Arrays.copyOf(scratch, capacity);
+        }
+        int id = entryCount++;
+        keys[id] = key;
+        titles[id] = display;
+        long[] grams = trigrams(key);
+        trigramCounts[id] = grams.length;
+        for (long gram : grams) {
+            postings.computeIfAbsent(gram, g -> new IntList()).add(id);
+        }
+        idByKey.put(key, id);
+        storedSpellings.put(key, new LinkedHashSet<>(Collections.singleton(display)));
+        liveCount++;
+    }
+
+    /**
+     * Tombstones an entry. Its postings stay in place and are skipped during lookups.
+     */
+    private void remove(String key) {
+        Integer id = idByKey.remove(key);
+        storedSpellings.remove(key);
+        if (id != null && titles[id] != null) {
+            titles[id] = null;
+            liveCount--;
+        }
+    }
+
+    /**
+     * Returns the distinct trigrams of the key padded with one space on each side, each
+     * packed into a long as three 16-bit chars.
+     */
+    private static long[] trigrams(String key) {
+        String padded = " " + key + " ";
+        if (padded.length() < 3) {
+            return new long[0];
+        }
+        long[] grams = new long[padded.length() - 2];
+        for (int i = 0; i < grams.length; i++) {
+            grams[i] = ((long) padded.charAt(i) << 32) | ((long) padded.charAt(i + 1) << 16) | padded.charAt(i + 2);
+        }
+        Arrays.sort(grams);
+        int distinct = 0;
+        for (int i = 0; i < grams.length; i++) {
+            if (i == 0 || grams[i] != grams[i - 1]) {
+                grams[distinct++] = grams[i];
+            }
+        }
+        return Arrays.copyOf(grams, distinct);
+    }
+
+    private static final class IntList {
+        private int[] values = new int[4];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+
+    public static final class MergeSuggestion implements Comparable<MergeSuggestion> {
+        private final String title;
+        private final String candidate;
+        private final double similarity;
+
+        public MergeSuggestion(String title, String candidate, double similarity) {
+            this.title = title;
+            this.candidate = candidate;
+            this.similarity = similarity;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public String getCandidate() {
+            return candidate;
+        }
+
+        public double getSimilarity() {
+            return similarity;
+        }
+
+        @Override
+        public int compareTo(MergeSuggestion other) {
+            return Double.compare(other.similarity, similarity);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("'%s' ~ '%s' (%.2f)", title, candidate, similarity);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.christianmol.booktracker.catalog;
+
+import java.math.BigDecimal;
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Turns book titles into a canonical key so that spelling variants such as
+ * "The Hobbit", "the hobbit " and "Hobbit, The" are recognised as the same book.
+ */
+public final class TitleNormalizer {
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern NON_ALPHANUMERIC = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern TRAILING_ARTICLE = Pattern.compile("^(.+?)\\s*,\\s*(the|a|an)$");
+    private static final Pattern LEADING_ARTICLE = Pattern.compile("^(the|a|an) (?=\\S)");
+
+    private TitleNormalizer() {
+    }
+
+    /**
+     * Returns the comparison key for a title: Unicode compatibility decomposition,
+     * accents removed, case folded, punctuation collapsed to single spaces and a
+     * leading or trailing English article dropped.
+     */
+    public static String canonicalize(String title) {
+        if (title == null) {
+            throw new IllegalArgumentException("Title cannot be null");
+        }
+        String key = Normalizer.normalize(title, Normalizer.Form.NFKD);
+        key = COMBINING_MARKS.matcher(key).replaceAll("");
+        key = key.toLowerCase(Locale.ROOT).trim();
+
+        // "Hobbit, The" -> "Hobbit" must be handled before the comma is stripped
+        key = TRAILING_ARTICLE.matcher(key).replaceFirst("$1");
+        key = NON_ALPHANUMERIC.matcher(key).replaceAll(" ").trim();
+        key = LEADING_ARTICLE.matcher(key).replaceFirst("");
+        return key;
+    }
+
+    /**
+     * Returns the title as it should be stored: trimmed with inner whitespace collapsed
+     * and composed to NFC, but otherwise left as the user typed it.
+     */
+    public static String displayTitle(String title) {
+        if (title == null || title.trim().isEmpty()) {
+            throw new IllegalArgumentException("Book title cannot be null or empty");
+        }
+        String display = Normalizer.normalize(title, Normalizer.Form.NFC);
+        return WHITESPACE.matcher(display.trim()).replaceAll(" ");
+    }
+
+    /**
+     * Formats a numeric spreadsheet cell used as a title, so that 1984 becomes "1984"
+     * instead of "1984.0".
+     */
+    public static String fromNumber(double value) {
+        if (value == Math.rint(value) && !Double.isInfinite(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return BigDecimal.valueOf(value).stripTrailingZeros().toPlainString();
+    }
+}
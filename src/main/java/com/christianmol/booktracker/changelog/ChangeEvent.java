@@ -0,0 +1,237 @@
+package com.christianmol.booktracker.changelog;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * A change made to the database. Each subtype knows how to write its own payload so
+ * the event can be stored in the outbox table and in the change log.
+ */
+public abstract class ChangeEvent {
+
+    public enum Type {
+        USER_ADDED,
+        HABIT_DELETED,
+        BOOK_RENAMED,
+        IMPORT_BATCH
+    }
+
+    private final long timestamp;
+
+    protected ChangeEvent(long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    public abstract Type getType();
+
+    /**
+     * Milliseconds since the epoch at which the change was recorded.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    protected abstract void writePayload(DataOutputStream out) throws IOException;
+
+    public byte[] encodePayload() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writePayload(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static ChangeEvent decode(Type type, long timestamp, byte[] payload) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            switch (type) {
+                case USER_ADDED:
+                    return new UserAdded(timestamp, in.readInt(), in.readUTF(), in.readInt(), in.readUTF());
+                case HABIT_DELETED:
+                    return new HabitDeleted(timestamp, in.readInt());
+                case BOOK_RENAMED:
+                    return new BookRenamed(timestamp, in.readUTF(), in.readUTF(), in.readInt());
+                case IMPORT_BATCH:
+                    return new ImportBatch(timestamp, in.readUTF(), in.readInt(), in.readInt(), in.readInt());
+                default:
+                    throw new IllegalArgumentException("Unknown change event type: " + type);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Corrupt payload for " + type + " event", e);
+        }
+    }
+
+    public static final class UserAdded extends ChangeEvent {
+        private final int userID;
+        private final String name;
+        private final int age;
+        private final String gender;
+
+        public UserAdded(long timestamp, int userID, String name, int age, String gender) {
+            super(timestamp);
+            this.userID = userID;
+            this.name = name;
+            this.age = age;
+            this.gender = gender;
+        }
+
+        @Override
+        public Type getType() {
+            return Type.USER_ADDED;
+        }
+
+        public int getUserID() {
+            return userID;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getAge() {
+            return age;
+        }
+
+        public String getGender() {
+            return gender;
+        }
+
+        @Override
+        protected void writePayload(DataOutputStream out) throws IOException {
+            out.writeInt(userID);
+            out.writeUTF(name);
+            out.writeInt(age);
+            out.writeUTF(gender);
+        }
+
+        @Override
+        public String toString() {
+            return "UserAdded{userID=" + userID + ", name='" + name + "', age=" + age + ", gender='" + gender + "'}";
+        }
+    }
+
+    public static final class HabitDeleted extends ChangeEvent {
+        private final int habitID;
+
+        public HabitDeleted(long timestamp, int habitID) {
+            super(timestamp);
+            this.habitID = habitID;
+        }
+
+        @Override
+        public Type getType() {
+            return Type.HABIT_DELETED;
+        }
+
+        public int getHabitID() {
+            return habitID;
+        }
+
+        @Override
+        protected void writePayload(DataOutputStream out) throws IOException {
+            out.writeInt(habitID);
+        }
+
+        @Override
+        public String toString() {
+            return "HabitDeleted{habitID=" + habitID + "}";
+        }
+    }
+
+    public static final class BookRenamed extends ChangeEvent {
+        private final String oldTitle;
+        private final String newTitle;
+        private final int records;
+
+        public BookRenamed(long timestamp, String oldTitle, String newTitle, int records) {
+            super(timestamp);
+            this.oldTitle = oldTitle;
+            this.newTitle = newTitle;
+            this.records = records;
+        }
+
+        @Override
+        public Type getType() {
+            return Type.BOOK_RENAMED;
+        }
+
+        public String getOldTitle() {
+            return oldTitle;
+        }
+
+        public String getNewTitle() {
+            return newTitle;
+        }
+
+        public int getRecords() {
+            return records;
+        }
+
+        @Override
+        protected void writePayload(DataOutputStream out) throws IOException {
+            out.writeUTF(oldTitle);
+            out.writeUTF(newTitle);
+            out.writeInt(records);
+        }
+
+        @Override
+        public String toString() {
+            return "BookRenamed{oldTitle='" + oldTitle + "', newTitle='" + newTitle + "', records=" + records + "}";
+        }
+    }
+
+    public static final class ImportBatch extends ChangeEvent {
+        private final String source;
+        private final int usersAdded;
+        private final int habitsAdded;
+        private final int habitsSkipped;
+
+        public ImportBatch(long timestamp, String source, int usersAdded, int habitsAdded, int habitsSkipped) {
+            super(timestamp);
+            this.source = source;
+            this.usersAdded = usersAdded;
+            this.habitsAdded = habitsAdded;
+            this.habitsSkipped = habitsSkipped;
+        }
+
+        @Override
+        public Type getType() {
+            return Type.IMPORT_BATCH;
+        }
+
+        public String getSource() {
+            return source;
+        }
+
+        public int getUsersAdded() {
+            return usersAdded;
+        }
+
+        public int getHabitsAdded() {
+            return habitsAdded;
+        }
+
+        public int getHabitsSkipped() {
+            return habitsSkipped;
+        }
+
+        @Override
+        protected void writePayload(DataOutputStream out) throws IOException {
+            out.writeUTF(source);
+            out.writeInt(usersAdded);
+            out.writeInt(habitsAdded);
+            out.writeInt(habitsSkipped);
+        }
+
+        @Override
+        public String toString() {
+            return "ImportBatch{source='" + source + "', usersAdded=" + usersAdded
+                    + ", habitsAdded=" + habitsAdded + ", habitsSkipped=" + habitsSkipped + "}";
+        }
+    }
+}
@@ -0,0 +1,394 @@
+package com.christianmol.booktracker.changelog;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of {@link ChangeEvent}s stored in fixed-size, memory-mapped segment
+ * files.
+ *
+ * <p>Every record is addressed by a byte offset that is stable across restarts, so a
+ * subscriber can remember the offset it has processed and resume from there. Segment
+ * files are named after the offset of their first byte. A record is laid out as
+ * length, CRC32, sequence number, event type, timestamp and payload; the sequence
+ * number is the outbox sequence the event was written under, which lets the writer
+ * skip events that were already appended before a crash.</p>
+ *
+ * <p>Only the newest {@code maxSegments} segments are kept; older ones are deleted when a
+ * new segment is started and on recovery. A subscriber resuming from an offset in a
+ * deleted segment continues with the oldest record still in the log.</p>
+ */
+public class ChangeLog implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(ChangeLog.class.getName());
+    public static final int DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+    public static final int DEFAULT_MAX_SEGMENTS = 8;
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 1 + 8;
+
+    private final File directory;
+    private final int segmentSize;
+    private final int maxSegments;
+    private final TreeMap<Long, MappedByteBuffer> segments = new TreeMap<>();
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private MappedByteBuffer active;
+    private long activeBase;
+    private long lastSequence;
+
+    public ChangeLog(File directory) {
+        this(directory, DEFAULT_SEGMENT_SIZE, DEFAULT_MAX_SEGMENTS);
+    }
+
+    public ChangeLog(File directory, int segmentSize) {
+        this(directory, segmentSize, DEFAULT_MAX_SEGMENTS);
+    }
+
+    public ChangeLog(File directory, int segmentSize, int maxSegments) {
+        if (directory == null) {
+            throw new IllegalArgumentException("Change log directory cannot be null");
+        }
+        if (segmentSize < 4096) {
+            throw new IllegalArgumentException("Segment size must be at least 4096 bytes");
+        }
+        if (maxSegments < 1) {
+            throw new IllegalArgumentException("At least one segment must be kept");
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new UncheckedIOException(new IOException("Cannot create change log directory " + directory));
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxSegments = maxSegments;
+        recover();
+    }
+
+    /**
+     * Sequence number of the newest record in the log, or 0 if the log is empty.
+     */
+    public synchronized long getLastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * Offset at which the next record will be written.
+     */
+    public synchronized long getEndOffset() {
+        return activeBase + active.position();
+    }
+
+    /**
+     * Appends an event and delivers it to live subscribers. Returns the record's offset.
+     */
+    public synchronized long append(long sequence, ChangeEvent event) {
+        byte[] payload = event.encodePayload();
+        int length = HEADER_SIZE + payload.length;
+        if (length > segmentSize) {
+            throw new IllegalArgumentException("Change event of " + length + " bytes does not fit in a segment");
+        }
+        if (active.remaining() < length) {
+            openSegment(activeBase + segmentSize);
+            deleteOldSegments();
+        }
+        long offset = activeBase + active.position();
+
+        CRC32 crc = new CRC32();
+        int start = active.position();
+        active.position(start + 8);
+        active.putLong(sequence);
+        active.put((byte) event.getType().ordinal());
+        active.putLong(event.getTimestamp());
+        active.put(payload);
+        ByteBuffer view = active.duplicate();
+        view.position(start + 8);
+        view.limit(start + length);
+        crc.update(view);
+        // The length is written last so a torn record is never mistaken for a complete one
+        active.putInt(start + 4, (int) crc.getValue());
+        active.putInt(start, length);
+        lastSequence = sequence;
+
+        // Delivered under the lock so subscribers see records in log order
+        Entry entry = new Entry(offset, offset + length, sequence, event);
+        for (Subscription subscription : subscriptions) {
+            subscription.deliver(entry);
+        }
+        return offset;
+    }
+
+    /**
+     * Flushes written records to disk.
+     */
+    public synchronized void force() {
+        active.force();
+    }
+
+    /**
+     * Reads every record from the given offset up to the current end of the log.
+     */
+    public synchronized List<Entry> read(long fromOffset) {
+        List<Entry> entries = new ArrayList<>();
+        long offset = Math.max(fromOffset, segments.isEmpty() ? 0 : segments.firstKey());
+        long end = getEndOffset();
+        while (offset < end) {
+            Map.Entry<Long, MappedByteBuffer> segment = segments.floorEntry(offset);
+            if (segment == null) {
+                break;
+            }
+            long base = segment.getKey();
+            Entry entry = readRecord(segment.getValue(), base, (int) (offset - base));
+            if (entry == null) {
+                // Rest of the segment is unused; continue with the next one
+                offset = base + segmentSize;
+                continue;
+            }
+            entries.add(entry);
+            offset = entry.getNextOffset();
+        }
+        return entries;
+    }
+
+    /**
+     * Registers a listener. Records from {@code fromOffset} onwards are replayed first,
+     * then new records are delivered as they are appended, on the appending thread.
+     *
+     * <p>The replay runs on the calling thread without holding the log's lock, so a slow
+     * listener does not hold up writers. Records appended meanwhile are replayed in a
+     * further round; the listener is registered for live delivery once it has caught
+     * up.</p>
+     */
+    public Subscription subscribe(long fromOffset, ChangeListener listener) {
+        Subscription subscription = new Subscription(listener, fromOffset);
+        while (true) {
+            List<Entry> entries;
+            long end;
+            synchronized (this) {
+                if (subscription.position >= getEndOffset()) {
+                    subscriptions.add(subscription);
+                    return subscription;
+                }
+                entries = read(subscription.position);
+                end = getEndOffset();
+            }
+            for (Entry entry : entries) {
+                subscription.deliver(entry);
+            }
+            // Skip unused segment tails, which hold no records to deliver
+            subscription.position = Math.max(subscription.position, end);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        subscriptions.clear();
+        if (active != null) {
+            active.force();
+        }
+        segments.clear();
+    }
+
+    private void recover() {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(SEGMENT_SUFFIX));
+        TreeMap<Long, File> existing = new TreeMap<>();
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+                try {
+                    existing.put(Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())), file);
+                } catch (NumberFormatException e) {
+                    LOGGER.warning("Ignoring unexpected file in change log directory: " + name);
+                }
+            }
+        }
+        if (existing.isEmpty()) {
+            openSegment(0);
+            return;
+        }
+        // Apply the retention limit before mapping, while the files can still be deleted
+        while (existing.size() > maxSegments) {
+            deleteSegmentFile(existing.pollFirstEntry().getValue());
+        }
+        for (Long base : existing.keySet()) {
+            openSegment(base);
+        }
+        // Find the end of the newest segment; a torn or corrupt record marks the end
+        int position = 0;
+        Entry entry;
+        while ((entry = readRecord(active, activeBase, position)) != null) {
+            lastSequence = entry.getSequence();
+            position = (int) (entry.getNextOffset() - activeBase);
+        }
+        active.position(position);
+        if (position + 4 <= segmentSize && active.getInt(position) != 0) {
+            // Clear the torn record so later reads cannot pick up its leftover bytes
+            LOGGER.warning("Discarding incomplete change log record at offset " + (activeBase + position));
+            for (int i = position; i < segmentSize; i++) {
+                active.put(i, (byte) 0);
+            }
+        }
+        if (lastSequence == 0 && segments.size() > 1) {
+            Map.Entry<Long, MappedByteBuffer> previous = segments.lowerEntry(activeBase);
+            long offset = previous.getKey();
+            Entry last;
+            while ((last = readRecord(previous.getValue(), previous.getKey(), (int) (offset - previous.getKey()))) != null) {
+                lastSequence = last.getSequence();
+                offset = last.getNextOffset();
+            }
+        }
+        LOGGER.info(String.format("Change log recovered: %d segment(s), end offset %d, last sequence %d",
+                segments.size(), getEndOffset(), lastSequence));
+    }
+
+    private void openSegment(long base) {
+        File file = segmentFile(base);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw");
+             FileChannel channel = raf.getChannel()) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+            segments.put(base, buffer);
+            if (active != null) {
+                active.force();
+            }
+            active = buffer;
+            activeBase = base;
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Error opening change log segment " + file, e);
+            throw new UncheckedIOException("Failed to open change log segment " + file, e);
+        }
+    }
+
+    private void deleteOldSegments() {
+        while (segments.size() > maxSegments) {
+            long base = segments.pollFirstEntry().getKey();
+            deleteSegmentFile(segmentFile(base));
+        }
+    }
+
+    private void deleteSegmentFile(File file) {
+        if (file.delete()) {
+            LOGGER.info("Deleted change log segment " + file.getName());
+        } else {
+            // Some platforms refuse to delete a mapped file; recovery deletes it on the next start
+            LOGGER.warning("Could not delete change log segment " + file.getName());
+        }
+    }
+
+    private File segmentFile(long base) {
+        return new File(directory, String.format("%020d%s", base, SEGMENT_SUFFIX));
+    }
+
+    private Entry readRecord(MappedByteBuffer segment, long base, int position) {
+        if (position + HEADER_SIZE > segmentSize) {
+            return null;
+        }
+        int length = segment.getInt(position);
+        if (length < HEADER_SIZE || position + length > segmentSize) {
+            return null;
+        }
+        ByteBuffer view = segment.duplicate();
+        view.position(position + 8);
+        view.limit(position + length);
+        CRC32 crc = new CRC32();
+        crc.update(view);
+        if ((int) crc.getValue() != segment.getInt(position + 4)) {
+            return null;
+        }
+        long sequence = segment.getLong(position + 8);
+        int typeIndex = segment.get(position + 16);
+        ChangeEvent.Type[] types = ChangeEvent.Type.values();
+        if (typeIndex < 0 || typeIndex >= types.length) {
+            return null;
+        }
+        long timestamp = segment.getLong(position + 17);
+        byte[] payload = new byte[length - HEADER_SIZE];
+        view.position(position + HEADER_SIZE);
+        view.get(payload);
+        ChangeEvent event = ChangeEvent.decode(types[typeIndex], timestamp, payload);
+        return new Entry(base + position, base + position + length, sequence, event);
+    }
+
+    @FunctionalInterface
+    public interface ChangeListener {
+        void onChange(Entry entry);
+    }
+
+    /**
+     * A record read from the log together with its position.
+     */
+    public static final class Entry {
+        private final long offset;
+        private final long nextOffset;
+        private final long sequence;
+        private final ChangeEvent event;
+
+        Entry(long offset, long nextOffset, long sequence, ChangeEvent event) {
+            this.offset = offset;
+            this.nextOffset = nextOffset;
+            this.sequence = sequence;
+            this.event = event;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+
+        /**
+         * Offset to resume from once this record has been processed.
+         */
+        public long getNextOffset() {
+            return nextOffset;
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        public ChangeEvent getEvent() {
+            return event;
+        }
+    }
+
+    public final class Subscription implements AutoCloseable {
+        private final ChangeListener listener;
+        private volatile long position;
+
+        private Subscription(ChangeListener listener, long position) {
+            this.listener = listener;
+            this.position = position;
+        }
+
+        /**
+         * Offset of the next record this subscriber has not seen yet.
+         */
+        public long getPosition() {
+            return position;
+        }
+
+        private void deliver(Entry entry) {
+            if (entry.getOffset() < position) {
+                return;
+            }
+            try {
+                listener.onChange(entry);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Change log subscriber failed at offset " + entry.getOffset(), e);
+            }
+            position = entry.getNextOffset();
+        }
+
+        @Override
+        public void close() {
+            subscriptions.remove(this);
+        }
+    }
+}
@@ -1,48 +1,154 @@
 package com.christianmol.booktracker.database;
 
+import com.christianmol.booktracker.analytics.CohortAnalytics;
+import com.christianmol.booktracker.analytics.CohortSummary;
+import com.christianmol.booktracker.catalog.TitleIndex;
+import com.christianmol.booktracker.changelog.ChangeEvent;
+import com.christianmol.booktracker.changelog.ChangeLog;
+import com.christianmol.booktracker.model.ReadingHabit;
+import com.christianmol.booktracker.recommend.CoOccurrenceIndex;
+
 import java.sql.*;
-import java.util.Random;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.time.LocalDateTime;
-import java.util.HashSet;
-import java.util.Set;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.logging.Logger;
 import java.util.logging.Level;
 
-import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
-
-public class DatabaseManager implements AutoCloseable {
+public class DatabaseManager implements TrackerDatabase {
     private static final Logger LOGGER = Logger.getLogger(DatabaseManager.class.getName());
-    private static final String DB_URL = "jdbc:sqlite:booktracker.db";
+    static final String EXCEL_FILE_NAME = "reading_habits_dataset.xlsx";
+    private static final int BULK_BATCH_SIZE = 1000;
+    private static final DateTimeFormatter SQLITE_DATE_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final int BULK_PROGRESS_INTERVAL = 10000;
+    static final int RECOMMENDATION_COUNT = 5;
+    static final int COHORT_TOP_TITLES = 3;
+    // Stored in PRAGMA user_version once the tables exist and the initial import ran
+    private static final int SCHEMA_VERSION = 1;
     private Connection connection;
-    private final Random random = new Random();
-    private final Set<Integer> existingUserIds = new HashSet<>();
+    private IdRegistry idRegistry;
+    private TitleIndex titleIndex;
+    private CoOccurrenceIndex recommendationIndex;
+    private CohortAnalytics cohortAnalytics;
+    private ChangeLog changeLog;
+    private boolean pendingChanges;
+    private ReadReplica readReplica;
+    // Replica ticket of this manager's last commit; reads use the replica once it covers it
+    private volatile long replicaTicket;
+    private PointReader pointReader;
+    // Counts commits that changed ReadingHabit rows; the point reader reloads its caches when it moves
+    private volatile long habitGeneration;
 
     public DatabaseManager() {
+        this(StorageProfile.defaults());
+    }
+
+    public DatabaseManager(String databasePath) {
+        this(StorageProfile.defaults().withDatabasePath(databasePath));
+    }
+
+    public DatabaseManager(StorageProfile profile) {
+        if (profile == null) {
+            throw new IllegalArgumentException("Storage profile cannot be null");
+        }
         try {
-            connection = DriverManager.getConnection(DB_URL);
+            connection = DriverManager.getConnection(profile.getJdbcUrl());
+            profile.apply(connection);
             connection.setAutoCommit(false); // Enable transaction support
-            LOGGER.info("Connection to SQLite has been established.");
+            LOGGER.info("Connection to SQLite has been established with storage profile " + profile);
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Error connecting to database", e);
             throw new DatabaseException("Failed to connect to database", e);
         }
+        if (profile.getReplicaRefreshSeconds() > 0) {
+            try {
+                readReplica = new ReadReplica(new File(profile.getDatabasePath()), profile.getReplicaRefreshSeconds());
+                LOGGER.info("Read-only queries are served from an in-memory replica.");
+            } catch (DatabaseException e) {
+                LOGGER.log(Level.WARNING, "Read replica unavailable, reading from the database file", e);
+            }
+        }
+        if ("WAL".equalsIgnoreCase(profile.getJournalMode())) {
+            try {
+                pointReader = new PointReader(profile, () -> habitGeneration);
+            } catch (DatabaseException e) {
+                LOGGER.log(Level.WARNING, "Point read connection unavailable", e);
+            }
+        }
+    }
+
+    /**
+     * The in-memory replica serving read-only queries, or null if replica mode is off.
+     */
+    public ReadReplica getReadReplica() {
+        return readReplica;
     }
 
+    /**
+     * The read-only connection for point reads that may run during a write, or null if
+     * the storage profile does not use WAL.
+     */
+    public PointReader getPointReader() {
+        return pointReader;
+    }
+
+    /**
+     * The replica if it already includes this manager's last commit, otherwise the
+     * database file, so a read never misses the manager's own writes.
+     */
+    private ReadReplica.Lease readConnection() {
+        ReadReplica replica = readReplica;
+        return replica != null && replica.isCurrentWith(replicaTicket)
+                ? replica.acquire() : ReadReplica.Lease.of(connection);
+    }
+
+    @Override
     public void initializeDatabase() {
         try {
+            // A single header read replaces the table checks on every start after the first
+            if (readSchemaVersion() >= SCHEMA_VERSION) {
+                LOGGER.info("Database schema is up to date, skipping table checks and import.");
+                return;
+            }
             createUserTable();
             createReadingHabitTable();
+            boolean imported = false;
             if (isDatabaseEmpty()) {
                 LOGGER.info("Database is empty, importing data from Excel file...");
-                importExcelData();
-                importUserData();
-                commitTransaction();
+                long usersBefore = idRegistry().getUserCount();
+                long habitsBefore = idRegistry().getHabitCount();
+                ExcelImporter importer = new ExcelImporter(importTarget(), EXCEL_FILE_NAME);
+                int skippedHabits = importer.importHabits();
+                importer.importUsers();
+                recordChanges(Collections.<ChangeEvent>singletonList(new ChangeEvent.ImportBatch(
+                        System.currentTimeMillis(), EXCEL_FILE_NAME,
+                        (int) (idRegistry().getUserCount() - usersBefore),
+                        (int) (idRegistry().getHabitCount() - habitsBefore),
+                        skippedHabits)));
+                imported = true;
             } else {
                 LOGGER.info("Database already contains data, skipping import.");
             }
+            try (Statement stmt = connection.createStatement()) {
+                stmt.execute("PRAGMA user_version = " + SCHEMA_VERSION);
+            }
+            commitTransaction();
+            if (imported) {
+                habitGeneration++;
+            }
         } catch (Exception e) {
             rollbackTransaction();
             LOGGER.log(Level.SEVERE, "Error during database initialization", e);
@@ -57,9 +163,144 @@ public class DatabaseManager implements AutoCloseable {
             LOGGER.log(Level.SEVERE, "Error committing transaction", e);
             throw new DatabaseException("Failed to commit transaction", e);
         }
+        if (pendingChanges) {
+            publishChanges();
+        }
+        if (readReplica != null) {
+            // Refreshed in the background; until then readConnection() reads from the file
+            replicaTicket = readReplica.requestRefresh();
+        }
+    }
+
+    /**
+     * Enables change data capture. From now on every write records typed events in the
+     * ChangeOutbox table within its own transaction; after the commit the events are
+     * appended to the change log and removed from the outbox. Events left in the outbox
+     * by an earlier crash are published immediately.
+     */
+    @Override
+    public void setChangeLog(ChangeLog changeLog) {
+        this.changeLog = changeLog;
+        if (changeLog == null) {
+            return;
+        }
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute(Schema.CREATE_CHANGE_OUTBOX_TABLE);
+            connection.commit();
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Error creating ChangeOutbox table", e);
+            throw new DatabaseException("Failed to create ChangeOutbox table", e);
+        }
+        publishChanges();
+
+        // A fresh database next to an existing log must not reuse sequence numbers the log has seen
+        try (PreparedStatement update = connection.prepareStatement(
+                "UPDATE sqlite_sequence SET seq = MAX(seq, ?) WHERE name = 'ChangeOutbox'")) {
+            update.setLong(1, changeLog.getLastSequence());
+            if (update.executeUpdate() == 0 && changeLog.getLastSequence() > 0) {
+                try (PreparedStatement insert = connection.prepareStatement(
+                        "INSERT INTO sqlite_sequence(name, seq) VALUES('ChangeOutbox', ?)")) {
+                    insert.setLong(1, changeLog.getLastSequence());
+                    insert.executeUpdate();
+                }
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Error aligning change sequence with the change log", e);
+            throw new DatabaseException("Failed to align change sequence with the change log", e);
+        }
+    }
+
+    private void recordChanges(List<? extends ChangeEvent> events) throws SQLException {
+        if (changeLog == null || events.isEmpty()) {
+            return;
+        }
+        String sql = "INSERT INTO ChangeOutbox(type, createdAt, payload) VALUES(?, ?, ?)";
+        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+            int batched = 0;
+            for (ChangeEvent event : events) {
+                pstmt.setInt(1, event.getType().ordinal());
+                pstmt.setLong(2, event.getTimestamp());
+                pstmt.setBytes(3, event.encodePayload());
+                pstmt.addBatch();
+                if (++batched % BULK_BATCH_SIZE == 0) {
+                    pstmt.executeBatch();
+                }
+            }
+            pstmt.executeBatch();
+        }
+        pendingChanges = true;
+    }
+
+    /**
+     * Moves committed events from the outbox to the change log. Events whose sequence is
+     * already in the log (appended just before a crash) are not appended twice. If this
+     * fails the events stay in the outbox and are retried after the next commit.
+     */
+    private void publishChanges() {
+        pendingChanges = false;
+        if (changeLog == null) {
+            return;
+        }
+        ChangeEvent.Type[] types = ChangeEvent.Type.values();
+        long lastPublished = -1;
+        String selectSql = "SELECT seq, type, createdAt, payload FROM ChangeOutbox ORDER BY seq";
+        try {
+            try (Statement stmt = connection.createStatement();
+                 ResultSet rs = stmt.executeQuery(selectSql)) {
+                while (rs.next()) {
+                    long seq = rs.getLong("seq");
+                    if (seq > changeLog.getLastSequence()) {
+                        ChangeEvent event = ChangeEvent.decode(types[rs.getInt("type")],
+                                rs.getLong("createdAt"), rs.getBytes("payload"));
+                        changeLog.append(seq, event);
+                    }
+                    lastPublished = seq;
+                }
+            }
+            if (lastPublished < 0) {
+                return;
+            }
+            changeLog.force();
+            try (PreparedStatement pstmt = connection.prepareStatement("DELETE FROM ChangeOutbox WHERE seq <= ?")) {
+                pstmt.setLong(1, lastPublished);
+                pstmt.executeUpdate();
+            }
+            connection.commit();
+        } catch (SQLException | RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Error publishing changes; they remain in the outbox", e);
+            try {
+                connection.rollback();
+            } catch (SQLException rollbackError) {
+                LOGGER.log(Level.WARNING, "Error rolling back change publication", rollbackError);
+            }
+        }
+    }
+
+    /**
+     * Drops the caches derived from ReadingHabit after a committed change to it.
+     */
+    private void habitsChanged() {
+        recommendationIndex = null;
+        cohortAnalytics = null;
+        habitGeneration++;
     }
 
     private void rollbackTransaction() {
+        // Every cache may include rows or renames from the transaction being discarded
+        idRegistry = null;
+        titleIndex = null;
+        recommendationIndex = null;
+        cohortAnalytics = null;
+        discardTransaction();
+    }
+
+    /**
+     * Rolls back without touching the caches, for a transaction that only read or
+     * staged rows in temporary tables, such as a dry run.
+     */
+    private void discardTransaction() {
+        pendingChanges = false;
         try {
             connection.rollback();
         } catch (SQLException e) {
@@ -68,6 +309,13 @@ public class DatabaseManager implements AutoCloseable {
         }
     }
 
+    private int readSchemaVersion() throws SQLException {
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA user_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
     private boolean isDatabaseEmpty() {
         try (Statement stmt = connection.createStatement();
              ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM User")) {
@@ -82,101 +330,53 @@ public class DatabaseManager implements AutoCloseable {
     }
 
     public void importUserData() {
-        String excelFilePath = "reading_habits_dataset.xlsx";
-        FileInputStream inputStream = null;
-        Workbook workbook = null;
-        
-        try {
-            // Check if file exists
-            File excelFile = findExcelFile(excelFilePath);
-            if (excelFile == null || !excelFile.exists()) {
-                LOGGER.severe("Excel file not found for user data import.");
-                throw new DatabaseException("Excel file not found for user data import.");
+        new ExcelImporter(importTarget(), EXCEL_FILE_NAME).importUsers();
+    }
+
+    /**
+     * Lets the Excel importer write through this manager, keeping its caches current.
+     */
+    private ImportTarget importTarget() {
+        return new ImportTarget() {
+            @Override
+            public boolean containsUser(int userID) {
+                return idRegistry().containsUser(userID);
             }
-            
-            inputStream = new FileInputStream(excelFile);
-            workbook = new XSSFWorkbook(inputStream);
-            
-            // Check if User sheet exists
-            Sheet userSheet = null;
-            for (int i = 0; i < workbook.getNumberOfSheets(); i++) {
-                if ("User".equalsIgnoreCase(workbook.getSheetName(i))) {
-                    userSheet = workbook.getSheetAt(i);
-                    break;
-                }
+
+            @Override
+            public boolean containsHabit(int habitID) {
+                return idRegistry().containsHabit(habitID);
             }
-            
-            if (userSheet == null) {
-                LOGGER.warning("No 'User' sheet found in Excel file. Will generate random user data.");
-                return;
+
+            @Override
+            public String resolveTitle(String title) {
+                return titleIndex().resolve(title);
             }
-            
-            LOGGER.info("Found User sheet. Importing user data...");
-            
-            // Skip header row
-            for (int i = 1; i <= userSheet.getLastRowNum(); i++) {
-                try {
-                    Row row = userSheet.getRow(i);
-                    if (row != null) {
-                        // Read user data
-                        int userID = (int) row.getCell(0).getNumericCellValue();
-                        int age = (int) row.getCell(1).getNumericCellValue();
-                        
-                        // Get gender (could be string 'm'/'f' or 'Male'/'Female')
-                        String gender;
-                        Cell genderCell = row.getCell(2);
-                        if (genderCell.getCellType() == CellType.STRING) {
-                            String rawGender = genderCell.getStringCellValue().trim().toLowerCase();
-                            if (rawGender.startsWith("m")) {
-                                gender = "Male";
-                            } else if (rawGender.startsWith("f")) {
-                                gender = "Female";
-                            } else {
-                                gender = "Other";
-                            }
-                        } else {
-                            // Default to random gender if cell type is unexpected
-                            gender = random.nextBoolean() ? "Male" : "Female";
-                        }
-                        
-                        // Set name to "User [ID]"
-                        String name = "User " + userID;
-                        
-                        // Check if this user already exists (it might have been added during reading habit import)
-                        if (!existingUserIds.contains(userID)) {
-                            addUser(userID, age, gender, name);
-                            existingUserIds.add(userID);
-                        } else {
-                            // Update existing user with correct age and gender from User sheet
-                            updateUser(userID, age, gender, name);
-                        }
-                    }
-                } catch (Exception e) {
-                    LOGGER.log(Level.WARNING, "Error processing user row " + i, e);
-                    // Continue with next row instead of aborting the entire import
-                }
+
+            @Override
+            public void addUser(int userID, int age, String gender, String name) {
+                DatabaseManager.this.addUser(userID, age, gender, name);
             }
-            
-            LOGGER.info("User data imported successfully.");
-            
-        } catch (Exception e) {
-            LOGGER.log(Level.SEVERE, "Error importing user data", e);
-            throw new DatabaseException("Failed to import user data", e);
-        } finally {
-            try {
-                if (workbook != null) {
-                    workbook.close();
-                }
-                if (inputStream != null) {
-                    inputStream.close();
-                }
-            } catch (Exception e) {
-                LOGGER.log(Level.WARNING, "Error closing resources", e);
+
+            @Override
+            public void updateUser(int userID, int age, String gender, String name) {
+                DatabaseManager.this.updateUser(userID, age, gender, name);
             }
-        }
+
+            @Override
+            public void addReadingHabit(int habitID, String book, int pagesRead, LocalDateTime submissionMoment,
+                                        int userID) {
+                DatabaseManager.this.addReadingHabit(habitID, book, pagesRead, submissionMoment, userID);
+            }
+
+            @Override
+            public void flush() {
+                // Rows are written immediately and committed by the caller
+            }
+        };
     }
-    
-    private void updateUser(int userID, int age, String gender, String name) {
+
+    void updateUser(int userID, int age, String gender, String name) {
         String sql = "UPDATE User SET age = ?, gender = ?, Name = ? WHERE userID = ?";
         
         try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
@@ -185,22 +385,18 @@ public class DatabaseManager implements AutoCloseable {
             pstmt.setString(3, name);
             pstmt.setInt(4, userID);
             pstmt.executeUpdate();
+            cohortAnalytics = null;
         } catch (SQLException e) {
-            System.out.println("Error updating user: " + e.getMessage());
+            LOGGER.log(Level.SEVERE, "Error updating user", e);
+            throw new DatabaseException("Failed to update user", e);
         }
     }
     
     private void createUserTable() {
-        String sql = "CREATE TABLE IF NOT EXISTS User (\n"
-                + "    userID INTEGER PRIMARY KEY,\n"
-                + "    age INTEGER,\n"
-                + "    gender TEXT\n"
-                + ");";
-        
         try (Statement stmt = connection.createStatement()) {
-            stmt.execute(sql);
+            stmt.execute(Schema.CREATE_USER_TABLE);
             
-            // Check if Name column exists, if not add it
+            // Databases created before the Name column existed need it added
             DatabaseMetaData meta = connection.getMetaData();
             ResultSet rs = meta.getColumns(null, null, "User", "Name");
             
@@ -216,50 +412,14 @@ public class DatabaseManager implements AutoCloseable {
     }
 
     private void createReadingHabitTable() {
-        String sql = "CREATE TABLE IF NOT EXISTS ReadingHabit (\n"
-                + "    habitID INTEGER PRIMARY KEY,\n"
-                + "    book TEXT,\n"
-                + "    pagesRead INTEGER,\n"
-                + "    submissionMoment DATETIME,\n"
-                + "    user INTEGER,\n"
-                + "    FOREIGN KEY (user) REFERENCES User(userID)\n"
-                + ");";
-        
         try (Statement stmt = connection.createStatement()) {
-            stmt.execute(sql);
+            stmt.execute(Schema.CREATE_READING_HABIT_TABLE);
         } catch (SQLException e) {
             System.out.println("Error creating ReadingHabit table: " + e.getMessage());
         }
     }
 
-    private File findExcelFile(String filename) {
-        // Try current directory first
-        File excelFile = new File(filename);
-        if (excelFile.exists()) {
-            LOGGER.info("Excel file found at: " + excelFile.getAbsolutePath());
-            return excelFile;
-        }
-        
-        // Try other common locations
-        String[] possiblePaths = {
-            "./reading_habits_dataset.xlsx",
-            "../reading_habits_dataset.xlsx",
-            "src/main/resources/reading_habits_dataset.xlsx"
-        };
-        
-        for (String path : possiblePaths) {
-            File alternative = new File(path);
-            if (alternative.exists()) {
-                LOGGER.info("Found Excel file at alternative location: " + alternative.getAbsolutePath());
-                return alternative;
-            }
-        }
-        
-        LOGGER.severe("Excel file not found in any of the expected locations.");
-        throw new DatabaseException("Excel file not found. Please ensure reading_habits_dataset.xlsx is in the project root directory.");
-    }
-
-    private void addUser(int userID, int age, String gender, String name) {
+    void addUser(int userID, int age, String gender, String name) {
         String sql = "INSERT INTO User(userID, age, gender, Name) VALUES(?, ?, ?, ?)";
         
         try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
@@ -268,12 +428,17 @@ public class DatabaseManager implements AutoCloseable {
             pstmt.setString(3, gender);
             pstmt.setString(4, name);
             pstmt.executeUpdate();
+            idRegistry().addUser(userID);
+            if (cohortAnalytics != null && !cohortAnalytics.addUser(userID, age, gender)) {
+                cohortAnalytics = null;
+            }
         } catch (SQLException e) {
-            System.out.println("Error adding user: " + e.getMessage());
+            LOGGER.log(Level.SEVERE, "Error adding user", e);
+            throw new DatabaseException("Failed to add user", e);
         }
     }
 
-    private void addReadingHabit(int habitID, String book, int pagesRead, LocalDateTime submissionMoment, int userID) {
+    void addReadingHabit(int habitID, String book, int pagesRead, LocalDateTime submissionMoment, int userID) {
         String sql = "INSERT INTO ReadingHabit(habitID, book, pagesRead, submissionMoment, user) VALUES(?, ?, ?, datetime(?), ?)";
         
         try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
@@ -283,13 +448,24 @@ public class DatabaseManager implements AutoCloseable {
             pstmt.setString(4, submissionMoment.toString().replace('T', ' ')); // Convert to SQLite datetime format
             pstmt.setInt(5, userID);
             pstmt.executeUpdate();
+            idRegistry().addHabit(habitID);
+            if (recommendationIndex != null) {
+                recommendationIndex.addHabit(userID, book);
+            }
+            if (cohortAnalytics != null) {
+                cohortAnalytics.addHabit(userID, book, pagesRead);
+            }
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Error adding reading habit", e);
             throw new DatabaseException("Failed to add reading habit", e);
         }
     }
 
-    public void addUser(String name, int age, String gender) {
+    /**
+     * Adds a user and returns the ID the database assigned to it.
+     */
+    @Override
+    public int addUser(String name, int age, String gender) {
         if (name == null || name.trim().isEmpty()) {
             throw new IllegalArgumentException("Name cannot be null or empty");
         }
@@ -306,8 +482,23 @@ public class DatabaseManager implements AutoCloseable {
             pstmt.setInt(2, age);
             pstmt.setString(3, gender.trim());
             pstmt.executeUpdate();
+            int userID = 0;
+            try (ResultSet keys = pstmt.getGeneratedKeys()) {
+                if (keys.next()) {
+                    userID = keys.getInt(1);
+                    if (idRegistry != null) {
+                        idRegistry.addUser(userID);
+                    }
+                    if (cohortAnalytics != null && !cohortAnalytics.addUser(userID, age, gender.trim())) {
+                        cohortAnalytics = null;
+                    }
+                    recordChanges(Collections.singletonList(new ChangeEvent.UserAdded(
+                            System.currentTimeMillis(), userID, name.trim(), age, gender.trim())));
+                }
+            }
             commitTransaction();
             LOGGER.info("User added successfully: " + name);
+            return userID;
         } catch (SQLException e) {
             rollbackTransaction();
             LOGGER.log(Level.SEVERE, "Error adding user", e);
@@ -315,18 +506,32 @@ public class DatabaseManager implements AutoCloseable {
         }
     }
 
-    public void getReadingHabitsForUser(String input) {
+    /**
+     * Returns the reading habits of the user with the given ID, or of every user whose
+     * name contains the given text.
+     */
+    @Override
+    public List<ReadingHabit> findReadingHabitsForUser(String input) {
         if (input == null || input.trim().isEmpty()) {
             throw new IllegalArgumentException("Input cannot be null or empty");
         }
 
+        if (input.matches("\\d+") && Integer.parseInt(input) <= 0) {
+            throw new IllegalArgumentException("User ID must be positive");
+        }
+
+        try (ReadReplica.Lease read = readConnection()) {
+            return queryReadingHabits(read.getConnection(), input);
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Error retrieving reading habits", e);
+            throw new DatabaseException("Failed to retrieve reading habits", e);
+        }
+    }
+
+    static List<ReadingHabit> queryReadingHabits(Connection read, String input) throws SQLException {
         String sql;
         if (input.matches("\\d+")) {
             // If input is a number, search by userID
-            int userID = Integer.parseInt(input);
-            if (userID <= 0) {
-                throw new IllegalArgumentException("User ID must be positive");
-            }
             sql = "SELECT rh.* FROM ReadingHabit rh WHERE rh.user = ?";
         } else {
             // If input is text, search by name
@@ -335,38 +540,33 @@ public class DatabaseManager implements AutoCloseable {
                   "WHERE u.Name LIKE ?";
         }
 
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (PreparedStatement pstmt = read.prepareStatement(sql)) {
             if (input.matches("\\d+")) {
                 pstmt.setInt(1, Integer.parseInt(input));
             } else {
                 pstmt.setString(1, "%" + input.trim() + "%");
             }
             
+            List<ReadingHabit> habits = new ArrayList<>();
             try (ResultSet rs = pstmt.executeQuery()) {
-                boolean found = false;
                 while (rs.next()) {
-                    found = true;
-                    String dateStr = rs.getString("submissionMoment");
-                    System.out.printf("Book: %s, Pages Read: %d, Date: %s%n",
+                    habits.add(new ReadingHabit(
+                            rs.getInt("habitID"),
                             rs.getString("book"),
                             rs.getInt("pagesRead"),
-                            dateStr);
-                }
-                if (!found) {
-                    if (input.matches("\\d+")) {
-                        System.out.println("No reading habits found for user ID " + input);
-                    } else {
-                        System.out.println("No reading habits found for user name containing '" + input + "'");
-                    }
+                            LocalDateTime.parse(rs.getString("submissionMoment"), SQLITE_DATE_TIME),
+                            rs.getInt("user")));
                 }
             }
-        } catch (SQLException e) {
-            LOGGER.log(Level.SEVERE, "Error retrieving reading habits", e);
-            throw new DatabaseException("Failed to retrieve reading habits", e);
+            return habits;
         }
     }
 
-    public void changeBookTitle(String oldTitle, String newTitle) {
+    /**
+     * Renames a title and returns the number of records changed.
+     */
+    @Override
+    public int changeBookTitle(String oldTitle, String newTitle) {
         if (oldTitle == null || oldTitle.trim().isEmpty()) {
             throw new IllegalArgumentException("Old title cannot be null or empty");
         }
@@ -374,21 +574,48 @@ public class DatabaseManager implements AutoCloseable {
             throw new IllegalArgumentException("New title cannot be null or empty");
         }
 
+        // Every stored spelling of the old title is renamed, and renaming onto a variant of
+        // an existing title merges into that title's spelling
+        List<String> oldSpellings = storedVariants(oldTitle);
+        String targetTitle = titleIndex().rename(oldTitle, newTitle);
         String sql = "UPDATE ReadingHabit SET book = ? WHERE book = ?";
         try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setString(1, newTitle.trim());
-            pstmt.setString(2, oldTitle.trim());
-            int updated = pstmt.executeUpdate();
+            int updated = 0;
+            List<ChangeEvent> events = new ArrayList<>();
+            for (String oldSpelling : oldSpellings) {
+                pstmt.setString(1, targetTitle);
+                pstmt.setString(2, oldSpelling);
+                int renamed = pstmt.executeUpdate();
+                if (renamed > 0) {
+                    events.add(new ChangeEvent.BookRenamed(System.currentTimeMillis(), oldSpelling, targetTitle, renamed));
+                    updated += renamed;
+                }
+            }
+            recordChanges(events);
             commitTransaction();
+            if (updated == 0) {
+                titleIndex = null;
+            } else {
+                habitsChanged();
+            }
+            if (!targetTitle.equals(newTitle.trim())) {
+                System.out.println("Merged into existing title '" + targetTitle + "'");
+            }
             System.out.println("Updated " + updated + " records");
+            return updated;
         } catch (SQLException e) {
+            titleIndex = null;
             rollbackTransaction();
             LOGGER.log(Level.SEVERE, "Error changing book title", e);
             throw new DatabaseException("Failed to change book title", e);
         }
     }
 
-    public void deleteReadingHabit(int habitID) {
+    /**
+     * Deletes a reading habit and returns the number of records removed, 0 or 1.
+     */
+    @Override
+    public int deleteReadingHabit(int habitID) {
         if (habitID <= 0) {
             throw new IllegalArgumentException("Habit ID must be positive");
         }
@@ -397,8 +624,19 @@ public class DatabaseManager implements AutoCloseable {
         try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
             pstmt.setInt(1, habitID);
             int deleted = pstmt.executeUpdate();
+            if (deleted > 0) {
+                recordChanges(Collections.singletonList(new ChangeEvent.HabitDeleted(
+                        System.currentTimeMillis(), habitID)));
+            }
             commitTransaction();
+            if (deleted > 0) {
+                habitsChanged();
+                if (idRegistry != null) {
+                    idRegistry.removeHabit(habitID);
+                }
+            }
             System.out.println("Deleted " + deleted + " record(s)");
+            return deleted;
         } catch (SQLException e) {
             rollbackTransaction();
             LOGGER.log(Level.SEVERE, "Error deleting reading habit", e);
@@ -406,79 +644,554 @@ public class DatabaseManager implements AutoCloseable {
         }
     }
 
-    public void getMeanUserAge() {
-        String sql = "SELECT AVG(age) as mean_age FROM User";
+    /**
+     * Renames many titles at once. Like {@link #changeBookTitle(String, String)}, every
+     * stored spelling of an old title is renamed. The spellings are loaded into a
+     * temporary table and applied with a single set-based UPDATE inside one transaction.
+     * With dryRun set, only the number of affected records is reported and nothing is
+     * changed.
+     */
+    public int bulkChangeBookTitles(Map<String, String> renames, boolean dryRun) {
+        if (renames == null) {
+            throw new IllegalArgumentException("Title mapping cannot be null");
+        }
+
+        long start = System.nanoTime();
+        try {
+            // Spellings are looked up before any rename, because the UPDATE sees the stored titles
+            List<List<String>> oldSpellings = new ArrayList<>();
+            int spellingCount = 0;
+            for (Map.Entry<String, String> rename : renames.entrySet()) {
+                if (rename.getKey() == null || rename.getKey().trim().isEmpty()) {
+                    throw new IllegalArgumentException("Old title cannot be null or empty");
+                }
+                if (rename.getValue() == null || rename.getValue().trim().isEmpty()) {
+                    throw new IllegalArgumentException("New title cannot be null or empty");
+                }
+                List<String> spellings = storedVariants(rename.getKey());
+                oldSpellings.add(spellings);
+                spellingCount += spellings.size();
+            }
+            logBulkStep("Bulk rename", String.format("found %d stored spelling(s) of %d title(s)",
+                    spellingCount, renames.size()), start);
+
+            try (Statement stmt = connection.createStatement()) {
+                stmt.execute("CREATE TEMP TABLE IF NOT EXISTS bulk_title_rename ("
+                        + "oldTitle TEXT PRIMARY KEY, newTitle TEXT NOT NULL)");
+                stmt.execute("DELETE FROM bulk_title_rename");
+            }
+
+            String insertSql = "INSERT OR REPLACE INTO bulk_title_rename(oldTitle, newTitle) VALUES(?, ?)";
+            try (PreparedStatement pstmt = connection.prepareStatement(insertSql)) {
+                int loaded = 0;
+                int mapping = 0;
+                for (Map.Entry<String, String> rename : renames.entrySet()) {
+                    // A dry run only counts the old titles, so it leaves the title index alone
+                    String targetTitle = dryRun ? rename.getValue().trim()
+                            : titleIndex().rename(rename.getKey(), rename.getValue());
+                    for (String oldSpelling : oldSpellings.get(mapping++)) {
+                        pstmt.setString(1, oldSpelling);
+                        pstmt.setString(2, targetTitle);
+                        pstmt.addBatch();
+                        loaded = flushBulkBatch(pstmt, loaded + 1, spellingCount, "title spellings");
+                    }
+                }
+                pstmt.executeBatch();
+            }
+
+            int affected;
+            if (dryRun) {
+                affected = countRows("SELECT COUNT(*) FROM ReadingHabit "
+                        + "WHERE book IN (SELECT oldTitle FROM bulk_title_rename)");
+                discardTransaction();
+                logBulkStep("Bulk rename", "counted " + affected + " record(s)", start);
+                System.out.println("Dry run: " + affected + " records would be updated");
+            } else {
+                List<ChangeEvent> events = renameEvents();
+                recordChanges(events);
+                logBulkStep("Bulk rename", "recorded " + events.size() + " change event(s)", start);
+                try (Statement stmt = connection.createStatement()) {
+                    affected = stmt.executeUpdate("UPDATE ReadingHabit SET book = r.newTitle "
+                            + "FROM bulk_title_rename r WHERE ReadingHabit.book = r.oldTitle");
+                    stmt.execute("DELETE FROM bulk_title_rename");
+                }
+                logBulkStep("Bulk rename", "updated " + affected + " record(s)", start);
+                commitTransaction();
+                logBulkStep("Bulk rename", "committed", start);
+                // Renamed once per mapping, the index is out of step after chained or swapped renames
+                titleIndex = null;
+                habitsChanged();
+                System.out.println("Updated " + affected + " records");
+            }
+            return affected;
+        } catch (SQLException | RuntimeException e) {
+            if (dryRun) {
+                discardTransaction();
+            } else {
+                titleIndex = null;
+                rollbackTransaction();
+            }
+            LOGGER.log(Level.SEVERE, "Error changing book titles in bulk", e);
+            if (e instanceof IllegalArgumentException) {
+                throw (IllegalArgumentException) e;
+            }
+            throw new DatabaseException("Failed to change book titles in bulk", e);
+        }
+    }
+
+    /**
+     * Reads a tab-separated mapping file with one "old title&lt;TAB&gt;new title" pair per
+     * line and applies it with {@link #bulkChangeBookTitles(Map, boolean)}. Blank lines
+     * and lines starting with '#' are ignored.
+     */
+    public int bulkChangeBookTitles(File mappingFile, boolean dryRun) {
+        Map<String, String> renames = new LinkedHashMap<>();
+        int lineNumber = 0;
+        for (String line : readBulkFile(mappingFile)) {
+            lineNumber++;
+            String[] parts = line.split("\t", -1);
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Line " + lineNumber + " of " + mappingFile.getName()
+                        + " must contain exactly one tab between old and new title");
+            }
+            renames.put(parts[0], parts[1]);
+        }
+        return bulkChangeBookTitles(renames, dryRun);
+    }
+
+    /**
+     * Deletes many reading habits at once. The IDs are loaded into a temporary table and
+     * removed with a single DELETE ... WHERE habitID IN (SELECT ...) inside one
+     * transaction. With dryRun set, only the number of matching records is reported.
+     */
+    public int bulkDeleteReadingHabits(Collection<Integer> habitIDs, boolean dryRun) {
+        if (habitIDs == null) {
+            throw new IllegalArgumentException("Habit IDs cannot be null");
+        }
+
+        long start = System.nanoTime();
+        try {
+            try (Statement stmt = connection.createStatement()) {
+                stmt.execute("CREATE TEMP TABLE IF NOT EXISTS bulk_habit_delete (habitID INTEGER PRIMARY KEY)");
+                stmt.execute("DELETE FROM bulk_habit_delete");
+            }
+
+            String insertSql = "INSERT OR IGNORE INTO bulk_habit_delete(habitID) VALUES(?)";
+            try (PreparedStatement pstmt = connection.prepareStatement(insertSql)) {
+                int loaded = 0;
+                for (Integer habitID : habitIDs) {
+                    if (habitID == null || habitID <= 0) {
+                        throw new IllegalArgumentException("Habit ID must be positive");
+                    }
+                    pstmt.setInt(1, habitID);
+                    pstmt.addBatch();
+                    loaded = flushBulkBatch(pstmt, loaded + 1, habitIDs.size(), "habit IDs");
+                }
+                pstmt.executeBatch();
+            }
+
+            int affected;
+            if (dryRun) {
+                affected = countRows("SELECT COUNT(*) FROM ReadingHabit "
+                        + "WHERE habitID IN (SELECT habitID FROM bulk_habit_delete)");
+                discardTransaction();
+                logBulkStep("Bulk delete", "counted " + affected + " record(s)", start);
+                System.out.println("Dry run: " + affected + " record(s) would be deleted");
+            } else {
+                List<ChangeEvent> events = deleteEvents();
+                recordChanges(events);
+                logBulkStep("Bulk delete", "recorded " + events.size() + " change event(s)", start);
+                try (Statement stmt = connection.createStatement()) {
+                    affected = stmt.executeUpdate("DELETE FROM ReadingHabit "
+                            + "WHERE habitID IN (SELECT habitID FROM bulk_habit_delete)");
+                    stmt.execute("DELETE FROM bulk_habit_delete");
+                }
+                logBulkStep("Bulk delete", "deleted " + affected + " record(s)", start);
+                commitTransaction();
+                logBulkStep("Bulk delete", "committed", start);
+                habitsChanged();
+                if (idRegistry != null) {
+                    for (Integer habitID : habitIDs) {
+                        idRegistry.removeHabit(habitID);
+                    }
+                }
+                System.out.println("Deleted " + affected + " record(s)");
+            }
+            return affected;
+        } catch (SQLException | RuntimeException e) {
+            if (dryRun) {
+                discardTransaction();
+            } else {
+                rollbackTransaction();
+            }
+            LOGGER.log(Level.SEVERE, "Error deleting reading habits in bulk", e);
+            if (e instanceof IllegalArgumentException) {
+                throw (IllegalArgumentException) e;
+            }
+            throw new DatabaseException("Failed to delete reading habits in bulk", e);
+        }
+    }
+
+    /**
+     * Reads one habit ID per line and deletes them with
+     * {@link #bulkDeleteReadingHabits(Collection, boolean)}. Blank lines and lines
+     * starting with '#' are ignored.
+     */
+    public int bulkDeleteReadingHabits(File idFile, boolean dryRun) {
+        List<Integer> habitIDs = new ArrayList<>();
+        int lineNumber = 0;
+        for (String line : readBulkFile(idFile)) {
+            lineNumber++;
+            try {
+                habitIDs.add(Integer.parseInt(line.trim()));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Line " + lineNumber + " of " + idFile.getName()
+                        + " is not a valid habit ID: " + line, e);
+            }
+        }
+        return bulkDeleteReadingHabits(habitIDs, dryRun);
+    }
+
+    private List<ChangeEvent> renameEvents() throws SQLException {
+        List<ChangeEvent> events = new ArrayList<>();
+        if (changeLog == null) {
+            return events;
+        }
+        long now = System.currentTimeMillis();
+        String sql = "SELECT r.oldTitle, r.newTitle, COUNT(*) FROM bulk_title_rename r "
+                + "JOIN ReadingHabit rh ON rh.book = r.oldTitle GROUP BY r.oldTitle, r.newTitle";
         try (Statement stmt = connection.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
-            if (rs.next()) {
-                double meanAge = rs.getDouble("mean_age");
-                System.out.printf("Mean user age: %.2f%n", meanAge);
+            while (rs.next()) {
+                events.add(new ChangeEvent.BookRenamed(now, rs.getString(1), rs.getString(2), rs.getInt(3)));
+            }
+        }
+        return events;
+    }
+
+    private List<ChangeEvent> deleteEvents() throws SQLException {
+        List<ChangeEvent> events = new ArrayList<>();
+        if (changeLog == null) {
+            return events;
+        }
+        long now = System.currentTimeMillis();
+        String sql = "SELECT habitID FROM ReadingHabit WHERE habitID IN (SELECT habitID FROM bulk_habit_delete)";
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            while (rs.next()) {
+                events.add(new ChangeEvent.HabitDeleted(now, rs.getInt(1)));
+            }
+        }
+        return events;
+    }
+
+    private int flushBulkBatch(PreparedStatement pstmt, int loaded, int total, String label) throws SQLException {
+        if (loaded % BULK_BATCH_SIZE == 0) {
+            pstmt.executeBatch();
+        }
+        if (loaded % BULK_PROGRESS_INTERVAL == 0 || loaded == total) {
+            LOGGER.info(String.format("Loaded %d/%d %s", loaded, total, label));
+        }
+        return loaded;
+    }
+
+    private static void logBulkStep(String operation, String step, long start) {
+        LOGGER.info(String.format("%s: %s after %d ms", operation, step, (System.nanoTime() - start) / 1_000_000));
+    }
+
+    private int countRows(String sql) throws SQLException {
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    private List<String> readBulkFile(File file) {
+        if (file == null || !file.isFile()) {
+            throw new IllegalArgumentException("Bulk input file not found: " + file);
+        }
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.trim().isEmpty() && !line.startsWith("#")) {
+                    lines.add(line);
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Error reading bulk input file", e);
+            throw new DatabaseException("Failed to read bulk input file " + file.getName(), e);
+        }
+        return lines;
+    }
+
+    /**
+     * Returns pairs of stored titles that probably name the same book: titles whose
+     * canonical forms are identical, followed by titles whose trigram similarity is at
+     * least {@code minSimilarity}.
+     */
+    public List<TitleIndex.MergeSuggestion> suggestTitleMerges(double minSimilarity) {
+        List<TitleIndex.MergeSuggestion> suggestions = new ArrayList<>();
+        TitleIndex index = titleIndex();
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT DISTINCT book FROM ReadingHabit WHERE book IS NOT NULL")) {
+            while (rs.next()) {
+                String book = rs.getString("book");
+                if (book.trim().isEmpty()) {
+                    continue;
+                }
+                String stored = index.resolve(book);
+                if (!stored.equals(book)) {
+                    suggestions.add(new TitleIndex.MergeSuggestion(book, stored, 1.0));
+                }
             }
         } catch (SQLException e) {
-            LOGGER.log(Level.SEVERE, "Error calculating mean user age", e);
-            throw new DatabaseException("Failed to calculate mean user age", e);
+            LOGGER.log(Level.SEVERE, "Error retrieving book titles", e);
+            throw new DatabaseException("Failed to retrieve book titles", e);
+        }
+        suggestions.addAll(index.suggestMerges(minSimilarity));
+        return suggestions;
+    }
+
+    IdRegistry idRegistry() {
+        if (idRegistry == null) {
+            idRegistry = IdRegistry.load(connection);
+        }
+        return idRegistry;
+    }
+
+    /**
+     * Every spelling of the title stored in ReadingHabit, or the title itself if none is.
+     */
+    private List<String> storedVariants(String title) {
+        return storedVariants(titleIndex(), title);
+    }
+
+    static List<String> storedVariants(TitleIndex index, String title) {
+        List<String> spellings = index.storedVariants(title);
+        return spellings.isEmpty() ? Collections.singletonList(title.trim()) : spellings;
+    }
+
+    TitleIndex titleIndex() {
+        if (titleIndex == null) {
+            titleIndex = loadTitleIndex(connection);
         }
+        return titleIndex;
     }
 
-    public void getUserCountForBook(String bookTitle) {
+    static TitleIndex loadTitleIndex(Connection read) {
+        TitleIndex index = new TitleIndex();
+        try (Statement stmt = read.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT DISTINCT book FROM ReadingHabit WHERE book IS NOT NULL")) {
+            while (rs.next()) {
+                String book = rs.getString("book");
+                if (!book.trim().isEmpty()) {
+                    index.addStoredTitle(book);
+                }
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Error loading book titles", e);
+            throw new DatabaseException("Failed to load book titles", e);
+        }
+        return index;
+    }
+
+    /**
+     * Ranks by Jaccard similarity of the reader sets. The co-occurrence index is built on
+     * first use and rebuilt after renames or deletes.
+     */
+    @Override
+    public List<CoOccurrenceIndex.Recommendation> findBooksAlsoRead(String bookTitle) {
         if (bookTitle == null || bookTitle.trim().isEmpty()) {
             throw new IllegalArgumentException("Book title cannot be null or empty");
         }
+        return recommendationIndex().topSimilar(bookTitle, RECOMMENDATION_COUNT, CoOccurrenceIndex.Similarity.JACCARD);
+    }
 
-        String sql = "SELECT COUNT(DISTINCT user) as user_count FROM ReadingHabit WHERE book = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setString(1, bookTitle.trim());
-            try (ResultSet rs = pstmt.executeQuery()) {
-                if (rs.next()) {
-                    int count = rs.getInt("user_count");
-                    System.out.printf("Number of users who read '%s': %d%n", bookTitle, count);
+    /**
+     * Streams every distinct (user, book) pair in the ReadingHabit table to the visitor.
+     */
+    public void visitUserBooks(UserBookVisitor visitor) {
+        visitUserBooks(connection, visitor);
+    }
+
+    static void visitUserBooks(Connection read, UserBookVisitor visitor) {
+        String sql = "SELECT DISTINCT user, book FROM ReadingHabit WHERE user IS NOT NULL AND book IS NOT NULL";
+        try (Statement stmt = read.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            while (rs.next()) {
+                String book = rs.getString(2);
+                if (!book.trim().isEmpty()) {
+                    visitor.visit(rs.getInt(1), book);
+                }
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Error reading user book histories", e);
+            throw new DatabaseException("Failed to read user book histories", e);
+        }
+    }
+
+    private CoOccurrenceIndex recommendationIndex() {
+        if (recommendationIndex == null) {
+            recommendationIndex = loadRecommendationIndex(connection);
+        }
+        return recommendationIndex;
+    }
+
+    static CoOccurrenceIndex loadRecommendationIndex(Connection read) {
+        long start = System.nanoTime();
+        CoOccurrenceIndex.Builder builder = CoOccurrenceIndex.builder();
+        visitUserBooks(read, builder::add);
+        CoOccurrenceIndex index = builder.build();
+        LOGGER.info(String.format("Built co-occurrence index for %d books in %d ms",
+                index.getBookCount(), (System.nanoTime() - start) / 1_000_000));
+        return index;
+    }
+
+    /**
+     * The statistics are built on first use, kept current as users and habits are added,
+     * and rebuilt after renames, deletes or user updates.
+     */
+    @Override
+    public List<CohortSummary> findCohortStatistics() {
+        CohortAnalytics analytics = cohortAnalytics();
+        List<CohortSummary> summaries = new ArrayList<>(analytics.summarize(COHORT_TOP_TITLES));
+        summaries.add(analytics.total(COHORT_TOP_TITLES));
+        return summaries;
+    }
+
+    private CohortAnalytics cohortAnalytics() {
+        if (cohortAnalytics == null) {
+            long start = System.nanoTime();
+            CohortAnalytics.Builder builder = CohortAnalytics.builder();
+            try (Statement stmt = connection.createStatement()) {
+                try (ResultSet rs = stmt.executeQuery("SELECT userID, age, gender FROM User")) {
+                    while (rs.next()) {
+                        int age = rs.getInt(2);
+                        builder.addUser(rs.getInt(1), rs.wasNull() ? -1 : age, rs.getString(3));
+                    }
+                }
+                String habitSql = "SELECT user, book, pagesRead FROM ReadingHabit WHERE user IS NOT NULL AND book IS NOT NULL";
+                try (ResultSet rs = stmt.executeQuery(habitSql)) {
+                    while (rs.next()) {
+                        String book = rs.getString(2);
+                        if (!book.trim().isEmpty()) {
+                            builder.addHabit(rs.getInt(1), book, rs.getInt(3));
+                        }
+                    }
                 }
+            } catch (SQLException e) {
+                LOGGER.log(Level.SEVERE, "Error reading users and habits for cohort statistics", e);
+                throw new DatabaseException("Failed to read users and habits for cohort statistics", e);
             }
+            cohortAnalytics = builder.build();
+            LOGGER.info(String.format("Built cohort statistics for %d users in %d ms",
+                    cohortAnalytics.getUserCount(), (System.nanoTime() - start) / 1_000_000));
+        }
+        return cohortAnalytics;
+    }
+
+    @Override
+    public double findMeanUserAge() {
+        String sql = "SELECT AVG(age) as mean_age FROM User";
+        try (ReadReplica.Lease read = readConnection();
+             Statement stmt = read.getConnection().createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            return rs.next() ? rs.getDouble("mean_age") : 0.0;
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Error calculating mean user age", e);
+            throw new DatabaseException("Failed to calculate mean user age", e);
+        }
+    }
+
+    @Override
+    public int findUserCountForBook(String bookTitle) {
+        if (bookTitle == null || bookTitle.trim().isEmpty()) {
+            throw new IllegalArgumentException("Book title cannot be null or empty");
+        }
+
+        List<String> spellings = storedVariants(bookTitle);
+        try (ReadReplica.Lease read = readConnection()) {
+            return countReaders(read.getConnection(), spellings);
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Error counting users for book", e);
             throw new DatabaseException("Failed to count users for book", e);
         }
     }
 
-    public void getTotalPagesRead() {
+    static int countReaders(Connection read, List<String> spellings) throws SQLException {
+        String sql = "SELECT COUNT(DISTINCT user) as user_count FROM ReadingHabit WHERE book IN ("
+                + String.join(", ", Collections.nCopies(spellings.size(), "?")) + ")";
+        try (PreparedStatement pstmt = read.prepareStatement(sql)) {
+            for (int i = 0; i < spellings.size(); i++) {
+                pstmt.setString(i + 1, spellings.get(i));
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getInt("user_count") : 0;
+            }
+        }
+    }
+
+    @Override
+    public long findTotalPagesRead() {
         String sql = "SELECT SUM(pagesRead) as total_pages FROM ReadingHabit";
-        try (Statement stmt = connection.createStatement();
+        try (ReadReplica.Lease read = readConnection();
+             Statement stmt = read.getConnection().createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
-            if (rs.next()) {
-                int totalPages = rs.getInt("total_pages");
-                System.out.printf("Total pages read by all users: %d%n", totalPages);
-            }
+            return rs.next() ? rs.getLong("total_pages") : 0;
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Error calculating total pages read", e);
             throw new DatabaseException("Failed to calculate total pages read", e);
         }
     }
 
-    public void getUsersWithMultipleBooks() {
+    @Override
+    public int findUsersWithMultipleBooks() {
         String sql = "SELECT COUNT(*) as user_count FROM (SELECT user FROM ReadingHabit GROUP BY user HAVING COUNT(DISTINCT book) > 1)";
-        try (Statement stmt = connection.createStatement();
+        try (ReadReplica.Lease read = readConnection();
+             Statement stmt = read.getConnection().createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
-            if (rs.next()) {
-                int count = rs.getInt("user_count");
-                System.out.printf("Number of users who read multiple books: %d%n", count);
-            }
+            return rs.next() ? rs.getInt("user_count") : 0;
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Error counting users with multiple books", e);
             throw new DatabaseException("Failed to count users with multiple books", e);
         }
     }
 
+    @Override
     public void viewDatabaseStructure() {
-        System.out.println("\n=== Database Structure Overview ===\n");
+        // One lease for every section, so they all describe the same copy
+        try (ReadReplica.Lease lease = readConnection()) {
+            printDatabaseStructure(lease.getConnection(), System.out);
+        }
+    }
+
+    /**
+     * Returns the overview {@link #viewDatabaseStructure()} prints, as text.
+     */
+    @Override
+    public String describeDatabaseStructure() {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (ReadReplica.Lease lease = readConnection();
+             PrintStream out = new PrintStream(buffer, false, StandardCharsets.UTF_8.name())) {
+            printDatabaseStructure(lease.getConnection(), out);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+        return new String(buffer.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private void printDatabaseStructure(Connection read, PrintStream out) {
+        out.println("\n=== Database Structure Overview ===\n");
         
         // View Users
-        System.out.println("Users:");
-        System.out.println("----------------------------------------");
+        out.println("Users:");
+        out.println("----------------------------------------");
         String userSql = "SELECT userID, Name, age, gender FROM User ORDER BY userID";
-        try (Statement stmt = connection.createStatement();
+        try (Statement stmt = read.createStatement();
              ResultSet rs = stmt.executeQuery(userSql)) {
             while (rs.next()) {
-                System.out.printf("ID: %d | Name: %s | Age: %d | Gender: %s%n",
+                out.printf("ID: %d | Name: %s | Age: %d | Gender: %s%n",
                     rs.getInt("userID"),
                     rs.getString("Name"),
                     rs.getInt("age"),
@@ -490,23 +1203,23 @@ public class DatabaseManager implements AutoCloseable {
         }
 
         // View Books and Reading Statistics
-        System.out.println("\nBooks and Reading Statistics:");
-        System.out.println("----------------------------------------");
+        out.println("\nBooks and Reading Statistics:");
+        out.println("----------------------------------------");
         String bookSql = "SELECT book, COUNT(*) as read_count, " +
                         "SUM(pagesRead) as total_pages, " +
                         "COUNT(DISTINCT user) as unique_readers " +
                         "FROM ReadingHabit " +
                         "GROUP BY book " +
                         "ORDER BY read_count DESC";
-        try (Statement stmt = connection.createStatement();
+        try (Statement stmt = read.createStatement();
              ResultSet rs = stmt.executeQuery(bookSql)) {
             while (rs.next()) {
-                System.out.printf("Book: %s%n", rs.getString("book"));
-                System.out.printf("  Times read: %d | Total pages: %d | Unique readers: %d%n",
+                out.printf("Book: %s%n", rs.getString("book"));
+                out.printf("  Times read: %d | Total pages: %d | Unique readers: %d%n",
                     rs.getInt("read_count"),
                     rs.getInt("total_pages"),
                     rs.getInt("unique_readers"));
-                System.out.println("----------------------------------------");
+                out.println("----------------------------------------");
             }
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Error retrieving book statistics", e);
@@ -514,26 +1227,26 @@ public class DatabaseManager implements AutoCloseable {
         }
 
         // View Users without Reading Habits
-        System.out.println("\nUsers without Reading Habits:");
-        System.out.println("----------------------------------------");
+        out.println("\nUsers without Reading Habits:");
+        out.println("----------------------------------------");
         String inactiveUsersSql = "SELECT u.userID, u.Name, u.age, u.gender " +
                                 "FROM User u " +
                                 "LEFT JOIN ReadingHabit rh ON u.userID = rh.user " +
                                 "WHERE rh.habitID IS NULL " +
                                 "ORDER BY u.userID";
-        try (Statement stmt = connection.createStatement();
+        try (Statement stmt = read.createStatement();
              ResultSet rs = stmt.executeQuery(inactiveUsersSql)) {
             boolean found = false;
             while (rs.next()) {
                 found = true;
-                System.out.printf("ID: %d | Name: %s | Age: %d | Gender: %s%n",
+                out.printf("ID: %d | Name: %s | Age: %d | Gender: %s%n",
                     rs.getInt("userID"),
                     rs.getString("Name"),
                     rs.getInt("age"),
                     rs.getString("gender"));
             }
             if (!found) {
-                System.out.println("No users without reading habits found.");
+                out.println("No users without reading habits found.");
             }
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Error retrieving inactive users", e);
@@ -541,8 +1254,8 @@ public class DatabaseManager implements AutoCloseable {
         }
 
         // View Reading Habits Summary
-        System.out.println("\nReading Habits Summary:");
-        System.out.println("----------------------------------------");
+        out.println("\nReading Habits Summary:");
+        out.println("----------------------------------------");
         String summarySql = "SELECT " +
                           "COUNT(DISTINCT u.userID) as total_users, " +
                           "COUNT(DISTINCT rh.user) as users_with_habits, " +
@@ -551,16 +1264,16 @@ public class DatabaseManager implements AutoCloseable {
                           "SUM(rh.pagesRead) as total_pages_read " +
                           "FROM User u " +
                           "LEFT JOIN ReadingHabit rh ON u.userID = rh.user";
-        try (Statement stmt = connection.createStatement();
+        try (Statement stmt = read.createStatement();
              ResultSet rs = stmt.executeQuery(summarySql)) {
             if (rs.next()) {
-                System.out.printf("Total Users in Database: %d%n", rs.getInt("total_users"));
-                System.out.printf("Users with Reading Habits: %d%n", rs.getInt("users_with_habits"));
-                System.out.printf("Users without Reading Habits: %d%n", 
+                out.printf("Total Users in Database: %d%n", rs.getInt("total_users"));
+                out.printf("Users with Reading Habits: %d%n", rs.getInt("users_with_habits"));
+                out.printf("Users without Reading Habits: %d%n", 
                     rs.getInt("total_users") - rs.getInt("users_with_habits"));
-                System.out.printf("Total Books: %d%n", rs.getInt("total_books"));
-                System.out.printf("Total Reading Records: %d%n", rs.getInt("total_reading_records"));
-                System.out.printf("Total Pages Read: %d%n", rs.getInt("total_pages_read"));
+                out.printf("Total Books: %d%n", rs.getInt("total_books"));
+                out.printf("Total Reading Records: %d%n", rs.getInt("total_reading_records"));
+                out.printf("Total Pages Read: %d%n", rs.getInt("total_pages_read"));
             }
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Error retrieving reading habits summary", e);
@@ -568,83 +1281,16 @@ public class DatabaseManager implements AutoCloseable {
         }
     }
 
-    private void importExcelData() {
-        String excelFilePath = "reading_habits_dataset.xlsx";
-        File excelFile = findExcelFile(excelFilePath);
-        
-        if (excelFile == null || !excelFile.exists()) {
-            LOGGER.warning("Excel file not found for data import.");
-            return;
-        }
-
-        try (FileInputStream inputStream = new FileInputStream(excelFile);
-             Workbook workbook = new XSSFWorkbook(inputStream)) {
-            
-            Sheet sheet = workbook.getSheetAt(0);
-            LOGGER.info("Found " + sheet.getLastRowNum() + " rows in Excel file.");
-            
-            // Skip header row
-            for (int i = 1; i <= sheet.getLastRowNum(); i++) {
-                try {
-                    Row row = sheet.getRow(i);
-                    if (row != null) {
-                        // Read data from Excel
-                        int habitID = (int) row.getCell(0).getNumericCellValue();
-                        int userID = (int) row.getCell(1).getNumericCellValue();
-                        int pagesRead = (int) row.getCell(2).getNumericCellValue();
-                        
-                        // Handle book title
-                        String book;
-                        Cell bookCell = row.getCell(3);
-                        if (bookCell.getCellType() == CellType.STRING) {
-                            book = bookCell.getStringCellValue().trim();
-                        } else if (bookCell.getCellType() == CellType.NUMERIC) {
-                            book = String.valueOf(bookCell.getNumericCellValue()).trim();
-                        } else {
-                            LOGGER.warning("Invalid book title format for habitID " + habitID + ", using 'Unknown'");
-                            book = "Unknown";
-                        }
-                        
-                        // Handle submission moment
-                        Cell dateCell = row.getCell(4);
-                        LocalDateTime submissionMoment;
-                        
-                        if (dateCell != null && dateCell.getCellType() == CellType.NUMERIC && DateUtil.isCellDateFormatted(dateCell)) {
-                            submissionMoment = dateCell.getLocalDateTimeCellValue();
-                        } else {
-                            submissionMoment = LocalDateTime.now();
-                            LOGGER.warning("Using current time for habitID " + habitID + " as date was not in correct format");
-                        }
-                        
-                        // Add user if not already added
-                        if (!existingUserIds.contains(userID)) {
-                            int age = 18 + random.nextInt(48); // 18-65
-                            String gender = random.nextBoolean() ? "Male" : "Female";
-                            String name = "User " + userID;
-                            
-                            addUser(userID, age, gender, name);
-                            existingUserIds.add(userID);
-                        }
-                        
-                        // Add reading habit
-                        addReadingHabit(habitID, book, pagesRead, submissionMoment, userID);
-                    }
-                } catch (Exception e) {
-                    LOGGER.log(Level.WARNING, "Error processing row " + i, e);
-                    // Continue with next row instead of aborting the entire import
-                }
-            }
-            
-            LOGGER.info("Excel data imported successfully.");
-            
-        } catch (Exception e) {
-            LOGGER.log(Level.SEVERE, "Error importing Excel data", e);
-            throw new DatabaseException("Failed to import Excel data", e);
-        }
-    }
-
     @Override
     public void close() {
+        if (readReplica != null) {
+            readReplica.close();
+            readReplica = null;
+        }
+        if (pointReader != null) {
+            pointReader.close();
+            pointReader = null;
+        }
         try {
             if (connection != null && !connection.isClosed()) {
                 connection.close();
@@ -657,6 +1303,11 @@ public class DatabaseManager implements AutoCloseable {
         }
     }
 
+    @FunctionalInterface
+    public interface UserBookVisitor {
+        void visit(int userID, String book);
+    }
+
     // Custom exception class
     public static class DatabaseException extends RuntimeException {
         public DatabaseException(String message) {
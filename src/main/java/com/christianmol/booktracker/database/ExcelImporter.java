@@ -0,0 +1,384 @@
+package com.christianmol.booktracker.database;
+
+import com.christianmol.booktracker.catalog.TitleNormalizer;
+import com.christianmol.booktracker.database.DatabaseManager.DatabaseException;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.time.LocalDateTime;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+/**
+ * Reads the Excel dataset into a {@link DatabaseManager} or a sharded database through
+ * an {@link ImportTarget}.
+ *
+ * <p>This is the only class that uses Apache POI. Keeping it separate means POI is
+ * loaded only when an import actually runs, not on every start.</p>
+ *
+ * <p>Each row's cells are checked by type before they are read. Rows that fail go to a
+ * {@link RejectFile} with a reason code, and every sheet ends with one summary log
+ * line.</p>
+ */
+class ExcelImporter {
+    private static final Logger LOGGER = Logger.getLogger(ExcelImporter.class.getName());
+    private static final int MAX_AGE = 150;
+    private final ImportTarget target;
+    private final String fileName;
+    private final Random random = new Random();
+    private final DataFormatter formatter = new DataFormatter();
+    // Created next to the workbook once it is found, and shared by both sheets
+    private RejectFile rejects;
+
+    ExcelImporter(ImportTarget target, String fileName) {
+        this.target = target;
+        this.fileName = fileName;
+    }
+
+    /**
+     * Imports the reading habits on the first sheet, creating users with generated
+     * details for user IDs that are not known yet. Returns the number of habits skipped
+     * because they already exist.
+     */
+    int importHabits() {
+        File excelFile = findExcelFile(fileName);
+        
+        if (excelFile == null || !excelFile.exists()) {
+            LOGGER.warning("Excel file not found for data import.");
+            return 0;
+        }
+        openRejects(excelFile);
+
+        try (FileInputStream inputStream = new FileInputStream(excelFile);
+             Workbook workbook = new XSSFWorkbook(inputStream)) {
+            
+            Sheet sheet = workbook.getSheetAt(0);
+            LOGGER.info("Found " + sheet.getLastRowNum() + " rows in Excel file.");
+            rejects.begin(sheet.getSheetName());
+            int imported = 0;
+            int skippedHabits = 0;
+            int defaultedDates = 0;
+            int defaultedTitles = 0;
+            
+            // Skip header row
+            for (int i = 1; i <= sheet.getLastRowNum(); i++) {
+                Row row = sheet.getRow(i);
+                if (row == null) {
+                    continue;
+                }
+                
+                // Check cell presence and types before reading anything
+                RejectFile.Reason reason = checkWholeNumber(row.getCell(0), 1,
+                        RejectFile.Reason.MISSING_HABIT_ID, RejectFile.Reason.INVALID_HABIT_ID);
+                if (reason == null) {
+                    reason = checkWholeNumber(row.getCell(1), 1,
+                            RejectFile.Reason.MISSING_USER_ID, RejectFile.Reason.INVALID_USER_ID);
+                }
+                if (reason == null) {
+                    reason = checkWholeNumber(row.getCell(2), 0,
+                            RejectFile.Reason.MISSING_PAGES, RejectFile.Reason.INVALID_PAGES);
+                }
+                if (reason == null && isBlank(row.getCell(3))) {
+                    reason = RejectFile.Reason.MISSING_BOOK;
+                }
+                if (reason != null) {
+                    rejects.reject(i + 1, reason, null, cellValues(row));
+                    continue;
+                }
+                
+                int habitID = (int) row.getCell(0).getNumericCellValue();
+                int userID = (int) row.getCell(1).getNumericCellValue();
+                int pagesRead = (int) row.getCell(2).getNumericCellValue();
+                
+                // Skip habits that are already in the database, e.g. on a re-import
+                if (target.containsHabit(habitID)) {
+                    skippedHabits++;
+                    continue;
+                }
+                
+                // Handle book title
+                String book;
+                Cell bookCell = row.getCell(3);
+                if (valueType(bookCell) == CellType.STRING) {
+                    book = target.resolveTitle(bookCell.getStringCellValue());
+                } else if (valueType(bookCell) == CellType.NUMERIC) {
+                    book = target.resolveTitle(TitleNormalizer.fromNumber(bookCell.getNumericCellValue()));
+                } else {
+                    book = "Unknown";
+                    defaultedTitles++;
+                }
+                
+                // Handle submission moment
+                Cell dateCell = row.getCell(4);
+                LocalDateTime submissionMoment;
+                if (dateCell != null && valueType(dateCell) == CellType.NUMERIC && DateUtil.isCellDateFormatted(dateCell)) {
+                    submissionMoment = dateCell.getLocalDateTimeCellValue();
+                } else {
+                    submissionMoment = LocalDateTime.now();
+                    defaultedDates++;
+                }
+                
+                try {
+                    // Add user if not already added
+                    if (!target.containsUser(userID)) {
+                        int age = 18 + random.nextInt(48); // 18-65
+                        String gender = random.nextBoolean() ? "Male" : "Female";
+                        String name = "User " + userID;
+                        
+                        target.addUser(userID, age, gender, name);
+                    }
+                    
+                    target.addReadingHabit(habitID, book, pagesRead, submissionMoment, userID);
+                    imported++;
+                } catch (DatabaseException e) {
+                    rejects.reject(i + 1, RejectFile.Reason.DATABASE_ERROR, rootMessage(e), cellValues(row));
+                }
+            }
+            
+            target.flush();
+            logSummary("reading habit", sheet.getSheetName(), imported, skippedHabits,
+                    (defaultedDates > 0 ? ", " + defaultedDates + " given the current time for a missing date" : "")
+                            + (defaultedTitles > 0 ? ", " + defaultedTitles + " titled 'Unknown'" : ""));
+            return skippedHabits;
+            
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error importing Excel data", e);
+            throw new DatabaseException("Failed to import Excel data", e);
+        } finally {
+            if (rejects != null) {
+                rejects.close();
+            }
+        }
+    }
+
+    /**
+     * Imports the "User" sheet, adding users that are missing and updating age and
+     * gender of users that were created while importing habits.
+     */
+    void importUsers() {
+        String excelFilePath = fileName;
+        FileInputStream inputStream = null;
+        Workbook workbook = null;
+        
+        try {
+            // Check if file exists
+            File excelFile = findExcelFile(excelFilePath);
+            if (excelFile == null || !excelFile.exists()) {
+                LOGGER.severe("Excel file not found for user data import.");
+                throw new DatabaseException("Excel file not found for user data import.");
+            }
+            openRejects(excelFile);
+            
+            inputStream = new FileInputStream(excelFile);
+            workbook = new XSSFWorkbook(inputStream);
+            
+            // Check if User sheet exists
+            Sheet userSheet = null;
+            for (int i = 0; i < workbook.getNumberOfSheets(); i++) {
+                if ("User".equalsIgnoreCase(workbook.getSheetName(i))) {
+                    userSheet = workbook.getSheetAt(i);
+                    break;
+                }
+            }
+            
+            if (userSheet == null) {
+                LOGGER.warning("No 'User' sheet found in Excel file. Will generate random user data.");
+                return;
+            }
+            
+            LOGGER.info("Found User sheet. Importing user data...");
+            rejects.begin(userSheet.getSheetName());
+            int imported = 0;
+            int defaultedGenders = 0;
+            
+            // Skip header row
+            for (int i = 1; i <= userSheet.getLastRowNum(); i++) {
+                Row row = userSheet.getRow(i);
+                if (row == null) {
+                    continue;
+                }
+                
+                RejectFile.Reason reason = checkWholeNumber(row.getCell(0), 1,
+                        RejectFile.Reason.MISSING_USER_ID, RejectFile.Reason.INVALID_USER_ID);
+                if (reason == null) {
+                    reason = checkWholeNumber(row.getCell(1), 0,
+                            RejectFile.Reason.MISSING_AGE, RejectFile.Reason.INVALID_AGE);
+                }
+                if (reason == null && row.getCell(1).getNumericCellValue() > MAX_AGE) {
+                    reason = RejectFile.Reason.INVALID_AGE;
+                }
+                if (reason != null) {
+                    rejects.reject(i + 1, reason, null, cellValues(row));
+                    continue;
+                }
+                
+                int userID = (int) row.getCell(0).getNumericCellValue();
+                int age = (int) row.getCell(1).getNumericCellValue();
+                
+                // Get gender (could be string 'm'/'f' or 'Male'/'Female')
+                String gender;
+                Cell genderCell = row.getCell(2);
+                if (genderCell != null && valueType(genderCell) == CellType.STRING) {
+                    String rawGender = genderCell.getStringCellValue().trim().toLowerCase();
+                    if (rawGender.startsWith("m")) {
+                        gender = "Male";
+                    } else if (rawGender.startsWith("f")) {
+                        gender = "Female";
+                    } else {
+                        gender = "Other";
+                    }
+                } else {
+                    // Default to random gender if the cell is missing or of an unexpected type
+                    gender = random.nextBoolean() ? "Male" : "Female";
+                    defaultedGenders++;
+                }
+                
+                // Set name to "User [ID]"
+                String name = "User " + userID;
+                
+                try {
+                    // Check if this user already exists (it might have been added during reading habit import)
+                    if (!target.containsUser(userID)) {
+                        target.addUser(userID, age, gender, name);
+                    } else {
+                        // Update existing user with correct age and gender from User sheet
+                        target.updateUser(userID, age, gender, name);
+                    }
+                    imported++;
+                } catch (DatabaseException e) {
+                    rejects.reject(i + 1, RejectFile.Reason.DATABASE_ERROR, rootMessage(e), cellValues(row));
+                }
+            }
+            
+            target.flush();
+            logSummary("user", userSheet.getSheetName(), imported, 0,
+                    defaultedGenders > 0 ? ", " + defaultedGenders + " given a random gender" : "");
+            
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error importing user data", e);
+            throw new DatabaseException("Failed to import user data", e);
+        } finally {
+            try {
+                if (workbook != null) {
+                    workbook.close();
+                }
+                if (inputStream != null) {
+                    inputStream.close();
+                }
+            } catch (Exception e) {
+                LOGGER.log(Level.WARNING, "Error closing resources", e);
+            }
+            if (rejects != null) {
+                rejects.close();
+            }
+        }
+    }
+
+    /**
+     * Returns null if the cell holds a whole number of at least min, otherwise the reason
+     * to reject the row. Checks types only, so a bad cell costs no exception.
+     */
+    private static RejectFile.Reason checkWholeNumber(Cell cell, int min, RejectFile.Reason missing,
+                                                     RejectFile.Reason invalid) {
+        if (isBlank(cell)) {
+            return missing;
+        }
+        if (valueType(cell) != CellType.NUMERIC) {
+            return invalid;
+        }
+        double value = cell.getNumericCellValue();
+        if (value != Math.rint(value) || value < min || value > Integer.MAX_VALUE) {
+            return invalid;
+        }
+        return null;
+    }
+
+    /**
+     * The type of the cell's value; for a formula that is the type of its cached result,
+     * so a formula such as {@code =A2+1} counts as a number.
+     */
+    private static CellType valueType(Cell cell) {
+        return cell.getCellType() == CellType.FORMULA ? cell.getCachedFormulaResultType() : cell.getCellType();
+    }
+
+    private static boolean isBlank(Cell cell) {
+        return cell == null || valueType(cell) == CellType.BLANK
+                || (valueType(cell) == CellType.STRING && cell.getStringCellValue().trim().isEmpty());
+    }
+
+    /**
+     * The row's cells as displayed in Excel, separated by " | ". Only built for rejected
+     * rows.
+     */
+    private String cellValues(Row row) {
+        StringBuilder values = new StringBuilder();
+        for (int c = 0; c < row.getLastCellNum(); c++) {
+            if (c > 0) {
+                values.append(" | ");
+            }
+            values.append(formatter.formatCellValue(row.getCell(c)));
+        }
+        return values.toString();
+    }
+
+    private static String rootMessage(Throwable e) {
+        while (e.getCause() != null) {
+            e = e.getCause();
+        }
+        return e.getMessage();
+    }
+
+    /**
+     * Logs one line per sheet instead of one per problem row.
+     */
+    private void logSummary(String kind, String sheetName, int imported, int skipped, String defaults) {
+        int rejected = rejects.getRejectedCount();
+        String summary = String.format("Imported %d %s row(s) from sheet '%s'%s%s", imported, kind, sheetName,
+                skipped > 0 ? ", skipped " + skipped + " already present" : "", defaults);
+        if (rejected > 0) {
+            LOGGER.warning(summary + String.format(", rejected %d (%s), see %s", rejected, rejects.countsByReason(),
+                    rejects.getFile().getAbsolutePath()));
+        } else {
+            LOGGER.info(summary);
+        }
+    }
+
+    private void openRejects(File excelFile) {
+        if (rejects == null) {
+            String baseName = excelFile.getName().replaceFirst("\\.xlsx$", "");
+            File directory = excelFile.getAbsoluteFile().toPath().normalize().getParent().toFile();
+            rejects = new RejectFile(new File(directory, baseName + "-rejects.csv"));
+        }
+    }
+
+    private File findExcelFile(String filename) {
+        // Try current directory first
+        File excelFile = new File(filename);
+        if (excelFile.exists()) {
+            LOGGER.info("Excel file found at: " + excelFile.getAbsolutePath());
+            return excelFile;
+        }
+        
+        // Try other common locations
+        String[] possiblePaths = {
+            "./reading_habits_dataset.xlsx",
+            "../reading_habits_dataset.xlsx",
+            "src/main/resources/reading_habits_dataset.xlsx"
+        };
+        
+        for (String path : possiblePaths) {
+            File alternative = new File(path);
+            if (alternative.exists()) {
+                LOGGER.info("Found Excel file at alternative location: " + alternative.getAbsolutePath());
+                return alternative;
+            }
+        }
+        
+        LOGGER.severe("Excel file not found in any of the expected locations.");
+        throw new DatabaseException("Excel file not found. Please ensure reading_habits_dataset.xlsx is in the project root directory.");
+    }
+}
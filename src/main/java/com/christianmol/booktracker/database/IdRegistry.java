@@ -0,0 +1,89 @@
+package com.christianmol.booktracker.database;
+
+import com.christianmol.booktracker.database.DatabaseManager.DatabaseException;
+import com.christianmol.booktracker.util.RoaringIntSet;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Tracks which user and habit IDs already exist, so imports can decide between insert,
+ * update and skip without a database round trip per row. Both ID sets are compressed
+ * {@link RoaringIntSet}s, which keep tens of millions of dense IDs in a few megabytes.
+ */
+public class IdRegistry {
+    private static final Logger LOGGER = Logger.getLogger(IdRegistry.class.getName());
+    private static final int FETCH_SIZE = 10000;
+
+    private final RoaringIntSet userIds = new RoaringIntSet();
+    private final RoaringIntSet habitIds = new RoaringIntSet();
+
+    /**
+     * Builds a registry from the User and ReadingHabit tables, streaming each ID column
+     * once.
+     */
+    public static IdRegistry load(Connection connection) {
+        IdRegistry registry = new IdRegistry();
+        long start = System.nanoTime();
+        try {
+            loadIds(connection, "SELECT userID FROM User", registry.userIds);
+            loadIds(connection, "SELECT habitID FROM ReadingHabit", registry.habitIds);
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Error loading existing IDs", e);
+            throw new DatabaseException("Failed to load existing IDs", e);
+        }
+        LOGGER.info(String.format("Loaded %d user ID(s) and %d habit ID(s) in %d ms",
+                registry.userIds.size(), registry.habitIds.size(), (System.nanoTime() - start) / 1_000_000));
+        return registry;
+    }
+
+    private static void loadIds(Connection connection, String sql, RoaringIntSet ids) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.setFetchSize(FETCH_SIZE);
+            try (ResultSet rs = stmt.executeQuery(sql)) {
+                while (rs.next()) {
+                    ids.add(rs.getInt(1));
+                }
+            }
+        }
+    }
+
+    public synchronized boolean containsUser(int userID) {
+        return userIds.contains(userID);
+    }
+
+    public synchronized void addUser(int userID) {
+        userIds.add(userID);
+    }
+
+    public synchronized boolean containsHabit(int habitID) {
+        return habitIds.contains(habitID);
+    }
+
+    public synchronized void addHabit(int habitID) {
+        habitIds.add(habitID);
+    }
+
+    public synchronized void removeHabit(int habitID) {
+        habitIds.remove(habitID);
+    }
+
+    public synchronized long getUserCount() {
+        return userIds.size();
+    }
+
+    public synchronized long getHabitCount() {
+        return habitIds.size();
+    }
+
+    /**
+     * Approximate heap footprint of both ID sets in bytes.
+     */
+    public synchronized long sizeInBytes() {
+        return userIds.sizeInBytes() + habitIds.sizeInBytes();
+    }
+}
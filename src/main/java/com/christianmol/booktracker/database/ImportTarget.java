@@ -0,0 +1,29 @@
+package com.christianmol.booktracker.database;
+
+import java.time.LocalDateTime;
+
+/**
+ * Where {@link ExcelImporter} writes the rows it accepts: a {@link DatabaseManager}, or
+ * the shards of a {@link ShardedDatabaseManager}.
+ */
+interface ImportTarget {
+    boolean containsUser(int userID);
+
+    boolean containsHabit(int habitID);
+
+    /**
+     * Returns the stored spelling of a title, registering the title if it is new.
+     */
+    String resolveTitle(String title);
+
+    void addUser(int userID, int age, String gender, String name);
+
+    void updateUser(int userID, int age, String gender, String name);
+
+    void addReadingHabit(int habitID, String book, int pagesRead, LocalDateTime submissionMoment, int userID);
+
+    /**
+     * Writes out rows that are still buffered. Called at the end of every sheet.
+     */
+    void flush();
+}
@@ -0,0 +1,421 @@
+package com.christianmol.booktracker.database;
+
+import com.christianmol.booktracker.database.DatabaseManager.DatabaseException;
+import org.sqlite.ProgressHandler;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps the database healthy while the application is running: hot backups through the
+ * SQLite backup API, incremental vacuuming, statistics refresh and integrity checks.
+ *
+ * <p>All work runs on one low-priority daemon thread with its own connection. The only
+ * way maintenance can slow down the foreground is by holding the database lock, so every
+ * task is measured by how long it holds it, and the longest hold of any task is reported
+ * in {@link #getStatus()}. Compaction is done in small incremental_vacuum steps whose
+ * size adapts to keep every step under {@code maxStepMillis}. The integrity check runs
+ * {@code quick_check} one table at a time and abandons a table that takes longer than
+ * {@link #MAX_CHECK_STEP_MILLIS}. Both pause between steps for as long as the step
+ * took. A backup copies the whole database in one step, because that is how the driver
+ * runs the backup API; its read lock only delays commits in rollback journal modes, not
+ * in WAL.</p>
+ */
+public class MaintenanceService implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(MaintenanceService.class.getName());
+    private static final int BACKUPS_TO_KEEP = 5;
+    private static final int MIN_VACUUM_PAGES = 8;
+    private static final int MAX_VACUUM_PAGES = 4096;
+    private static final int ANALYSIS_LIMIT = 1000;
+    private static final int PROGRESS_INTERVAL = 1000;
+    /** Longest a single table's integrity check may hold the database lock. */
+    public static final long MAX_CHECK_STEP_MILLIS = 1000;
+
+    private final File databaseFile;
+    private final File backupDirectory;
+    private final String backupPrefix;
+    private final Pattern backupName;
+    private final long maxStepMillis;
+    private final ScheduledExecutorService scheduler;
+    private Connection connection;
+
+    private int vacuumPages = 64;
+    private volatile String lastBackup = "never";
+    private volatile String lastCompaction = "never";
+    private volatile String lastAnalyze = "never";
+    private volatile String lastIntegrityCheck = "never";
+    private volatile long maxObservedStepMillis;
+
+    /**
+     * Keeps backups in a {@code backups} directory next to the database file, so each
+     * database gets its own.
+     */
+    public MaintenanceService(File databaseFile) {
+        this(databaseFile, new File(databaseFile.getAbsoluteFile().getParentFile(), "backups"));
+    }
+
+    public MaintenanceService(File databaseFile, File backupDirectory) {
+        this(databaseFile, backupDirectory, 50);
+    }
+
+    public MaintenanceService(File databaseFile, File backupDirectory, long maxStepMillis) {
+        if (databaseFile == null || backupDirectory == null) {
+            throw new IllegalArgumentException("Database file and backup directory cannot be null");
+        }
+        if (maxStepMillis <= 0) {
+            throw new IllegalArgumentException("Maximum step duration must be positive");
+        }
+        this.databaseFile = databaseFile;
+        this.backupDirectory = backupDirectory;
+        // Backups are named after the database, e.g. books-20250101-120000.db for books.db,
+        // and only those are pruned, so databases can share a backup directory
+        String name = databaseFile.getName();
+        int dot = name.lastIndexOf('.');
+        this.backupPrefix = (dot > 0 ? name.substring(0, dot) : name) + "-";
+        this.backupName = Pattern.compile(Pattern.quote(backupPrefix) + "\\d{8}-\\d{6}\\.db");
+        this.maxStepMillis = maxStepMillis;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "booktracker-maintenance");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    /**
+     * Whether the database uses incremental auto-vacuum, which compaction needs. New
+     * databases get it from storage profiles that set {@code auto_vacuum} to INCREMENTAL.
+     */
+    public synchronized boolean isIncrementalVacuumEnabled() {
+        try (Statement stmt = connection().createStatement()) {
+            return pragmaLong(stmt, "PRAGMA auto_vacuum") == 2;
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Error reading auto-vacuum mode", e);
+            throw new DatabaseException("Failed to read auto-vacuum mode", e);
+        }
+    }
+
+    /**
+     * Switches an existing database to incremental auto-vacuum. This needs one full
+     * VACUUM, which rewrites the file and locks out every other connection until it is
+     * done, so it only runs when asked for explicitly, before the application serves
+     * requests.
+     */
+    public synchronized void enableIncrementalVacuum() {
+        try (Statement stmt = connection().createStatement()) {
+            if (pragmaLong(stmt, "PRAGMA auto_vacuum") != 2) {
+                long start = System.nanoTime();
+                stmt.execute("PRAGMA auto_vacuum = INCREMENTAL");
+                stmt.execute("VACUUM");
+                LOGGER.info(String.format("Enabled incremental auto-vacuum in %d ms", elapsedMillis(start)));
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Error enabling incremental auto-vacuum", e);
+            throw new DatabaseException("Failed to enable incremental auto-vacuum", e);
+        }
+    }
+
+    /**
+     * Schedules the recurring tasks. Intervals are in minutes; a value of 0 disables
+     * that task.
+     */
+    public void start(long backupMinutes, long compactionMinutes, long analyzeMinutes, long integrityMinutes) {
+        schedule(this::backupNow, backupMinutes);
+        schedule(this::compactNow, compactionMinutes);
+        schedule(this::analyzeNow, analyzeMinutes);
+        schedule(this::checkIntegrity, integrityMinutes);
+        LOGGER.info("Database maintenance scheduled.");
+    }
+
+    private void schedule(Runnable task, long minutes) {
+        if (minutes <= 0) {
+            return;
+        }
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Maintenance task failed", e);
+            }
+        }, minutes, minutes, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Copies the live database into a timestamped file in the backup directory using the
+     * SQLite online backup API, then removes all but the newest backups.
+     */
+    public synchronized File backupNow() {
+        if (!backupDirectory.isDirectory() && !backupDirectory.mkdirs()) {
+            throw new DatabaseException("Failed to create backup directory " + backupDirectory.getAbsolutePath());
+        }
+        String timestamp = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+        File target = new File(backupDirectory, backupPrefix + timestamp + ".db");
+        long start = System.nanoTime();
+        try (Statement stmt = connection().createStatement()) {
+            stmt.executeUpdate("backup to \"" + target.getAbsolutePath() + "\"");
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Error backing up database", e);
+            throw new DatabaseException("Failed to back up database", e);
+        }
+        // The copy is a single backup step, so the lock is held for all of it
+        long millis = elapsedMillis(start);
+        recordLockHold(millis);
+        lastBackup = String.format("%s (%d KB, %d ms)", target.getName(), target.length() / 1024, millis);
+        LOGGER.info("Backup written: " + lastBackup);
+        pruneBackups();
+        return target;
+    }
+
+    /**
+     * Returns free pages to the file system in small steps. Each step is one
+     * {@code PRAGMA incremental_vacuum(n)} call; n is halved when a step exceeds the cap
+     * and doubled when it finishes well below it.
+     */
+    public synchronized void compactNow() {
+        long start = System.nanoTime();
+        int steps = 0;
+        long pagesFreed = 0;
+        long longestStep = 0;
+        try (Statement stmt = connection().createStatement()) {
+            if (pragmaLong(stmt, "PRAGMA auto_vacuum") != 2) {
+                lastCompaction = "skipped, incremental auto-vacuum is not enabled";
+                return;
+            }
+            long freePages = pragmaLong(stmt, "PRAGMA freelist_count");
+            while (freePages > 0) {
+                long stepStart = System.nanoTime();
+                // The JDBC driver steps the pragma only once, which releases a single page,
+                // so a step is one transaction of vacuumPages single-page statements
+                Connection conn = connection();
+                conn.setAutoCommit(false);
+                try {
+                    for (int i = 0; i < vacuumPages && i < freePages; i++) {
+                        try (Statement vacuum = conn.createStatement()) {
+                            vacuum.execute("PRAGMA incremental_vacuum(1)");
+                        }
+                    }
+                    conn.commit();
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                } finally {
+                    conn.setAutoCommit(true);
+                }
+                long stepMillis = elapsedMillis(stepStart);
+                long remaining = pragmaLong(stmt, "PRAGMA freelist_count");
+                pagesFreed += freePages - remaining;
+                if (remaining >= freePages) {
+                    // Nothing was released (e.g. auto-vacuum is not incremental); stop trying
+                    break;
+                }
+                freePages = remaining;
+                steps++;
+                longestStep = Math.max(longestStep, stepMillis);
+
+                if (stepMillis > maxStepMillis) {
+                    vacuumPages = Math.max(MIN_VACUUM_PAGES, vacuumPages / 2);
+                } else if (stepMillis < maxStepMillis / 4) {
+                    vacuumPages = Math.min(MAX_VACUUM_PAGES, vacuumPages * 2);
+                }
+                // Leave the database to the foreground for at least as long as we held it
+                Thread.sleep(Math.max(stepMillis, 1));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (SQLException e) {
+            // The foreground holds the lock; try again on the next run
+            LOGGER.log(Level.INFO, "Compaction deferred: " + e.getMessage());
+        }
+        recordLockHold(longestStep);
+        lastCompaction = String.format("%d page(s) freed in %d step(s), longest step %d ms, total %d ms",
+                pagesFreed, steps, longestStep, elapsedMillis(start));
+        if (steps > 0) {
+            LOGGER.info("Compaction: " + lastCompaction);
+        }
+    }
+
+    /**
+     * Refreshes query planner statistics. The analysis limit keeps ANALYZE from reading
+     * whole indexes on large tables.
+     */
+    public synchronized void analyzeNow() {
+        long start = System.nanoTime();
+        try (Statement stmt = connection().createStatement()) {
+            stmt.execute("PRAGMA analysis_limit = " + ANALYSIS_LIMIT);
+            stmt.execute("ANALYZE");
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Error analyzing database", e);
+            lastAnalyze = "failed: " + e.getMessage();
+            return;
+        }
+        long millis = elapsedMillis(start);
+        recordLockHold(millis);
+        lastAnalyze = String.format("completed in %d ms", millis);
+    }
+
+    /**
+     * Runs {@code PRAGMA quick_check} on each table and returns the problems found; an
+     * empty list means every checked table is intact. quick_check verifies the b-tree
+     * structure but, unlike integrity_check, does not compare indexes with their tables.
+     * A table whose check runs past {@link #MAX_CHECK_STEP_MILLIS} is interrupted and
+     * reported as unchecked in the status.
+     */
+    public synchronized List<String> checkIntegrity() {
+        List<String> problems = new ArrayList<>();
+        List<String> unchecked = new ArrayList<>();
+        long start = System.nanoTime();
+        int tables = 0;
+        try {
+            Connection conn = connection();
+            for (String table : tableNames(conn)) {
+                long stepStart = System.nanoTime();
+                long deadline = stepStart + TimeUnit.MILLISECONDS.toNanos(MAX_CHECK_STEP_MILLIS);
+                ProgressHandler.setHandler(conn, PROGRESS_INTERVAL, new ProgressHandler() {
+                    @Override
+                    protected int progress() {
+                        return System.nanoTime() > deadline ? 1 : 0;
+                    }
+                });
+                try (Statement stmt = conn.createStatement();
+                     ResultSet rs = stmt.executeQuery("PRAGMA quick_check(\"" + table.replace("\"", "\"\"") + "\")")) {
+                    while (rs.next()) {
+                        String line = rs.getString(1);
+                        if (!"ok".equalsIgnoreCase(line)) {
+                            problems.add(line);
+                        }
+                    }
+                    tables++;
+                } catch (SQLException e) {
+                    if (System.nanoTime() <= deadline) {
+                        throw e;
+                    }
+                    unchecked.add(table);
+                } finally {
+                    ProgressHandler.clearHandler(conn);
+                }
+                long stepMillis = elapsedMillis(stepStart);
+                recordLockHold(stepMillis);
+                Thread.sleep(Math.max(stepMillis, 1));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Error checking database integrity", e);
+            throw new DatabaseException("Failed to check database integrity", e);
+        }
+        String skipped = unchecked.isEmpty() ? ""
+                : String.format(", %s not checked within %d ms", unchecked, MAX_CHECK_STEP_MILLIS);
+        if (problems.isEmpty()) {
+            lastIntegrityCheck = String.format("ok, %d table(s) (%d ms)%s", tables, elapsedMillis(start), skipped);
+        } else {
+            lastIntegrityCheck = String.format("%d problem(s) found (%d ms)%s", problems.size(), elapsedMillis(start),
+                    skipped);
+            for (String problem : problems) {
+                LOGGER.severe("Integrity check: " + problem);
+            }
+        }
+        if (!unchecked.isEmpty()) {
+            LOGGER.warning("Integrity check stopped at the time limit for " + unchecked);
+        }
+        return problems;
+    }
+
+    /**
+     * Human-readable summary of the latest maintenance runs.
+     */
+    public String getStatus() {
+        return "Last backup: " + lastBackup + System.lineSeparator()
+                + "Last compaction: " + lastCompaction + System.lineSeparator()
+                + "Last analyze: " + lastAnalyze + System.lineSeparator()
+                + "Last integrity check: " + lastIntegrityCheck + System.lineSeparator()
+                + String.format("Longest lock hold by any maintenance task so far: %d ms "
+                                + "(cap per compaction step %d ms, per integrity check step %d ms, backups uncapped)",
+                        maxObservedStepMillis, maxStepMillis, MAX_CHECK_STEP_MILLIS);
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        try {
+            scheduler.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            try {
+                if (connection != null && !connection.isClosed()) {
+                    connection.close();
+                }
+            } catch (SQLException e) {
+                LOGGER.log(Level.WARNING, "Error closing maintenance connection", e);
+            }
+            connection = null;
+        }
+    }
+
+    private Connection connection() throws SQLException {
+        if (connection == null || connection.isClosed()) {
+            connection = DriverManager.getConnection("jdbc:sqlite:" + databaseFile.getPath());
+            try (Statement stmt = connection.createStatement()) {
+                // Give up quickly instead of queueing behind foreground writers
+                stmt.execute("PRAGMA busy_timeout = " + maxStepMillis);
+            }
+        }
+        return connection;
+    }
+
+    private void recordLockHold(long millis) {
+        maxObservedStepMillis = Math.max(maxObservedStepMillis, millis);
+    }
+
+    private static List<String> tableNames(Connection conn) throws SQLException {
+        List<String> tables = new ArrayList<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(
+                     "SELECT name FROM sqlite_master WHERE type = 'table' AND name NOT LIKE 'sqlite_%' ORDER BY name")) {
+            while (rs.next()) {
+                tables.add(rs.getString(1));
+            }
+        }
+        return tables;
+    }
+
+    private void pruneBackups() {
+        File[] backups = backupDirectory.listFiles((dir, name) -> backupName.matcher(name).matches());
+        if (backups == null || backups.length <= BACKUPS_TO_KEEP) {
+            return;
+        }
+        // Timestamped names sort chronologically
+        Arrays.sort(backups);
+        for (int i = 0; i < backups.length - BACKUPS_TO_KEEP; i++) {
+            if (!backups[i].delete()) {
+                LOGGER.warning("Could not delete old backup " + backups[i].getName());
+            }
+        }
+    }
+
+    private static long pragmaLong(Statement stmt, String sql) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery(sql)) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+}
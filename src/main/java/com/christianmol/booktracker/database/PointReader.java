@@ -0,0 +1,136 @@
+package com.christianmol.booktracker.database;
+
+import com.christianmol.booktracker.catalog.TitleIndex;
+import com.christianmol.booktracker.database.DatabaseManager.DatabaseException;
+import com.christianmol.booktracker.model.ReadingHabit;
+import com.christianmol.booktracker.recommend.CoOccurrenceIndex;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A second, read-only connection to a WAL database that answers point reads while the
+ * primary connection is busy with a write. In WAL mode it reads the last committed state
+ * and never waits for the writer.
+ *
+ * <p>It keeps its own title and co-occurrence indexes, loaded from this connection, so it
+ * never touches the primary's caches. The owning {@link DatabaseManager} counts commits
+ * that changed reading habits, and the indexes are reloaded on first use after that count
+ * moved. Statements take turns on the connection; a lookup of a user's habits does not
+ * wait for an index that is being built.</p>
+ */
+public class PointReader implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(PointReader.class.getName());
+
+    private final Connection connection;
+    private final LongSupplier habitGeneration;
+    private long cachedGeneration = -1;
+    private TitleIndex titleIndex;
+    private CoOccurrenceIndex recommendationIndex;
+
+    PointReader(StorageProfile profile, LongSupplier habitGeneration) {
+        this.habitGeneration = habitGeneration;
+        try {
+            connection = DriverManager.getConnection(profile.getJdbcUrl());
+            try (Statement stmt = connection.createStatement()) {
+                profile.apply(connection);
+                stmt.execute("PRAGMA query_only = ON");
+            } catch (SQLException e) {
+                connection.close();
+                throw e;
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Error opening point read connection", e);
+            throw new DatabaseException("Failed to open point read connection", e);
+        }
+    }
+
+    /**
+     * Same as {@link DatabaseManager#findReadingHabitsForUser(String)}.
+     */
+    public List<ReadingHabit> findReadingHabitsForUser(String input) {
+        if (input == null || input.trim().isEmpty()) {
+            throw new IllegalArgumentException("Input cannot be null or empty");
+        }
+        if (input.matches("\\d+") && Integer.parseInt(input) <= 0) {
+            throw new IllegalArgumentException("User ID must be positive");
+        }
+        synchronized (connection) {
+            try {
+                return DatabaseManager.queryReadingHabits(connection, input);
+            } catch (SQLException e) {
+                LOGGER.log(Level.SEVERE, "Error retrieving reading habits", e);
+                throw new DatabaseException("Failed to retrieve reading habits", e);
+            }
+        }
+    }
+
+    /**
+     * Same as {@link DatabaseManager#findUserCountForBook(String)}.
+     */
+    public synchronized int findUserCountForBook(String bookTitle) {
+        if (bookTitle == null || bookTitle.trim().isEmpty()) {
+            throw new IllegalArgumentException("Book title cannot be null or empty");
+        }
+        dropStaleCaches();
+        synchronized (connection) {
+            try {
+                if (titleIndex == null) {
+                    titleIndex = DatabaseManager.loadTitleIndex(connection);
+                }
+                return DatabaseManager.countReaders(connection, DatabaseManager.storedVariants(titleIndex, bookTitle));
+            } catch (SQLException e) {
+                LOGGER.log(Level.SEVERE, "Error counting users for book", e);
+                throw new DatabaseException("Failed to count users for book", e);
+            }
+        }
+    }
+
+    /**
+     * Same as {@link DatabaseManager#findBooksAlsoRead(String)}.
+     */
+    public synchronized List<CoOccurrenceIndex.Recommendation> findBooksAlsoRead(String bookTitle) {
+        if (bookTitle == null || bookTitle.trim().isEmpty()) {
+            throw new IllegalArgumentException("Book title cannot be null or empty");
+        }
+        dropStaleCaches();
+        if (recommendationIndex == null) {
+            long start = System.nanoTime();
+            CoOccurrenceIndex.Builder builder = CoOccurrenceIndex.builder();
+            synchronized (connection) {
+                DatabaseManager.visitUserBooks(connection, builder::add);
+            }
+            recommendationIndex = builder.build();
+            LOGGER.info(String.format("Built co-occurrence index for %d books in %d ms",
+                    recommendationIndex.getBookCount(), (System.nanoTime() - start) / 1_000_000));
+        }
+        return recommendationIndex.topSimilar(bookTitle, DatabaseManager.RECOMMENDATION_COUNT,
+                CoOccurrenceIndex.Similarity.JACCARD);
+    }
+
+    @Override
+    public void close() {
+        synchronized (connection) {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                LOGGER.log(Level.WARNING, "Error closing point read connection", e);
+            }
+        }
+    }
+
+    private void dropStaleCaches() {
+        long generation = habitGeneration.getAsLong();
+        if (generation != cachedGeneration) {
+            cachedGeneration = generation;
+            titleIndex = null;
+            recommendationIndex = null;
+        }
+    }
+}
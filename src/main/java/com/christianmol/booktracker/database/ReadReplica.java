@@ -0,0 +1,263 @@
+package com.christianmol.booktracker.database;
+
+import com.christianmol.booktracker.changelog.ChangeLog;
+import com.christianmol.booktracker.database.DatabaseManager.DatabaseException;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * In-memory copy of the database that serves read-only queries, so long analytical
+ * reads never touch the file the writer is using.
+ *
+ * <p>The copy is made with the SQLite backup API ({@code restore from}) into a fresh
+ * {@code :memory:} connection. A refresh builds a complete new copy in the background
+ * and then swaps it in without waiting: queries hold a {@link Lease} on the copy they
+ * started with, and the old copy is closed once its last lease is released. Refreshes
+ * run periodically and whenever {@link #requestRefresh()} is called; requests that
+ * arrive while a refresh is pending are coalesced into it.</p>
+ *
+ * <p>Each request returns a ticket, and {@link #isCurrentWith(long)} tells whether a copy
+ * taken after that request has been swapped in. A writer uses this to read its own
+ * writes from the file until the replica has caught up, instead of waiting for the copy
+ * on every commit.</p>
+ */
+public class ReadReplica implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(ReadReplica.class.getName());
+    // Requests within this window share one refresh, so a burst of commits costs one copy
+    static final long REQUEST_DELAY_MILLIS = 100;
+
+    private final File databaseFile;
+    private final ScheduledExecutorService scheduler;
+    private final AtomicBoolean refreshPending = new AtomicBoolean();
+    private final AtomicLong requestedTicket = new AtomicLong();
+    private volatile long currentTicket;
+    private final AtomicReference<Copy> current = new AtomicReference<>();
+    private ChangeLog.Subscription subscription;
+    private volatile long lastRefreshMillis;
+    private volatile long lastRefreshDurationMillis;
+
+    /**
+     * Loads the first copy immediately and refreshes it every {@code refreshSeconds}.
+     */
+    public ReadReplica(File databaseFile, long refreshSeconds) {
+        if (databaseFile == null) {
+            throw new IllegalArgumentException("Database file cannot be null");
+        }
+        if (refreshSeconds <= 0) {
+            throw new IllegalArgumentException("Refresh interval must be positive");
+        }
+        this.databaseFile = databaseFile;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "booktracker-replica");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refresh();
+        scheduler.scheduleWithFixedDelay(this::refreshQuietly, refreshSeconds, refreshSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Schedules a refresh shortly, e.g. after a write was committed, and returns the
+     * ticket that refresh will cover.
+     */
+    public long requestRefresh() {
+        // Taken before the pending check, so a refresh that has not read its ticket yet covers it
+        long ticket = requestedTicket.incrementAndGet();
+        if (refreshPending.compareAndSet(false, true)) {
+            try {
+                scheduler.schedule(this::refreshQuietly, REQUEST_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (RuntimeException e) {
+                // Scheduler is shut down; the replica is being closed
+                refreshPending.set(false);
+            }
+        }
+        return ticket;
+    }
+
+    /**
+     * True once a copy taken after the request that returned {@code ticket} is in use.
+     */
+    public boolean isCurrentWith(long ticket) {
+        return currentTicket >= ticket;
+    }
+
+    /**
+     * Refreshes the copy whenever an event is appended to the change log, which lets the
+     * replica follow writes made through another {@code DatabaseManager}.
+     */
+    public synchronized void follow(ChangeLog changeLog) {
+        if (subscription != null) {
+            subscription.close();
+        }
+        subscription = changeLog.subscribe(changeLog.getEndOffset(), entry -> requestRefresh());
+    }
+
+    /**
+     * Replaces the copy with a fresh one read from the database file. Refreshes run one
+     * at a time, so a copy started earlier can never replace a newer one.
+     */
+    public synchronized void refresh() {
+        refreshPending.set(false);
+        long ticket = requestedTicket.get();
+        long start = System.currentTimeMillis();
+        Connection copy = null;
+        try {
+            copy = DriverManager.getConnection("jdbc:sqlite::memory:");
+            try (Statement stmt = copy.createStatement()) {
+                stmt.executeUpdate("restore from \"" + databaseFile.getAbsolutePath().replace("\"", "\"\"") + "\"");
+            }
+        } catch (SQLException e) {
+            closeQuietly(copy);
+            LOGGER.log(Level.SEVERE, "Error copying database into the read replica", e);
+            throw new DatabaseException("Failed to refresh read replica", e);
+        }
+
+        Copy previous = current.getAndSet(new Copy(copy));
+        if (previous != null) {
+            // Drop the replica's own reference; queries still reading it keep it open
+            previous.release();
+        }
+        currentTicket = ticket;
+        lastRefreshMillis = System.currentTimeMillis();
+        lastRefreshDurationMillis = lastRefreshMillis - start;
+        LOGGER.fine("Read replica refreshed in " + lastRefreshDurationMillis + " ms");
+    }
+
+    /**
+     * Returns the current copy for the duration of a query. A refresh never waits for
+     * open leases; the copy stays open until the last lease on it is closed.
+     */
+    public Lease acquire() {
+        while (true) {
+            Copy copy = current.get();
+            if (copy == null) {
+                throw new DatabaseException("Read replica is closed");
+            }
+            if (copy.retain()) {
+                return new Lease(copy.connection, copy);
+            }
+            // The copy was retired between reading it and retaining it; take the new one
+        }
+    }
+
+    /**
+     * Milliseconds since the epoch at which the current copy was taken.
+     */
+    public long getLastRefreshMillis() {
+        return lastRefreshMillis;
+    }
+
+    public long getLastRefreshDurationMillis() {
+        return lastRefreshDurationMillis;
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (subscription != null) {
+                subscription.close();
+                subscription = null;
+            }
+        }
+        scheduler.shutdownNow();
+        Copy last = current.getAndSet(null);
+        if (last != null) {
+            last.release();
+        }
+    }
+
+    private void refreshQuietly() {
+        try {
+            refresh();
+        } catch (RuntimeException e) {
+            // Keep serving the previous copy; the next refresh tries again
+            LOGGER.log(Level.WARNING, "Read replica refresh failed", e);
+        }
+    }
+
+    private static void closeQuietly(Connection connection) {
+        if (connection == null) {
+            return;
+        }
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Error closing read replica connection", e);
+        }
+    }
+
+    /**
+     * One in-memory copy with a count of its users: the replica itself while the copy is
+     * current, plus one per open lease. The connection closes when the count drops to 0.
+     */
+    private static final class Copy {
+        final Connection connection;
+        private final AtomicInteger references = new AtomicInteger(1);
+
+        Copy(Connection connection) {
+            this.connection = connection;
+        }
+
+        boolean retain() {
+            while (true) {
+                int count = references.get();
+                if (count == 0) {
+                    return false;
+                }
+                if (references.compareAndSet(count, count + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        void release() {
+            if (references.decrementAndGet() == 0) {
+                closeQuietly(connection);
+            }
+        }
+    }
+
+    /**
+     * A connection to read from, held until closed. Without a replica it simply wraps
+     * the primary connection.
+     */
+    public static final class Lease implements AutoCloseable {
+        private final Connection connection;
+        private final Copy copy;
+        private boolean released;
+
+        private Lease(Connection connection, Copy copy) {
+            this.connection = connection;
+            this.copy = copy;
+        }
+
+        static Lease of(Connection connection) {
+            return new Lease(connection, null);
+        }
+
+        public Connection getConnection() {
+            return connection;
+        }
+
+        @Override
+        public void close() {
+            if (copy != null && !released) {
+                released = true;
+                copy.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.christianmol.booktracker.database;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Rows an import rejected, written to a CSV file with the reason, and counted per
+ * reason for the summary line.
+ *
+ * <p>The file is only created once a row is actually rejected; a file left over from an
+ * earlier import is removed when the first sheet starts. Several sheets can be written
+ * in turn: {@link #begin(String)} resets the counters and the file is appended to.</p>
+ */
+final class RejectFile implements Closeable {
+    enum Reason {
+        MISSING_HABIT_ID,
+        INVALID_HABIT_ID,
+        MISSING_USER_ID,
+        INVALID_USER_ID,
+        MISSING_PAGES,
+        INVALID_PAGES,
+        MISSING_BOOK,
+        MISSING_AGE,
+        INVALID_AGE,
+        DATABASE_ERROR
+    }
+
+    private static final Reason[] REASONS = Reason.values();
+
+    private final File file;
+    private final int[] counts = new int[REASONS.length];
+    private String sheet;
+    private int rejected;
+    private boolean started;
+    private boolean written;
+    private BufferedWriter writer;
+
+    RejectFile(File file) {
+        this.file = file;
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    /**
+     * Starts counting the rejects of a new sheet.
+     */
+    void begin(String sheetName) {
+        if (!started) {
+            started = true;
+            try {
+                Files.deleteIfExists(file.toPath());
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to remove old reject file " + file, e);
+            }
+        }
+        sheet = sheetName;
+        rejected = 0;
+        Arrays.fill(counts, 0);
+    }
+
+    /**
+     * Records a rejected row. rowNumber is the 1-based row number shown in Excel, values
+     * the row's cells as text.
+     */
+    void reject(int rowNumber, Reason reason, String detail, String values) {
+        counts[reason.ordinal()]++;
+        rejected++;
+        try {
+            if (writer == null) {
+                writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                if (!written) {
+                    writer.write("sheet,row,reason,detail,values\n");
+                    written = true;
+                }
+            }
+            writer.write(csv(sheet));
+            writer.write(',');
+            writer.write(Integer.toString(rowNumber));
+            writer.write(',');
+            writer.write(reason.name());
+            writer.write(',');
+            writer.write(csv(detail));
+            writer.write(',');
+            writer.write(csv(values));
+            writer.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write reject file " + file, e);
+        }
+    }
+
+    int getRejectedCount() {
+        return rejected;
+    }
+
+    /**
+     * Counts of the current sheet, e.g. "MISSING_BOOK=3, INVALID_PAGES=1".
+     */
+    String countsByReason() {
+        StringBuilder summary = new StringBuilder();
+        for (Reason reason : REASONS) {
+            if (counts[reason.ordinal()] > 0) {
+                summary.append(summary.length() == 0 ? "" : ", ").append(reason).append('=').append(counts[reason.ordinal()]);
+            }
+        }
+        return summary.toString();
+    }
+
+    /**
+     * Flushes and closes the file; a later reject appends to it again.
+     */
+    @Override
+    public void close() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to close reject file " + file, e);
+        } finally {
+            writer = null;
+        }
+    }
+
+    private static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
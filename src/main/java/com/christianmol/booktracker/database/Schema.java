@@ -0,0 +1,32 @@
+package com.christianmol.booktracker.database;
+
+/**
+ * Table definitions shared by {@link DatabaseManager}, the shards of
+ * {@link ShardedDatabaseManager} and the benchmark data generator, so all of them store
+ * exactly the same schema.
+ */
+public final class Schema {
+    public static final String CREATE_USER_TABLE = "CREATE TABLE IF NOT EXISTS User (\n"
+            + "    userID INTEGER PRIMARY KEY,\n"
+            + "    age INTEGER,\n"
+            + "    gender TEXT,\n"
+            + "    Name TEXT\n"
+            + ");";
+    public static final String CREATE_READING_HABIT_TABLE = "CREATE TABLE IF NOT EXISTS ReadingHabit (\n"
+            + "    habitID INTEGER PRIMARY KEY,\n"
+            + "    book TEXT,\n"
+            + "    pagesRead INTEGER,\n"
+            + "    submissionMoment DATETIME,\n"
+            + "    user INTEGER,\n"
+            + "    FOREIGN KEY (user) REFERENCES User(userID)\n"
+            + ");";
+    public static final String CREATE_CHANGE_OUTBOX_TABLE = "CREATE TABLE IF NOT EXISTS ChangeOutbox (\n"
+            + "    seq INTEGER PRIMARY KEY AUTOINCREMENT,\n"
+            + "    type INTEGER NOT NULL,\n"
+            + "    createdAt INTEGER NOT NULL,\n"
+            + "    payload BLOB NOT NULL\n"
+            + ");";
+
+    private Schema() {
+    }
+}
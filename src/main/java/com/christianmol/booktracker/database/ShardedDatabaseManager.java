@@ -0,0 +1,1305 @@
+package com.christianmol.booktracker.database;
+
+import com.christianmol.booktracker.analytics.CohortAnalytics;
+import com.christianmol.booktracker.analytics.CohortSummary;
+import com.christianmol.booktracker.catalog.TitleIndex;
+import com.christianmol.booktracker.changelog.ChangeEvent;
+import com.christianmol.booktracker.changelog.ChangeLog;
+import com.christianmol.booktracker.database.DatabaseManager.DatabaseException;
+import com.christianmol.booktracker.model.ReadingHabit;
+import com.christianmol.booktracker.model.User;
+import com.christianmol.booktracker.recommend.CoOccurrenceIndex;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Storage mode that hash-partitions users and their reading habits by userID across
+ * several SQLite files. Every shard owns a dedicated writer thread, so writes to
+ * different shards never wait on each other's locks or fsyncs. Per-user operations
+ * are routed to a single shard; global statistics are scattered to all shards in
+ * parallel and the partial results are merged.
+ *
+ * <p>A write that touches several shards is all-or-nothing: every shard runs its part in
+ * an open transaction, and only when all of them succeeded are they committed, otherwise
+ * all are rolled back. A commit can still fail after others went through, e.g. on a full
+ * disk; that is reported as a {@link PartialWriteException} naming the shards on each
+ * side.</p>
+ *
+ * <p>Titles are canonicalized and changes are logged as in {@link DatabaseManager}; the
+ * title index and the analytics caches are built from all shards.</p>
+ */
+public class ShardedDatabaseManager implements TrackerDatabase {
+    private static final Logger LOGGER = Logger.getLogger(ShardedDatabaseManager.class.getName());
+    private static final int IMPORT_BATCH_SIZE = 10000;
+
+    private final Shard[] shards;
+    private final ExecutorService scatterPool;
+    // Keeps every shard's writer queue in the same order, so two-phase writes cannot deadlock
+    private final Object submitLock = new Object();
+    private final AtomicInteger lastUserID = new AtomicInteger();
+    // Start of every sequence block whose write has not finished yet, guarded by submitLock
+    private final ConcurrentSkipListSet<Long> sequencesInFlight = new ConcurrentSkipListSet<>();
+    private final Object publishLock = new Object();
+    private final Object titleLock = new Object();
+    private final Object cacheLock = new Object();
+    private long nextSequence = 1;
+    private volatile ChangeLog changeLog;
+    private TitleIndex titleIndex;
+    private CoOccurrenceIndex recommendationIndex;
+    private CohortAnalytics cohortAnalytics;
+
+    /**
+     * Opens the shards a storage profile asks for. They are named after the profile's
+     * path: {@code books.db} is stored as {@code books-shard-0.db}, {@code books-shard-1.db}
+     * and so on, in the same directory. Every shard connection gets the profile's pragmas.
+     */
+    public ShardedDatabaseManager(StorageProfile profile) {
+        if (profile == null) {
+            throw new IllegalArgumentException("Storage profile cannot be null");
+        }
+        int shardCount = profile.getShardCount();
+        File directory = directoryOf(profile.getDatabasePath());
+        String filePattern = new File(profile.getDatabasePath()).getName().replaceFirst("\\.db$", "") + "-shard-%d.db";
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("Shard count must be positive");
+        }
+        if (directory == null) {
+            throw new IllegalArgumentException("Shard directory cannot be null");
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new DatabaseException("Failed to create shard directory " + directory.getAbsolutePath());
+        }
+
+        shards = new Shard[shardCount];
+        try {
+            for (int i = 0; i < shardCount; i++) {
+                shards[i] = new Shard(i, new File(directory, String.format(filePattern, i)), profile);
+            }
+        } catch (RuntimeException e) {
+            closeShards();
+            throw e;
+        }
+        scatterPool = Executors.newFixedThreadPool(shardCount, namedThreads("booktracker-shard-reader"));
+        long maxUserID = 0;
+        for (long[] partial : scatter(conn -> querySingleRow(conn, "SELECT COALESCE(MAX(userID), 0) FROM User", 1))) {
+            maxUserID = Math.max(maxUserID, partial[0]);
+        }
+        lastUserID.set((int) maxUserID);
+        LOGGER.info("Opened " + shardCount + " SQLite shard(s) in " + directory.getAbsolutePath()
+                + " with storage profile " + profile);
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    /**
+     * Returns the shard that owns the given user. The ID is scrambled first so that
+     * sequential IDs are spread evenly instead of striping by the low bits.
+     */
+    public int shardFor(int userID) {
+        int h = userID * 0x9E3779B9;
+        h ^= h >>> 16;
+        return Math.floorMod(h, shards.length);
+    }
+
+    /**
+     * Imports the Excel dataset if every shard is still empty, like
+     * {@link DatabaseManager#initializeDatabase()} does for a single file.
+     */
+    @Override
+    public void initializeDatabase() {
+        long rows = 0;
+        for (long[] partial : scatter(conn -> querySingleRow(conn,
+                "SELECT (SELECT COUNT(*) FROM User) + (SELECT COUNT(*) FROM ReadingHabit)", 1))) {
+            rows += partial[0];
+        }
+        if (rows > 0) {
+            LOGGER.info("Shards already contain data, skipping import.");
+            return;
+        }
+        LOGGER.info("Shards are empty, importing data from Excel file...");
+        ShardImportTarget target = new ShardImportTarget();
+        ExcelImporter importer = new ExcelImporter(target, DatabaseManager.EXCEL_FILE_NAME);
+        int skippedHabits = importer.importHabits();
+        importer.importUsers();
+        ChangeEvent batch = new ChangeEvent.ImportBatch(System.currentTimeMillis(), DatabaseManager.EXCEL_FILE_NAME,
+                target.usersAdded, target.habitsAdded, skippedHabits);
+        List<LoggedWork> work = new ArrayList<>(Collections.nCopies(shards.length, (LoggedWork) null));
+        work.set(0, (conn, events) -> {
+            events.record(batch);
+            return 0;
+        });
+        writeLogged(work, 1, "Failed to record the import");
+    }
+
+    /**
+     * Enables change data capture. Every shard gets its own ChangeOutbox table, and a
+     * write records its events in the outbox of each shard it changes, in the same
+     * transaction. Sequence numbers are handed out across all shards, and events are
+     * moved to the log in sequence order once no earlier write is still in flight.
+     */
+    @Override
+    public void setChangeLog(ChangeLog changeLog) {
+        if (changeLog == null) {
+            this.changeLog = null;
+            return;
+        }
+        List<SqlWork<Integer>> work = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            work.add(conn -> {
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute(Schema.CREATE_CHANGE_OUTBOX_TABLE);
+                }
+                return 0;
+            });
+        }
+        writeAll(work, "Failed to create ChangeOutbox table");
+        long lastSequence = changeLog.getLastSequence();
+        for (long[] partial : scatter(conn -> querySingleRow(conn, "SELECT COALESCE(MAX(seq), 0) FROM ChangeOutbox", 1))) {
+            lastSequence = Math.max(lastSequence, partial[0]);
+        }
+        synchronized (submitLock) {
+            nextSequence = lastSequence + 1;
+        }
+        this.changeLog = changeLog;
+        publishChanges();
+    }
+
+    /**
+     * Adds a user with the next free ID and returns that ID.
+     */
+    @Override
+    public int addUser(String name, int age, String gender) {
+        if (name == null || name.trim().isEmpty()) {
+            throw new IllegalArgumentException("Name cannot be null or empty");
+        }
+        if (age < 0 || age > 150) {
+            throw new IllegalArgumentException("Age must be between 0 and 150");
+        }
+        if (gender == null || gender.trim().isEmpty()) {
+            throw new IllegalArgumentException("Gender cannot be null or empty");
+        }
+        int userID = lastUserID.incrementAndGet();
+        List<LoggedWork> work = new ArrayList<>(Collections.nCopies(shards.length, (LoggedWork) null));
+        work.set(shardFor(userID), (conn, events) -> {
+            try (PreparedStatement pstmt = conn.prepareStatement(
+                    "INSERT INTO User(userID, age, gender, Name) VALUES(?, ?, ?, ?)")) {
+                pstmt.setInt(1, userID);
+                pstmt.setInt(2, age);
+                pstmt.setString(3, gender.trim());
+                pstmt.setString(4, name.trim());
+                pstmt.executeUpdate();
+            }
+            events.record(new ChangeEvent.UserAdded(System.currentTimeMillis(), userID, name.trim(), age, gender.trim()));
+            return 1;
+        });
+        writeLogged(work, 1, "Failed to add user");
+        invalidateAnalytics();
+        LOGGER.info("User added successfully: " + name);
+        return userID;
+    }
+
+    public void addUser(int userID, int age, String gender, String name) {
+        addUsers(Collections.singletonList(new User(userID, age, gender, name)));
+    }
+
+    public void addUsers(Collection<User> users) {
+        if (users == null) {
+            throw new IllegalArgumentException("Users cannot be null");
+        }
+        List<List<User>> perShard = partition(users, user -> user.getUserID());
+        List<SqlWork<Integer>> work = new ArrayList<>(shards.length);
+        for (List<User> batch : perShard) {
+            work.add(batch.isEmpty() ? null : conn -> {
+                try (PreparedStatement pstmt = conn.prepareStatement(
+                        "INSERT INTO User(userID, age, gender, Name) VALUES(?, ?, ?, ?)")) {
+                    for (User user : batch) {
+                        pstmt.setInt(1, user.getUserID());
+                        pstmt.setInt(2, user.getAge());
+                        pstmt.setString(3, user.getGender());
+                        pstmt.setString(4, user.getName());
+                        pstmt.addBatch();
+                    }
+                    pstmt.executeBatch();
+                }
+                return batch.size();
+            });
+        }
+        writeAll(work, "Failed to add users");
+        for (User user : users) {
+            lastUserID.accumulateAndGet(user.getUserID(), Math::max);
+        }
+        invalidateAnalytics();
+    }
+
+    /**
+     * Sets age, gender and name of existing users; returns the number of users found.
+     */
+    public int updateUsers(Collection<User> users) {
+        if (users == null) {
+            throw new IllegalArgumentException("Users cannot be null");
+        }
+        List<List<User>> perShard = partition(users, user -> user.getUserID());
+        List<SqlWork<Integer>> work = new ArrayList<>(shards.length);
+        for (List<User> batch : perShard) {
+            work.add(batch.isEmpty() ? null : conn -> {
+                try (PreparedStatement pstmt = conn.prepareStatement(
+                        "UPDATE User SET age = ?, gender = ?, Name = ? WHERE userID = ?")) {
+                    for (User user : batch) {
+                        pstmt.setInt(1, user.getAge());
+                        pstmt.setString(2, user.getGender());
+                        pstmt.setString(3, user.getName());
+                        pstmt.setInt(4, user.getUserID());
+                        pstmt.addBatch();
+                    }
+                    int updated = 0;
+                    for (int count : pstmt.executeBatch()) {
+                        updated += Math.max(0, count);
+                    }
+                    return updated;
+                }
+            });
+        }
+        int updated = writeAll(work, "Failed to update users");
+        invalidateAnalytics();
+        return updated;
+    }
+
+    public void addReadingHabit(ReadingHabit habit) {
+        addReadingHabits(Collections.singletonList(habit));
+    }
+
+    /**
+     * Inserts the habits with one transaction per shard. The shard batches run
+     * concurrently on their writer threads and are committed together.
+     */
+    public void addReadingHabits(Collection<ReadingHabit> habits) {
+        if (habits == null) {
+            throw new IllegalArgumentException("Reading habits cannot be null");
+        }
+        List<List<ReadingHabit>> perShard = partition(habits, habit -> habit.getUserID());
+        List<SqlWork<Integer>> work = new ArrayList<>(shards.length);
+        for (List<ReadingHabit> batch : perShard) {
+            work.add(batch.isEmpty() ? null : conn -> {
+                try (PreparedStatement pstmt = conn.prepareStatement(
+                        "INSERT INTO ReadingHabit(habitID, book, pagesRead, submissionMoment, user) "
+                                + "VALUES(?, ?, ?, datetime(?), ?)")) {
+                    for (ReadingHabit habit : batch) {
+                        pstmt.setInt(1, habit.getHabitID());
+                        pstmt.setString(2, habit.getBook());
+                        pstmt.setInt(3, habit.getPagesRead());
+                        pstmt.setString(4, habit.getSubmissionMoment().toString().replace('T', ' '));
+                        pstmt.setInt(5, habit.getUserID());
+                        pstmt.addBatch();
+                    }
+                    pstmt.executeBatch();
+                }
+                return batch.size();
+            });
+        }
+        writeAll(work, "Failed to add reading habits");
+        synchronized (titleLock) {
+            if (titleIndex != null) {
+                for (ReadingHabit habit : habits) {
+                    if (habit.getBook() != null && !habit.getBook().trim().isEmpty()) {
+                        titleIndex.addStoredTitle(habit.getBook());
+                    }
+                }
+            }
+        }
+        invalidateAnalytics();
+    }
+
+    /**
+     * A number is looked up as a user ID on the shard that owns it; a name is searched on
+     * every shard, as a user and their habits always live on the same one.
+     */
+    @Override
+    public List<ReadingHabit> findReadingHabitsForUser(String input) {
+        if (input == null || input.trim().isEmpty()) {
+            throw new IllegalArgumentException("Input cannot be null or empty");
+        }
+        if (input.matches("\\d+")) {
+            int userID = Integer.parseInt(input);
+            if (userID <= 0) {
+                throw new IllegalArgumentException("User ID must be positive");
+            }
+            return shards[shardFor(userID)].read(conn -> queryHabits(conn,
+                    "SELECT habitID, book, pagesRead, submissionMoment, user FROM ReadingHabit WHERE user = ?",
+                    pstmt -> pstmt.setInt(1, userID)));
+        }
+        List<ReadingHabit> habits = new ArrayList<>();
+        for (List<ReadingHabit> partial : scatter(conn -> queryHabits(conn,
+                "SELECT rh.habitID, rh.book, rh.pagesRead, rh.submissionMoment, rh.user FROM ReadingHabit rh "
+                        + "JOIN User u ON rh.user = u.userID WHERE u.Name LIKE ?",
+                pstmt -> pstmt.setString(1, "%" + input.trim() + "%")))) {
+            habits.addAll(partial);
+        }
+        return habits;
+    }
+
+    /**
+     * Habit IDs carry no user information, so the delete is sent to every shard.
+     */
+    @Override
+    public int deleteReadingHabit(int habitID) {
+        if (habitID <= 0) {
+            throw new IllegalArgumentException("Habit ID must be positive");
+        }
+        List<LoggedWork> work = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            work.add((conn, events) -> {
+                try (PreparedStatement pstmt = conn.prepareStatement("DELETE FROM ReadingHabit WHERE habitID = ?")) {
+                    pstmt.setInt(1, habitID);
+                    int deleted = pstmt.executeUpdate();
+                    if (deleted > 0) {
+                        events.record(new ChangeEvent.HabitDeleted(System.currentTimeMillis(), habitID));
+                    }
+                    return deleted;
+                }
+            });
+        }
+        int deleted = writeLogged(work, 1, "Failed to delete reading habit");
+        if (deleted > 0) {
+            invalidateAnalytics();
+        }
+        System.out.println("Deleted " + deleted + " record(s)");
+        return deleted;
+    }
+
+    /**
+     * Renames every stored spelling of the title on all shards, merging into the
+     * spelling of an existing title like {@link DatabaseManager#changeBookTitle} does.
+     * Each shard records a BookRenamed event per spelling for the records it changed.
+     */
+    @Override
+    public int changeBookTitle(String oldTitle, String newTitle) {
+        if (oldTitle == null || oldTitle.trim().isEmpty()) {
+            throw new IllegalArgumentException("Old title cannot be null or empty");
+        }
+        if (newTitle == null || newTitle.trim().isEmpty()) {
+            throw new IllegalArgumentException("New title cannot be null or empty");
+        }
+        synchronized (titleLock) {
+            List<String> oldSpellings = storedVariants(oldTitle);
+            String targetTitle = titleIndex().rename(oldTitle, newTitle);
+            List<LoggedWork> work = new ArrayList<>(shards.length);
+            for (int i = 0; i < shards.length; i++) {
+                work.add((conn, events) -> {
+                    try (PreparedStatement pstmt = conn.prepareStatement("UPDATE ReadingHabit SET book = ? WHERE book = ?")) {
+                        int updated = 0;
+                        for (String oldSpelling : oldSpellings) {
+                            pstmt.setString(1, targetTitle);
+                            pstmt.setString(2, oldSpelling);
+                            int renamed = pstmt.executeUpdate();
+                            if (renamed > 0) {
+                                events.record(new ChangeEvent.BookRenamed(System.currentTimeMillis(), oldSpelling,
+                                        targetTitle, renamed));
+                                updated += renamed;
+                            }
+                        }
+                        return updated;
+                    }
+                });
+            }
+            int updated;
+            try {
+                updated = writeLogged(work, oldSpellings.size(), "Failed to change book title");
+            } catch (RuntimeException e) {
+                titleIndex = null;
+                throw e;
+            }
+            if (updated == 0) {
+                titleIndex = null;
+            } else {
+                invalidateAnalytics();
+            }
+            if (!targetTitle.equals(newTitle.trim())) {
+                System.out.println("Merged into existing title '" + targetTitle + "'");
+            }
+            System.out.println("Updated " + updated + " records");
+            return updated;
+        }
+    }
+
+    @Override
+    public long findTotalPagesRead() {
+        long total = 0;
+        for (long[] partial : scatter(conn -> querySingleRow(conn,
+                "SELECT COALESCE(SUM(pagesRead), 0) FROM ReadingHabit", 1))) {
+            total += partial[0];
+        }
+        return total;
+    }
+
+    /**
+     * Each shard reports its age sum and user count; the mean is computed from the
+     * merged totals rather than by averaging the per-shard means.
+     */
+    @Override
+    public double findMeanUserAge() {
+        long ageSum = 0;
+        long userCount = 0;
+        for (long[] partial : scatter(conn -> querySingleRow(conn,
+                "SELECT COALESCE(SUM(age), 0), COUNT(age) FROM User", 2))) {
+            ageSum += partial[0];
+            userCount += partial[1];
+        }
+        return userCount == 0 ? 0.0 : (double) ageSum / userCount;
+    }
+
+    /**
+     * A user lives in exactly one shard, so the per-shard distinct reader counts are
+     * disjoint and can simply be added up.
+     */
+    @Override
+    public int findUserCountForBook(String bookTitle) {
+        if (bookTitle == null || bookTitle.trim().isEmpty()) {
+            throw new IllegalArgumentException("Book title cannot be null or empty");
+        }
+        List<String> spellings;
+        synchronized (titleLock) {
+            spellings = storedVariants(bookTitle);
+        }
+        String sql = "SELECT COUNT(DISTINCT user) FROM ReadingHabit WHERE book IN ("
+                + String.join(", ", Collections.nCopies(spellings.size(), "?")) + ")";
+        long count = 0;
+        for (long[] partial : scatter(conn -> {
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                for (int i = 0; i < spellings.size(); i++) {
+                    pstmt.setString(i + 1, spellings.get(i));
+                }
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    return new long[] { rs.next() ? rs.getLong(1) : 0 };
+                }
+            }
+        })) {
+            count += partial[0];
+        }
+        return (int) count;
+    }
+
+    /**
+     * Users are disjoint across shards, so the per-shard counts add up.
+     */
+    @Override
+    public int findUsersWithMultipleBooks() {
+        long count = 0;
+        for (long[] partial : scatter(conn -> querySingleRow(conn, "SELECT COUNT(*) FROM "
+                + "(SELECT user FROM ReadingHabit GROUP BY user HAVING COUNT(DISTINCT book) > 1)", 1))) {
+            count += partial[0];
+        }
+        return (int) count;
+    }
+
+    public Map<String, Integer> getReaderCountsPerBook() {
+        Map<String, Integer> merged = new HashMap<>();
+        for (Map<String, Integer> partial : scatter(conn -> {
+            Map<String, Integer> counts = new HashMap<>();
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery(
+                         "SELECT book, COUNT(DISTINCT user) FROM ReadingHabit GROUP BY book")) {
+                while (rs.next()) {
+                    counts.put(rs.getString(1), rs.getInt(2));
+                }
+            }
+            return counts;
+        })) {
+            for (Map.Entry<String, Integer> entry : partial.entrySet()) {
+                merged.merge(entry.getKey(), entry.getValue(), Integer::sum);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * The same overview {@link DatabaseManager#describeDatabaseStructure()} gives, merged
+     * from every shard: users are listed by ID and books by how often they were read.
+     */
+    @Override
+    public String describeDatabaseStructure() {
+        Map<Integer, String> users = new TreeMap<>();
+        Map<Integer, String> inactiveUsers = new TreeMap<>();
+        Map<String, long[]> books = new HashMap<>();
+        Set<String> booksOfKnownUsers = new HashSet<>();
+        long[] totals = new long[4];
+        for (StructurePart part : scatter(StructurePart::read)) {
+            users.putAll(part.users);
+            inactiveUsers.putAll(part.inactiveUsers);
+            for (Map.Entry<String, long[]> book : part.books.entrySet()) {
+                books.merge(book.getKey(), book.getValue(),
+                        (a, b) -> new long[] { a[0] + b[0], a[1] + b[1], a[2] + b[2] });
+            }
+            booksOfKnownUsers.addAll(part.booksOfKnownUsers);
+            for (int i = 0; i < totals.length; i++) {
+                totals[i] += part.totals[i];
+            }
+        }
+        List<Map.Entry<String, long[]>> bookStats = new ArrayList<>(books.entrySet());
+        bookStats.sort((a, b) -> Long.compare(b.getValue()[0], a.getValue()[0]));
+
+        StringWriter buffer = new StringWriter();
+        PrintWriter out = new PrintWriter(buffer);
+        out.println("\n=== Database Structure Overview ===\n");
+        out.println("Users:");
+        out.println("----------------------------------------");
+        users.values().forEach(out::println);
+        out.println("\nBooks and Reading Statistics:");
+        out.println("----------------------------------------");
+        for (Map.Entry<String, long[]> book : bookStats) {
+            out.printf("Book: %s%n", book.getKey());
+            out.printf("  Times read: %d | Total pages: %d | Unique readers: %d%n",
+                    book.getValue()[0], book.getValue()[1], book.getValue()[2]);
+            out.println("----------------------------------------");
+        }
+        out.println("\nUsers without Reading Habits:");
+        out.println("----------------------------------------");
+        inactiveUsers.values().forEach(out::println);
+        if (inactiveUsers.isEmpty()) {
+            out.println("No users without reading habits found.");
+        }
+        out.println("\nReading Habits Summary:");
+        out.println("----------------------------------------");
+        out.printf("Total Users in Database: %d%n", totals[0]);
+        out.printf("Users with Reading Habits: %d%n", totals[1]);
+        out.printf("Users without Reading Habits: %d%n", totals[0] - totals[1]);
+        out.printf("Total Books: %d%n", booksOfKnownUsers.size());
+        out.printf("Total Reading Records: %d%n", totals[2]);
+        out.printf("Total Pages Read: %d%n", totals[3]);
+        out.flush();
+        return buffer.toString();
+    }
+
+    /**
+     * Ranks by Jaccard similarity of the reader sets. The co-occurrence index is built
+     * from every shard on first use and rebuilt after writes.
+     */
+    @Override
+    public List<CoOccurrenceIndex.Recommendation> findBooksAlsoRead(String bookTitle) {
+        if (bookTitle == null || bookTitle.trim().isEmpty()) {
+            throw new IllegalArgumentException("Book title cannot be null or empty");
+        }
+        synchronized (cacheLock) {
+            if (recommendationIndex == null) {
+                long start = System.nanoTime();
+                CoOccurrenceIndex.Builder builder = CoOccurrenceIndex.builder();
+                for (List<Object[]> partial : scatter(conn -> queryRows(conn,
+                        "SELECT DISTINCT user, book FROM ReadingHabit WHERE user IS NOT NULL AND book IS NOT NULL"))) {
+                    for (Object[] pair : partial) {
+                        if (!((String) pair[1]).trim().isEmpty()) {
+                            builder.add((Integer) pair[0], (String) pair[1]);
+                        }
+                    }
+                }
+                recommendationIndex = builder.build();
+                LOGGER.info(String.format("Built co-occurrence index for %d books from %d shard(s) in %d ms",
+                        recommendationIndex.getBookCount(), shards.length, (System.nanoTime() - start) / 1_000_000));
+            }
+            return recommendationIndex.topSimilar(bookTitle, DatabaseManager.RECOMMENDATION_COUNT,
+                    CoOccurrenceIndex.Similarity.JACCARD);
+        }
+    }
+
+    /**
+     * The statistics are built from every shard on first use and rebuilt after writes.
+     */
+    @Override
+    public List<CohortSummary> findCohortStatistics() {
+        synchronized (cacheLock) {
+            if (cohortAnalytics == null) {
+                long start = System.nanoTime();
+                CohortAnalytics.Builder builder = CohortAnalytics.builder();
+                for (List<Object[]> partial : scatter(conn -> queryRows(conn, "SELECT userID, age, gender FROM User"))) {
+                    for (Object[] user : partial) {
+                        builder.addUser((Integer) user[0], user[1] == null ? -1 : (Integer) user[1], (String) user[2]);
+                    }
+                }
+                for (List<Object[]> partial : scatter(conn -> queryRows(conn, "SELECT user, book, pagesRead FROM ReadingHabit "
+                        + "WHERE user IS NOT NULL AND book IS NOT NULL"))) {
+                    for (Object[] habit : partial) {
+                        if (!((String) habit[1]).trim().isEmpty()) {
+                            builder.addHabit((Integer) habit[0], (String) habit[1], (Integer) habit[2]);
+                        }
+                    }
+                }
+                cohortAnalytics = builder.build();
+                LOGGER.info(String.format("Built cohort statistics for %d users from %d shard(s) in %d ms",
+                        cohortAnalytics.getUserCount(), shards.length, (System.nanoTime() - start) / 1_000_000));
+            }
+            List<CohortSummary> summaries = new ArrayList<>(cohortAnalytics.summarize(DatabaseManager.COHORT_TOP_TITLES));
+            summaries.add(cohortAnalytics.total(DatabaseManager.COHORT_TOP_TITLES));
+            return summaries;
+        }
+    }
+
+    @Override
+    public void close() {
+        if (scatterPool != null) {
+            scatterPool.shutdown();
+        }
+        closeShards();
+        LOGGER.info("Sharded database connections closed.");
+    }
+
+    private void invalidateAnalytics() {
+        synchronized (cacheLock) {
+            recommendationIndex = null;
+            cohortAnalytics = null;
+        }
+    }
+
+    /**
+     * Every spelling of the title stored on any shard, or the title itself if none is.
+     * Callers hold titleLock.
+     */
+    private List<String> storedVariants(String title) {
+        List<String> spellings = titleIndex().storedVariants(title);
+        return spellings.isEmpty() ? Collections.singletonList(title.trim()) : spellings;
+    }
+
+    private TitleIndex titleIndex() {
+        if (titleIndex == null) {
+            TitleIndex index = new TitleIndex();
+            for (List<Object[]> partial : scatter(conn -> queryRows(conn,
+                    "SELECT DISTINCT book FROM ReadingHabit WHERE book IS NOT NULL"))) {
+                for (Object[] row : partial) {
+                    if (!((String) row[0]).trim().isEmpty()) {
+                        index.addStoredTitle((String) row[0]);
+                    }
+                }
+            }
+            titleIndex = index;
+        }
+        return titleIndex;
+    }
+
+    /**
+     * Like {@link #writeAll}, but each shard's work can record change events. Without a
+     * change log the events are dropped. With one, a block of maxEventsPerShard sequence
+     * numbers per shard is reserved, the events are written to each shard's outbox in the
+     * shard's transaction, and they are published once the write has finished.
+     */
+    private int writeLogged(List<LoggedWork> work, int maxEventsPerShard, String failureMessage) {
+        ChangeLog log = changeLog;
+        List<SqlWork<Integer>> wrapped = new ArrayList<>(shards.length);
+        if (log == null) {
+            for (LoggedWork shardWork : work) {
+                wrapped.add(shardWork == null ? null : conn -> shardWork.execute(conn, event -> { }));
+            }
+            return writeAll(wrapped, failureMessage);
+        }
+        long first;
+        synchronized (submitLock) {
+            first = nextSequence;
+            nextSequence += (long) shards.length * maxEventsPerShard;
+            sequencesInFlight.add(first);
+        }
+        try {
+            for (int i = 0; i < work.size(); i++) {
+                LoggedWork shardWork = work.get(i);
+                long shardFirst = first + (long) i * maxEventsPerShard;
+                wrapped.add(shardWork == null ? null : conn -> {
+                    try (PreparedStatement pstmt = conn.prepareStatement(
+                            "INSERT INTO ChangeOutbox(seq, type, createdAt, payload) VALUES(?, ?, ?, ?)")) {
+                        long[] next = { shardFirst };
+                        int result = shardWork.execute(conn, event -> {
+                            if (next[0] == shardFirst + maxEventsPerShard) {
+                                throw new IllegalStateException("More than " + maxEventsPerShard
+                                        + " change events for one shard");
+                            }
+                            pstmt.setLong(1, next[0]++);
+                            pstmt.setInt(2, event.getType().ordinal());
+                            pstmt.setLong(3, event.getTimestamp());
+                            pstmt.setBytes(4, event.encodePayload());
+                            pstmt.executeUpdate();
+                        });
+                        return result;
+                    }
+                });
+            }
+            return writeAll(wrapped, failureMessage);
+        } finally {
+            sequencesInFlight.remove(first);
+            publishChanges();
+        }
+    }
+
+    /**
+     * Moves events from the shard outboxes to the change log in sequence order. Only
+     * events below the oldest write still in flight are moved, so a later write that
+     * finished first cannot overtake it. If this fails the events stay in the outboxes
+     * and are retried after the next write.
+     */
+    private void publishChanges() {
+        ChangeLog log = changeLog;
+        if (log == null) {
+            return;
+        }
+        synchronized (publishLock) {
+            long limit;
+            synchronized (submitLock) {
+                limit = sequencesInFlight.isEmpty() ? nextSequence - 1 : sequencesInFlight.first() - 1;
+            }
+            try {
+                TreeMap<Long, ChangeEvent> events = new TreeMap<>();
+                ChangeEvent.Type[] types = ChangeEvent.Type.values();
+                for (List<Object[]> partial : scatter(conn -> {
+                    List<Object[]> rows = new ArrayList<>();
+                    try (PreparedStatement pstmt = conn.prepareStatement(
+                            "SELECT seq, type, createdAt, payload FROM ChangeOutbox WHERE seq <= ?")) {
+                        pstmt.setLong(1, limit);
+                        try (ResultSet rs = pstmt.executeQuery()) {
+                            while (rs.next()) {
+                                rows.add(new Object[] { rs.getLong(1), ChangeEvent.decode(types[rs.getInt(2)],
+                                        rs.getLong(3), rs.getBytes(4)) });
+                            }
+                        }
+                    }
+                    return rows;
+                })) {
+                    for (Object[] row : partial) {
+                        events.put((Long) row[0], (ChangeEvent) row[1]);
+                    }
+                }
+                if (events.isEmpty()) {
+                    return;
+                }
+                for (Map.Entry<Long, ChangeEvent> event : events.entrySet()) {
+                    if (event.getKey() > log.getLastSequence()) {
+                        log.append(event.getKey(), event.getValue());
+                    }
+                }
+                log.force();
+                List<SqlWork<Integer>> delete = new ArrayList<>(shards.length);
+                for (int i = 0; i < shards.length; i++) {
+                    delete.add(conn -> {
+                        try (PreparedStatement pstmt = conn.prepareStatement("DELETE FROM ChangeOutbox WHERE seq <= ?")) {
+                            pstmt.setLong(1, limit);
+                            return pstmt.executeUpdate();
+                        }
+                    });
+                }
+                writeAll(delete, "Failed to remove published changes");
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Error publishing changes; they remain in the outboxes", e);
+            }
+        }
+    }
+
+    private void closeShards() {
+        for (Shard shard : shards) {
+            if (shard != null) {
+                shard.close();
+            }
+        }
+    }
+
+    private static File directoryOf(String databasePath) {
+        File parent = new File(databasePath).getAbsoluteFile().getParentFile();
+        return parent != null ? parent : new File(".");
+    }
+
+    private <T> List<List<T>> partition(Collection<T> items, UserKey<T> key) {
+        List<List<T>> perShard = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            perShard.add(new ArrayList<>());
+        }
+        for (T item : items) {
+            perShard.get(shardFor(key.userID(item))).add(item);
+        }
+        return perShard;
+    }
+
+    private <T> List<T> scatter(SqlWork<T> work) {
+        List<Future<T>> pending = new ArrayList<>(shards.length);
+        for (Shard shard : shards) {
+            pending.add(scatterPool.submit(() -> shard.read(work)));
+        }
+        List<T> results = new ArrayList<>(shards.length);
+        for (Future<T> future : pending) {
+            results.add(await(future, "Failed to query shard"));
+        }
+        return results;
+    }
+
+    /**
+     * Runs work.get(i) on shard i (null entries are skipped) and commits all shards or
+     * none. Returns the sum of the results.
+     */
+    private int writeAll(List<SqlWork<Integer>> work, String failureMessage) {
+        CompletableFuture<Boolean> decision = new CompletableFuture<>();
+        List<Integer> involved = new ArrayList<>();
+        List<CompletableFuture<Integer>> prepared = new ArrayList<>();
+        List<Future<Void>> outcomes = new ArrayList<>();
+        try {
+            synchronized (submitLock) {
+                for (int i = 0; i < shards.length; i++) {
+                    if (work.get(i) != null) {
+                        CompletableFuture<Integer> result = new CompletableFuture<>();
+                        involved.add(i);
+                        prepared.add(result);
+                        outcomes.add(shards[i].writeTwoPhase(work.get(i), result, decision));
+                    }
+                }
+            }
+
+            int total = 0;
+            DatabaseException failure = null;
+            for (CompletableFuture<Integer> result : prepared) {
+                try {
+                    total += await(result, failureMessage);
+                } catch (DatabaseException e) {
+                    if (failure == null) {
+                        failure = e;
+                    }
+                }
+            }
+            decision.complete(failure == null);
+
+            List<Integer> committed = new ArrayList<>();
+            List<Integer> failed = new ArrayList<>();
+            DatabaseException commitFailure = null;
+            for (int i = 0; i < outcomes.size(); i++) {
+                try {
+                    await(outcomes.get(i), failureMessage);
+                    committed.add(involved.get(i));
+                } catch (DatabaseException e) {
+                    failed.add(involved.get(i));
+                    if (commitFailure == null) {
+                        commitFailure = e;
+                    }
+                }
+            }
+            if (failure != null) {
+                // Nothing was committed; a shard that failed to roll back logged it
+                throw failure;
+            }
+            if (!failed.isEmpty()) {
+                throw new PartialWriteException(failureMessage + ": committed on shard(s) " + committed
+                        + " but not on " + failed, committed, failed, commitFailure);
+            }
+            return total;
+        } finally {
+            // Never leave a writer thread waiting, e.g. if this thread was interrupted
+            decision.complete(false);
+        }
+    }
+
+    private static <T> T await(Future<T> future, String failureMessage) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DatabaseException(failureMessage, e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof DatabaseException) {
+                throw (DatabaseException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new DatabaseException(failureMessage, cause);
+        }
+    }
+
+    private static long[] querySingleRow(Connection conn, String sql, int columns) throws SQLException {
+        long[] values = new long[columns];
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            if (rs.next()) {
+                for (int i = 0; i < columns; i++) {
+                    values[i] = rs.getLong(i + 1);
+                }
+            }
+        }
+        return values;
+    }
+
+    private static List<ReadingHabit> queryHabits(Connection conn, String sql, StatementBinder binder)
+            throws SQLException {
+        List<ReadingHabit> habits = new ArrayList<>();
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            binder.bind(pstmt);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    habits.add(new ReadingHabit(
+                            rs.getInt("habitID"),
+                            rs.getString("book"),
+                            rs.getInt("pagesRead"),
+                            LocalDateTime.parse(rs.getString("submissionMoment").replace(' ', 'T')),
+                            rs.getInt("user")));
+                }
+            }
+        }
+        return habits;
+    }
+
+    private static List<Object[]> queryRows(Connection conn, String sql) throws SQLException {
+        List<Object[]> rows = new ArrayList<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            int columns = rs.getMetaData().getColumnCount();
+            while (rs.next()) {
+                Object[] row = new Object[columns];
+                for (int i = 0; i < columns; i++) {
+                    row[i] = rs.getObject(i + 1);
+                }
+                rows.add(row);
+            }
+        }
+        return rows;
+    }
+
+    private static ThreadFactory namedThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    @FunctionalInterface
+    private interface SqlWork<T> {
+        T execute(Connection connection) throws SQLException;
+    }
+
+    @FunctionalInterface
+    private interface UserKey<T> {
+        int userID(T item);
+    }
+
+    @FunctionalInterface
+    private interface StatementBinder {
+        void bind(PreparedStatement statement) throws SQLException;
+    }
+
+    /**
+     * One shard's part of a write that reports its changes to the given sink.
+     */
+    @FunctionalInterface
+    private interface LoggedWork {
+        int execute(Connection connection, EventSink events) throws SQLException;
+    }
+
+    @FunctionalInterface
+    private interface EventSink {
+        void record(ChangeEvent event) throws SQLException;
+    }
+
+    /**
+     * The parts of the structure overview that one shard contributes. Users and their
+     * habits live on the same shard, so the per-user figures are already complete.
+     */
+    private static final class StructurePart {
+        final Map<Integer, String> users = new HashMap<>();
+        final Map<Integer, String> inactiveUsers = new HashMap<>();
+        final Map<String, long[]> books = new HashMap<>();
+        final Set<String> booksOfKnownUsers = new HashSet<>();
+        final long[] totals = new long[4];
+
+        static StructurePart read(Connection conn) throws SQLException {
+            StructurePart part = new StructurePart();
+            try (Statement stmt = conn.createStatement()) {
+                try (ResultSet rs = stmt.executeQuery("SELECT u.userID, u.Name, u.age, u.gender, "
+                        + "EXISTS(SELECT 1 FROM ReadingHabit rh WHERE rh.user = u.userID) FROM User u")) {
+                    while (rs.next()) {
+                        String line = String.format("ID: %d | Name: %s | Age: %d | Gender: %s",
+                                rs.getInt(1), rs.getString(2), rs.getInt(3), rs.getString(4));
+                        part.users.put(rs.getInt(1), line);
+                        if (rs.getInt(5) == 0) {
+                            part.inactiveUsers.put(rs.getInt(1), line);
+                        }
+                    }
+                }
+                try (ResultSet rs = stmt.executeQuery("SELECT book, COUNT(*), SUM(pagesRead), COUNT(DISTINCT user) "
+                        + "FROM ReadingHabit GROUP BY book")) {
+                    while (rs.next()) {
+                        part.books.put(rs.getString(1), new long[] { rs.getLong(2), rs.getLong(3), rs.getLong(4) });
+                    }
+                }
+                try (ResultSet rs = stmt.executeQuery("SELECT DISTINCT rh.book FROM User u "
+                        + "JOIN ReadingHabit rh ON u.userID = rh.user WHERE rh.book IS NOT NULL")) {
+                    while (rs.next()) {
+                        part.booksOfKnownUsers.add(rs.getString(1));
+                    }
+                }
+                try (ResultSet rs = stmt.executeQuery("SELECT COUNT(DISTINCT u.userID), COUNT(DISTINCT rh.user), "
+                        + "COUNT(rh.habitID), COALESCE(SUM(rh.pagesRead), 0) "
+                        + "FROM User u LEFT JOIN ReadingHabit rh ON u.userID = rh.user")) {
+                    if (rs.next()) {
+                        for (int i = 0; i < part.totals.length; i++) {
+                            part.totals[i] = rs.getLong(i + 1);
+                        }
+                    }
+                }
+            }
+            return part;
+        }
+    }
+
+    /**
+     * A write that was committed on some shards and failed to commit on others. The
+     * shards are not rolled back to each other; the caller has to repair or retry the
+     * failed ones.
+     */
+    public static class PartialWriteException extends DatabaseException {
+        private static final long serialVersionUID = 1L;
+
+        private final List<Integer> committedShards;
+        private final List<Integer> failedShards;
+
+        PartialWriteException(String message, List<Integer> committedShards, List<Integer> failedShards,
+                              Throwable cause) {
+            super(message, cause);
+            this.committedShards = Collections.unmodifiableList(committedShards);
+            this.failedShards = Collections.unmodifiableList(failedShards);
+        }
+
+        public List<Integer> getCommittedShards() {
+            return committedShards;
+        }
+
+        public List<Integer> getFailedShards() {
+            return failedShards;
+        }
+    }
+
+    /**
+     * Buffers imported rows and writes them in multi-shard batches. IDs are tracked per
+     * shard, so a user's existence is checked on the shard that owns it.
+     */
+    private final class ShardImportTarget implements ImportTarget {
+        private final IdRegistry[] registries = new IdRegistry[shards.length];
+        private final Map<Integer, User> pendingUsers = new LinkedHashMap<>();
+        private final List<User> pendingUpdates = new ArrayList<>();
+        private final List<ReadingHabit> pendingHabits = new ArrayList<>();
+        private int usersAdded;
+        private int habitsAdded;
+
+        ShardImportTarget() {
+            for (int i = 0; i < shards.length; i++) {
+                registries[i] = shards[i].read(IdRegistry::load);
+            }
+        }
+
+        @Override
+        public boolean containsUser(int userID) {
+            return registries[shardFor(userID)].containsUser(userID);
+        }
+
+        @Override
+        public boolean containsHabit(int habitID) {
+            for (IdRegistry registry : registries) {
+                if (registry.containsHabit(habitID)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public String resolveTitle(String title) {
+            synchronized (titleLock) {
+                return titleIndex().resolve(title);
+            }
+        }
+
+        @Override
+        public void addUser(int userID, int age, String gender, String name) {
+            registries[shardFor(userID)].addUser(userID);
+            usersAdded++;
+            pendingUsers.put(userID, new User(userID, age, gender, name));
+        }
+
+        @Override
+        public void updateUser(int userID, int age, String gender, String name) {
+            User user = new User(userID, age, gender, name);
+            if (pendingUsers.containsKey(userID)) {
+                pendingUsers.put(userID, user);
+            } else {
+                pendingUpdates.add(user);
+            }
+        }
+
+        @Override
+        public void addReadingHabit(int habitID, String book, int pagesRead, LocalDateTime submissionMoment,
+                                    int userID) {
+            registries[shardFor(userID)].addHabit(habitID);
+            habitsAdded++;
+            pendingHabits.add(new ReadingHabit(habitID, book, pagesRead, submissionMoment, userID));
+            if (pendingHabits.size() >= IMPORT_BATCH_SIZE) {
+                flush();
+            }
+        }
+
+        @Override
+        public void flush() {
+            if (!pendingUsers.isEmpty()) {
+                addUsers(new ArrayList<>(pendingUsers.values()));
+                pendingUsers.clear();
+            }
+            if (!pendingUpdates.isEmpty()) {
+                updateUsers(pendingUpdates);
+                pendingUpdates.clear();
+            }
+            if (!pendingHabits.isEmpty()) {
+                addReadingHabits(pendingHabits);
+                pendingHabits.clear();
+            }
+        }
+    }
+
+    /**
+     * One SQLite file with a single writer thread and a separate read connection. In WAL
+     * mode the reader runs while the writer holds its transaction open; in the rollback
+     * journal modes it waits out the writer's commit, up to the profile's busy_timeout.
+     */
+    private static final class Shard {
+        private final int index;
+        private final Connection writeConnection;
+        private final Connection readConnection;
+        private final ExecutorService writer;
+
+        Shard(int index, File file, StorageProfile profile) {
+            this.index = index;
+            String url = "jdbc:sqlite:" + file.getPath();
+            Connection write = null;
+            try {
+                write = DriverManager.getConnection(url);
+                profile.apply(write);
+                try (Statement stmt = write.createStatement()) {
+                    stmt.execute(Schema.CREATE_USER_TABLE);
+                    stmt.execute(Schema.CREATE_READING_HABIT_TABLE);
+                }
+                write.setAutoCommit(false);
+                this.writeConnection = write;
+                Connection read = DriverManager.getConnection(url);
+                try {
+                    profile.apply(read);
+                } catch (SQLException e) {
+                    read.close();
+                    throw e;
+                }
+                this.readConnection = read;
+            } catch (SQLException e) {
+                if (write != null) {
+                    try {
+                        write.close();
+                    } catch (SQLException suppressed) {
+                        e.addSuppressed(suppressed);
+                    }
+                }
+                LOGGER.log(Level.SEVERE, "Error opening shard " + index, e);
+                throw new DatabaseException("Failed to open shard " + index, e);
+            }
+            this.writer = Executors.newSingleThreadExecutor(namedThreads("booktracker-shard-" + index + "-writer"));
+        }
+
+        /**
+         * Runs the work on the writer thread and reports its result through prepared,
+         * then keeps the transaction open until the decision says to commit or roll back.
+         * The returned future fails if the commit itself failed.
+         */
+        <T> Future<Void> writeTwoPhase(SqlWork<T> work, CompletableFuture<T> prepared, Future<Boolean> decision) {
+            return writer.submit(() -> {
+                try {
+                    prepared.complete(work.execute(writeConnection));
+                } catch (SQLException | RuntimeException e) {
+                    rollback();
+                    LOGGER.log(Level.SEVERE, "Error writing to shard " + index, e);
+                    prepared.completeExceptionally(new DatabaseException("Failed to write to shard " + index, e));
+                    return null;
+                }
+
+                boolean commit;
+                try {
+                    commit = decision.get();
+                } catch (InterruptedException | ExecutionException e) {
+                    commit = false;
+                }
+                if (!commit) {
+                    rollback();
+                    return null;
+                }
+                try {
+                    writeConnection.commit();
+                } catch (SQLException e) {
+                    rollback();
+                    LOGGER.log(Level.SEVERE, "Error committing shard " + index, e);
+                    throw new DatabaseException("Failed to commit shard " + index, e);
+                }
+                return null;
+            });
+        }
+
+        <T> T read(SqlWork<T> work) {
+            synchronized (readConnection) {
+                try {
+                    return work.execute(readConnection);
+                } catch (SQLException e) {
+                    LOGGER.log(Level.SEVERE, "Error reading from shard " + index, e);
+                    throw new DatabaseException("Failed to read from shard " + index, e);
+                }
+            }
+        }
+
+        void close() {
+            writer.shutdown();
+            try {
+                if (!writer.awaitTermination(30, TimeUnit.SECONDS)) {
+                    LOGGER.warning("Writer for shard " + index + " did not finish in time.");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            closeQuietly(readConnection);
+            closeQuietly(writeConnection);
+        }
+
+        private void rollback() {
+            try {
+                writeConnection.rollback();
+            } catch (SQLException e) {
+                LOGGER.log(Level.WARNING, "Error rolling back shard " + index, e);
+            }
+        }
+
+        private void closeQuietly(Connection conn) {
+            try {
+                if (conn != null && !conn.isClosed()) {
+                    conn.close();
+                }
+            } catch (SQLException e) {
+                LOGGER.log(Level.WARNING, "Error closing connection for shard " + index, e);
+            }
+        }
+    }
+}
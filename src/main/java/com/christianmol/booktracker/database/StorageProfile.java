@@ -0,0 +1,319 @@
+package com.christianmol.booktracker.database;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+/**
+ * Database location and the SQLite pragmas a connection is opened with.
+ *
+ * <p>A profile starts from a named preset and can be overridden key by key from a
+ * properties file and from {@code --key=value} command line arguments, in that order.
+ * The keys are {@code profile}, {@code path}, {@code journal_mode}, {@code synchronous},
+ * {@code cache_size}, {@code page_size}, {@code mmap_size}, {@code temp_store},
+ * {@code auto_vacuum}, {@code busy_timeout}, {@code replica_refresh} and {@code shards};
+ * pragma values use SQLite's own syntax, so a negative {@code cache_size} is in KiB.
+ * {@code page_size} and {@code auto_vacuum} only take effect for a new database or after
+ * a VACUUM outside WAL mode. A positive
+ * {@code replica_refresh} serves read-only queries from an in-memory {@link ReadReplica}
+ * refreshed at least that often, in seconds. A positive {@code shards} stores the data
+ * in that many files next to {@code path} through a {@link ShardedDatabaseManager}.</p>
+ *
+ * <p>Presets:</p>
+ * <ul>
+ *   <li>{@code default} - SQLite's own defaults; what the application always used</li>
+ *   <li>{@code bulk-import} - in-memory rollback journal, no fsync and a large cache for
+ *       loading data that can be reloaded if the machine crashes</li>
+ *   <li>{@code read-heavy} - WAL so readers never block on the writer, a large cache,
+ *       memory-mapped reads, an in-memory read replica and incremental auto-vacuum</li>
+ *   <li>{@code durable} - WAL with a full fsync on every commit, a long busy timeout and
+ *       incremental auto-vacuum</li>
+ * </ul>
+ */
+public final class StorageProfile {
+    private static final Logger LOGGER = Logger.getLogger(StorageProfile.class.getName());
+    public static final String DEFAULT_DATABASE_PATH = "booktracker.db";
+    public static final String DEFAULT_PROPERTIES_FILE = "booktracker.properties";
+    public static final List<String> PRESETS = Arrays.asList("default", "bulk-import", "read-heavy", "durable");
+    public static final List<String> KEYS = Arrays.asList("profile", "path", "journal_mode", "synchronous", "cache_size",
+            "page_size", "mmap_size", "temp_store", "auto_vacuum", "busy_timeout", "replica_refresh", "shards");
+
+    private static final List<String> JOURNAL_MODES = Arrays.asList("DELETE", "TRUNCATE", "PERSIST", "MEMORY", "WAL", "OFF");
+    private static final List<String> SYNCHRONOUS_MODES = Arrays.asList("OFF", "NORMAL", "FULL", "EXTRA");
+    private static final List<String> TEMP_STORES = Arrays.asList("DEFAULT", "FILE", "MEMORY");
+    private static final List<String> AUTO_VACUUM_MODES = Arrays.asList("NONE", "FULL", "INCREMENTAL");
+
+    private final String name;
+    private final String databasePath;
+    private final String journalMode;
+    private final String synchronous;
+    private final int cacheSize;
+    private final int pageSize;
+    private final long mmapSize;
+    private final String tempStore;
+    private final String autoVacuum;
+    private final int busyTimeoutMillis;
+    private final int replicaRefreshSeconds;
+    private final int shardCount;
+
+    private StorageProfile(String name, String databasePath, String journalMode, String synchronous, int cacheSize,
+                           int pageSize, long mmapSize, String tempStore, String autoVacuum, int busyTimeoutMillis,
+                           int replicaRefreshSeconds, int shardCount) {
+        this.name = name;
+        this.databasePath = databasePath;
+        this.journalMode = journalMode;
+        this.synchronous = synchronous;
+        this.cacheSize = cacheSize;
+        this.pageSize = pageSize;
+        this.mmapSize = mmapSize;
+        this.tempStore = tempStore;
+        this.autoVacuum = autoVacuum;
+        this.busyTimeoutMillis = busyTimeoutMillis;
+        this.replicaRefreshSeconds = replicaRefreshSeconds;
+        this.shardCount = shardCount;
+    }
+
+    public static StorageProfile defaults() {
+        return preset("default");
+    }
+
+    public static StorageProfile preset(String name) {
+        switch (name) {
+            case "default":
+                return new StorageProfile(name, DEFAULT_DATABASE_PATH, "DELETE", "FULL", -2000, 4096, 0, "DEFAULT", "NONE", 3000, 0, 0);
+            case "bulk-import":
+                return new StorageProfile(name, DEFAULT_DATABASE_PATH, "MEMORY", "OFF", -262144, 8192, 0, "MEMORY", "NONE", 3000, 0, 0);
+            case "read-heavy":
+                return new StorageProfile(name, DEFAULT_DATABASE_PATH, "WAL", "NORMAL", -131072, 4096, 268435456L, "MEMORY", "INCREMENTAL", 5000, 30, 0);
+            case "durable":
+                return new StorageProfile(name, DEFAULT_DATABASE_PATH, "WAL", "FULL", -16384, 4096, 0, "DEFAULT", "INCREMENTAL", 30000, 0, 0);
+            default:
+                throw new IllegalArgumentException("Unknown storage profile '" + name + "', expected one of " + PRESETS);
+        }
+    }
+
+    /**
+     * Builds the profile from the properties file, if it exists, and the command line.
+     * Flags without a value, such as {@code --exit-after-startup}, are left to the
+     * caller; an unknown key in the file or in a {@code --key=value} argument is
+     * rejected so a misspelt setting does not silently fall back to the preset.
+     */
+    public static StorageProfile load(File propertiesFile, String[] args) {
+        Properties settings = new Properties();
+        if (propertiesFile != null && propertiesFile.isFile()) {
+            try (InputStream in = new FileInputStream(propertiesFile)) {
+                settings.load(in);
+                checkKeys(settings.stringPropertyNames(), propertiesFile.getPath());
+                LOGGER.info("Loaded storage settings from " + propertiesFile.getAbsolutePath());
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to read " + propertiesFile, e);
+            }
+        }
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (arg.startsWith("--") && equals > 2) {
+                String key = arg.substring(2, equals);
+                checkKeys(Collections.singleton(key), "the command line");
+                settings.setProperty(key, arg.substring(equals + 1));
+            }
+        }
+        return fromProperties(settings);
+    }
+
+    public static StorageProfile fromProperties(Properties settings) {
+        checkKeys(settings.stringPropertyNames(), "the storage settings");
+        StorageProfile base = preset(settings.getProperty("profile", "default").trim());
+        return new StorageProfile(
+                base.name,
+                settings.getProperty("path", base.databasePath).trim(),
+                choice(settings, "journal_mode", base.journalMode, JOURNAL_MODES),
+                choice(settings, "synchronous", base.synchronous, SYNCHRONOUS_MODES),
+                intValue(settings, "cache_size", base.cacheSize),
+                pageSize(settings, base.pageSize),
+                longValue(settings, "mmap_size", base.mmapSize),
+                choice(settings, "temp_store", base.tempStore, TEMP_STORES),
+                choice(settings, "auto_vacuum", base.autoVacuum, AUTO_VACUUM_MODES),
+                intValue(settings, "busy_timeout", base.busyTimeoutMillis),
+                intValue(settings, "replica_refresh", base.replicaRefreshSeconds),
+                shardCount(settings, base.shardCount));
+    }
+
+    public StorageProfile withDatabasePath(String path) {
+        if (path == null || path.trim().isEmpty()) {
+            throw new IllegalArgumentException("Database path cannot be null or empty");
+        }
+        return new StorageProfile(name, path.trim(), journalMode, synchronous, cacheSize, pageSize, mmapSize,
+                tempStore, autoVacuum, busyTimeoutMillis, replicaRefreshSeconds, shardCount);
+    }
+
+    public StorageProfile withReplicaRefreshSeconds(int seconds) {
+        return new StorageProfile(name, databasePath, journalMode, synchronous, cacheSize, pageSize, mmapSize,
+                tempStore, autoVacuum, busyTimeoutMillis, Math.max(0, seconds), shardCount);
+    }
+
+    public StorageProfile withShardCount(int shards) {
+        if (shards < 0) {
+            throw new IllegalArgumentException("Shard count cannot be negative");
+        }
+        return new StorageProfile(name, databasePath, journalMode, synchronous, cacheSize, pageSize, mmapSize,
+                tempStore, autoVacuum, busyTimeoutMillis, replicaRefreshSeconds, shards);
+    }
+
+    /**
+     * Applies the pragmas to a freshly opened connection. Must run while the connection
+     * is still in auto-commit mode, because the journal mode cannot change inside a
+     * transaction.
+     */
+    public void apply(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("PRAGMA busy_timeout = " + busyTimeoutMillis);
+            stmt.execute("PRAGMA page_size = " + pageSize);
+            // Like page_size this only takes effect on a new database; INCREMENTAL spares
+            // MaintenanceService the full VACUUM that switching the mode needs later
+            stmt.execute("PRAGMA auto_vacuum = " + autoVacuum);
+            stmt.execute("PRAGMA journal_mode = " + journalMode);
+            stmt.execute("PRAGMA synchronous = " + synchronous);
+            stmt.execute("PRAGMA cache_size = " + cacheSize);
+            stmt.execute("PRAGMA mmap_size = " + mmapSize);
+            stmt.execute("PRAGMA temp_store = " + tempStore);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getDatabasePath() {
+        return databasePath;
+    }
+
+    public String getJdbcUrl() {
+        return "jdbc:sqlite:" + databasePath;
+    }
+
+    public String getJournalMode() {
+        return journalMode;
+    }
+
+    public String getSynchronous() {
+        return synchronous;
+    }
+
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public long getMmapSize() {
+        return mmapSize;
+    }
+
+    public String getTempStore() {
+        return tempStore;
+    }
+
+    public String getAutoVacuum() {
+        return autoVacuum;
+    }
+
+    public int getBusyTimeoutMillis() {
+        return busyTimeoutMillis;
+    }
+
+    /**
+     * Seconds between refreshes of the in-memory read replica, or 0 if reads go to the
+     * database file.
+     */
+    public int getReplicaRefreshSeconds() {
+        return replicaRefreshSeconds;
+    }
+
+    /**
+     * Number of shard files to spread the data over, or 0 for a single database file.
+     */
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    @Override
+    public String toString() {
+        return name + " (path=" + databasePath + ", journal_mode=" + journalMode + ", synchronous=" + synchronous
+                + ", cache_size=" + cacheSize + ", page_size=" + pageSize + ", mmap_size=" + mmapSize
+                + ", temp_store=" + tempStore + ", auto_vacuum=" + autoVacuum + ", busy_timeout=" + busyTimeoutMillis
+                + ", replica_refresh=" + replicaRefreshSeconds + ", shards=" + shardCount + ")";
+    }
+
+    private static void checkKeys(Collection<String> keys, String source) {
+        for (String key : keys) {
+            if (!KEYS.contains(key)) {
+                throw new IllegalArgumentException("Unknown storage setting '" + key + "' in " + source
+                        + ", expected one of " + KEYS);
+            }
+        }
+    }
+
+    private static String choice(Properties settings, String key, String fallback, List<String> allowed) {
+        String value = settings.getProperty(key);
+        if (value == null) {
+            return fallback;
+        }
+        value = value.trim().toUpperCase(Locale.ROOT);
+        if (!allowed.contains(value)) {
+            throw new IllegalArgumentException("Invalid " + key + " '" + value + "', expected one of " + allowed);
+        }
+        return value;
+    }
+
+    private static int intValue(Properties settings, String key, int fallback) {
+        String value = settings.getProperty(key);
+        try {
+            return value == null ? fallback : Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + key + " '" + value + "', expected an integer", e);
+        }
+    }
+
+    private static long longValue(Properties settings, String key, long fallback) {
+        String value = settings.getProperty(key);
+        try {
+            long parsed = value == null ? fallback : Long.parseLong(value.trim());
+            if (parsed < 0) {
+                throw new IllegalArgumentException("Invalid " + key + " '" + value + "', cannot be negative");
+            }
+            return parsed;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + key + " '" + value + "', expected an integer", e);
+        }
+    }
+
+    private static int shardCount(Properties settings, int fallback) {
+        int value = intValue(settings, "shards", fallback);
+        if (value < 0) {
+            throw new IllegalArgumentException("Invalid shards " + value + ", cannot be negative");
+        }
+        return value;
+    }
+
+    private static int pageSize(Properties settings, int fallback) {
+        int value = intValue(settings, "page_size", fallback);
+        if (value < 512 || value > 65536 || Integer.bitCount(value) != 1) {
+            throw new IllegalArgumentException("Invalid page_size " + value + ", expected a power of two from 512 to 65536");
+        }
+        return value;
+    }
+}
@@ -0,0 +1,160 @@
+package com.christianmol.booktracker.database;
+
+import com.christianmol.booktracker.analytics.CohortSummary;
+import com.christianmol.booktracker.changelog.ChangeLog;
+import com.christianmol.booktracker.model.ReadingHabit;
+import com.christianmol.booktracker.recommend.CoOccurrenceIndex;
+
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * The operations the menu offers, implemented by {@link DatabaseManager} for a single
+ * file and by {@link ShardedDatabaseManager} for several. The {@code find} and
+ * {@code describe} methods return their results; the {@code get} and {@code view}
+ * methods print them. Writes print a one-line summary and return their count.
+ */
+public interface TrackerDatabase extends AutoCloseable {
+    /**
+     * Creates the tables if needed and imports the Excel dataset into an empty database.
+     */
+    void initializeDatabase();
+
+    /**
+     * Records every write as a typed event and appends the events to the change log
+     * after the commit.
+     */
+    void setChangeLog(ChangeLog changeLog);
+
+    /**
+     * Adds a user and returns the ID it was given.
+     */
+    int addUser(String name, int age, String gender);
+
+    /**
+     * Returns the reading habits of the user with the given ID, or of every user whose
+     * name contains the given text.
+     */
+    List<ReadingHabit> findReadingHabitsForUser(String input);
+
+    /**
+     * Renames every stored spelling of a title and returns the number of records changed.
+     */
+    int changeBookTitle(String oldTitle, String newTitle);
+
+    /**
+     * Deletes a reading habit and returns the number of records removed, 0 or 1.
+     */
+    int deleteReadingHabit(int habitID);
+
+    double findMeanUserAge();
+
+    /**
+     * Number of distinct readers of a title, counting every stored spelling of it.
+     */
+    int findUserCountForBook(String bookTitle);
+
+    long findTotalPagesRead();
+
+    int findUsersWithMultipleBooks();
+
+    /**
+     * The users, per-book statistics, users without habits and totals, as text.
+     */
+    String describeDatabaseStructure();
+
+    /**
+     * The books most often read by readers of the given book, best match first.
+     */
+    List<CoOccurrenceIndex.Recommendation> findBooksAlsoRead(String bookTitle);
+
+    /**
+     * One summary per age band and gender, followed by the total over all users.
+     */
+    List<CohortSummary> findCohortStatistics();
+
+    @Override
+    void close();
+
+    default void getReadingHabitsForUser(String input) {
+        List<ReadingHabit> habits = findReadingHabitsForUser(input);
+        for (ReadingHabit habit : habits) {
+            System.out.printf("Book: %s, Pages Read: %d, Date: %s%n",
+                    habit.getBook(),
+                    habit.getPagesRead(),
+                    habit.getSubmissionMoment().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")));
+        }
+        if (habits.isEmpty()) {
+            if (input.matches("\\d+")) {
+                System.out.println("No reading habits found for user ID " + input);
+            } else {
+                System.out.println("No reading habits found for user name containing '" + input + "'");
+            }
+        }
+    }
+
+    default void getMeanUserAge() {
+        System.out.printf("Mean user age: %.2f%n", findMeanUserAge());
+    }
+
+    default void getUserCountForBook(String bookTitle) {
+        int count = findUserCountForBook(bookTitle);
+        System.out.printf("Number of users who read '%s': %d%n", bookTitle, count);
+    }
+
+    default void getTotalPagesRead() {
+        System.out.printf("Total pages read by all users: %d%n", findTotalPagesRead());
+    }
+
+    default void getUsersWithMultipleBooks() {
+        System.out.printf("Number of users who read multiple books: %d%n", findUsersWithMultipleBooks());
+    }
+
+    default void viewDatabaseStructure() {
+        System.out.print(describeDatabaseStructure());
+    }
+
+    /**
+     * Prints the books most often read by readers of the given book, ranked by Jaccard
+     * similarity of their reader sets.
+     */
+    default void getBooksAlsoRead(String bookTitle) {
+        List<CoOccurrenceIndex.Recommendation> recommendations = findBooksAlsoRead(bookTitle);
+        if (recommendations.isEmpty()) {
+            System.out.println("No other books found for readers of '" + bookTitle.trim() + "'");
+            return;
+        }
+        System.out.println("Readers of '" + bookTitle.trim() + "' also read:");
+        for (CoOccurrenceIndex.Recommendation recommendation : recommendations) {
+            System.out.printf("  %s | Shared readers: %d | Similarity: %.3f%n",
+                    recommendation.getTitle(),
+                    recommendation.getSharedReaders(),
+                    recommendation.getScore());
+        }
+    }
+
+    /**
+     * Prints reading statistics per age band and gender: users, readers, pages read,
+     * books per reader and pages per reader with percentiles, and the titles read by the
+     * most readers.
+     */
+    default void getCohortStatistics() {
+        List<CohortSummary> summaries = findCohortStatistics();
+        Function<double[], String> percentiles = values -> Double.isNaN(values[0])
+                ? "-" : String.format("%.0f/%.0f/%.0f", values[0], values[1], values[2]);
+        System.out.println("\n=== Reading Statistics by Age Band and Gender ===\n");
+        System.out.printf("%-8s %-7s %7s %7s %9s %11s %17s %23s%n", "Age", "Gender", "Users", "Readers",
+                "Pages", "Books mean", "Books p50/p90/p99", "Pages/reader p50/p90/p99");
+        for (CohortSummary summary : summaries) {
+            System.out.printf("%-8s %-7s %7d %7d %9d %11.2f %17s %23s%n",
+                    summary.getAgeBand(), summary.getGender(), summary.getUsers(), summary.getReaders(),
+                    summary.getPages(), summary.getMeanBooksPerReader(),
+                    percentiles.apply(summary.getBooksPerReader()), percentiles.apply(summary.getPagesPerReader()));
+            if (!summary.getTopTitles().isEmpty()) {
+                System.out.println("         Top titles: " + summary.getTopTitles());
+            }
+        }
+        System.out.println("(Percentiles are within 1% of an actual value)");
+    }
+}
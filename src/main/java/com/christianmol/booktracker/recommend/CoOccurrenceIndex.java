@@ -0,0 +1,330 @@
+package com.christianmol.booktracker.recommend;
+
+import com.christianmol.booktracker.catalog.TitleNormalizer;
+import com.christianmol.booktracker.util.IntIntHashMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Book-to-book co-occurrence counts built from user reading histories, used to answer
+ * "readers of this book also read".
+ *
+ * <p>Books are numbered densely and every book keeps a sparse {@link IntIntHashMap} from
+ * the other book's number to the number of users who read both. The initial build runs
+ * as a fork-join computation over partitions of the users; afterwards
+ * {@link #addHabit(int, String)} keeps the counts current one habit at a time.</p>
+ */
+public class CoOccurrenceIndex {
+    private static final int USERS_PER_TASK = 512;
+
+    public enum Similarity {
+        /** Shared readers divided by the readers of either book. */
+        JACCARD,
+        /** Shared readers divided by the geometric mean of both reader counts. */
+        COSINE
+    }
+
+    private final Map<String, Integer> bookIds;
+    private final List<String> titles;
+    private final IntIntHashMap userSlots;
+    private int[][] userBooks;
+    private int[] userBookCounts;
+    private int userCount;
+    private int[] readerCounts;
+    private IntIntHashMap[] coCounts;
+
+    private CoOccurrenceIndex(Map<String, Integer> bookIds, List<String> titles, IntIntHashMap userSlots,
+                              int[][] userBooks, int[] userBookCounts, int userCount) {
+        this.bookIds = bookIds;
+        this.titles = titles;
+        this.userSlots = userSlots;
+        this.userBooks = userBooks;
+        this.userBookCounts = userBookCounts;
+        this.userCount = userCount;
+        this.readerCounts = new int[Math.max(16, titles.size())];
+        this.coCounts = new IntIntHashMap[readerCounts.length];
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public synchronized int getBookCount() {
+        return titles.size();
+    }
+
+    /**
+     * Records that a user read a book. Re-reading a book the user already has in their
+     * history does not change any counts.
+     */
+    public synchronized void addHabit(int userID, String bookTitle) {
+        int book = bookId(bookTitle);
+        int slot = userSlot(userID);
+        int[] history = userBooks[slot];
+        int count = userBookCounts[slot];
+        for (int i = 0; i < count; i++) {
+            if (history[i] == book) {
+                return;
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            coCounts(book).addTo(history[i], 1);
+            coCounts(history[i]).addTo(book, 1);
+        }
+        readerCounts[book]++;
+        if (count == history.length) {
+            userBooks[slot] = history = Arrays.copyOf(history, Math.max(4, count * 2));
+        }
+        history[count] = book;
+        userBookCounts[slot] = count + 1;
+    }
+
+    /**
+     * Returns up to k books most often read together with the given book, best score
+     * first. An unknown title yields an empty list.
+     */
+    public synchronized List<Recommendation> topSimilar(String bookTitle, int k, Similarity similarity) {
+        if (k <= 0) {
+            throw new IllegalArgumentException("k must be positive");
+        }
+        Integer book = bookIds.get(TitleNormalizer.canonicalize(bookTitle));
+        if (book == null || coCounts[book] == null) {
+            return Collections.emptyList();
+        }
+        int readers = readerCounts[book];
+        PriorityQueue<Recommendation> best = new PriorityQueue<>(k + 1, Collections.reverseOrder());
+        coCounts[book].forEach((other, shared) -> {
+            double score;
+            if (similarity == Similarity.COSINE) {
+                score = shared / Math.sqrt((double) readers * readerCounts[other]);
+            } else {
+                score = (double) shared / (readers + readerCounts[other] - shared);
+            }
+            best.offer(new Recommendation(titles.get(other), score, shared));
+            if (best.size() > k) {
+                best.poll();
+            }
+        });
+        List<Recommendation> result = new ArrayList<>(best);
+        Collections.sort(result);
+        return result;
+    }
+
+    private int bookId(String bookTitle) {
+        String key = TitleNormalizer.canonicalize(bookTitle);
+        Integer id = bookIds.get(key);
+        if (id == null) {
+            id = titles.size();
+            bookIds.put(key, id);
+            titles.add(TitleNormalizer.displayTitle(bookTitle));
+            if (id == readerCounts.length) {
+                readerCounts = Arrays.copyOf(readerCounts, id * 2);
+                coCounts = Arrays.copyOf(coCounts, id * 2);
+            }
+        }
+        return id;
+    }
+
+    private int userSlot(int userID) {
+        if (userSlots.containsKey(userID)) {
+            return userSlots.get(userID);
+        }
+        int slot = userCount++;
+        if (slot == userBooks.length) {
+            userBooks = Arrays.copyOf(userBooks, Math.max(16, slot * 2));
+            userBookCounts = Arrays.copyOf(userBookCounts, userBooks.length);
+        }
+        userBooks[slot] = new int[4];
+        userSlots.put(userID, slot);
+        return slot;
+    }
+
+    private IntIntHashMap coCounts(int book) {
+        if (coCounts[book] == null) {
+            coCounts[book] = new IntIntHashMap();
+        }
+        return coCounts[book];
+    }
+
+    /**
+     * Collects (user, book) pairs and builds the index in parallel.
+     */
+    public static final class Builder {
+        private final Map<String, Integer> bookIds = new HashMap<>();
+        private final List<String> titles = new ArrayList<>();
+        private final IntIntHashMap userSlots = new IntIntHashMap();
+        private int[][] userBooks = new int[16][];
+        private int[] userBookCounts = new int[16];
+        private int userCount;
+
+        private Builder() {
+        }
+
+        public Builder add(int userID, String bookTitle) {
+            int book;
+            String key = TitleNormalizer.canonicalize(bookTitle);
+            Integer id = bookIds.get(key);
+            if (id == null) {
+                book = titles.size();
+                bookIds.put(key, book);
+                titles.add(TitleNormalizer.displayTitle(bookTitle));
+            } else {
+                book = id;
+            }
+
+            int slot;
+            if (userSlots.containsKey(userID)) {
+                slot = userSlots.get(userID);
+            } else {
+                slot = userCount++;
+                if (slot == userBooks.length) {
+                    userBooks = Arrays.copyOf(userBooks, slot * 2);
+                    userBookCounts = Arrays.copyOf(userBookCounts, slot * 2);
+                }
+                userBooks[slot] = new int[4];
+                userSlots.put(userID, slot);
+            }
+
+            int[] history = userBooks[slot];
+            int count = userBookCounts[slot];
+            for (int i = 0; i < count; i++) {
+                if (history[i] == book) {
+                    return this;
+                }
+            }
+            if (count == history.length) {
+                userBooks[slot] = history = Arrays.copyOf(history, count * 2);
+            }
+            history[count] = book;
+            userBookCounts[slot] = count + 1;
+            return this;
+        }
+
+        public CoOccurrenceIndex build() {
+            return build(ForkJoinPool.commonPool());
+        }
+
+        public CoOccurrenceIndex build(ForkJoinPool pool) {
+            CoOccurrenceIndex index = new CoOccurrenceIndex(bookIds, titles, userSlots,
+                    userBooks, userBookCounts, userCount);
+            int bookCount = titles.size();
+            for (int slot = 0; slot < userCount; slot++) {
+                for (int i = 0; i < userBookCounts[slot]; i++) {
+                    index.readerCounts[userBooks[slot][i]]++;
+                }
+            }
+            if (userCount > 0) {
+                IntIntHashMap[] counts = pool.invoke(new PairCountTask(userBooks, userBookCounts, 0, userCount, bookCount));
+                System.arraycopy(counts, 0, index.coCounts, 0, bookCount);
+            }
+            return index;
+        }
+    }
+
+    /**
+     * Counts book pairs for a range of users, splitting the range until it is small
+     * enough and adding the partial maps together on the way back up.
+     */
+    private static final class PairCountTask extends RecursiveTask<IntIntHashMap[]> {
+        private static final long serialVersionUID = 1L;
+
+        private final int[][] userBooks;
+        private final int[] userBookCounts;
+        private final int from;
+        private final int to;
+        private final int bookCount;
+
+        PairCountTask(int[][] userBooks, int[] userBookCounts, int from, int to, int bookCount) {
+            this.userBooks = userBooks;
+            this.userBookCounts = userBookCounts;
+            this.from = from;
+            this.to = to;
+            this.bookCount = bookCount;
+        }
+
+        @Override
+        protected IntIntHashMap[] compute() {
+            if (to - from > USERS_PER_TASK) {
+                int middle = (from + to) >>> 1;
+                PairCountTask left = new PairCountTask(userBooks, userBookCounts, from, middle, bookCount);
+                left.fork();
+                IntIntHashMap[] right = new PairCountTask(userBooks, userBookCounts, middle, to, bookCount).compute();
+                IntIntHashMap[] merged = left.join();
+                for (int book = 0; book < bookCount; book++) {
+                    if (right[book] == null) {
+                        continue;
+                    }
+                    if (merged[book] == null) {
+                        merged[book] = right[book];
+                    } else {
+                        merged[book].addAll(right[book]);
+                    }
+                }
+                return merged;
+            }
+
+            IntIntHashMap[] counts = new IntIntHashMap[bookCount];
+            for (int slot = from; slot < to; slot++) {
+                int[] history = userBooks[slot];
+                int count = userBookCounts[slot];
+                for (int i = 0; i < count; i++) {
+                    for (int j = i + 1; j < count; j++) {
+                        increment(counts, history[i], history[j]);
+                        increment(counts, history[j], history[i]);
+                    }
+                }
+            }
+            return counts;
+        }
+
+        private static void increment(IntIntHashMap[] counts, int book, int other) {
+            if (counts[book] == null) {
+                counts[book] = new IntIntHashMap();
+            }
+            counts[book].addTo(other, 1);
+        }
+    }
+
+    public static final class Recommendation implements Comparable<Recommendation> {
+        private final String title;
+        private final double score;
+        private final int sharedReaders;
+
+        public Recommendation(String title, double score, int sharedReaders) {
+            this.title = title;
+            this.score = score;
+            this.sharedReaders = sharedReaders;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public double getScore() {
+            return score;
+        }
+
+        public int getSharedReaders() {
+            return sharedReaders;
+        }
+
+        @Override
+        public int compareTo(Recommendation other) {
+            int byScore = Double.compare(other.score, score);
+            return byScore != 0 ? byScore : title.compareTo(other.title);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s (score %.3f, %d shared reader(s))", title, score, sharedReaders);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.christianmol.booktracker.scheduler;
+
+/**
+ * Counters and latencies of one operation class at the time it was read. Latencies are
+ * p50/p90/p99 in microseconds, split into the time spent queued and the time spent
+ * running; either is NaN until an operation completed.
+ */
+public final class ClassStats {
+    private final OperationClass operationClass;
+    private final long completed;
+    private final long failed;
+    private final long rejectedQueueFull;
+    private final long rejectedRateLimited;
+    private final int queued;
+    private final double[] queueWaitMicros;
+    private final double[] executionMicros;
+
+    ClassStats(OperationClass operationClass, long completed, long failed, long rejectedQueueFull,
+               long rejectedRateLimited, int queued, double[] queueWaitMicros, double[] executionMicros) {
+        this.operationClass = operationClass;
+        this.completed = completed;
+        this.failed = failed;
+        this.rejectedQueueFull = rejectedQueueFull;
+        this.rejectedRateLimited = rejectedRateLimited;
+        this.queued = queued;
+        this.queueWaitMicros = queueWaitMicros;
+        this.executionMicros = executionMicros;
+    }
+
+    public OperationClass getOperationClass() {
+        return operationClass;
+    }
+
+    /**
+     * Operations that ran, including those that failed.
+     */
+    public long getCompleted() {
+        return completed;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    public long getRejectedQueueFull() {
+        return rejectedQueueFull;
+    }
+
+    public long getRejectedRateLimited() {
+        return rejectedRateLimited;
+    }
+
+    public int getQueued() {
+        return queued;
+    }
+
+    public double[] getQueueWaitMicros() {
+        return queueWaitMicros.clone();
+    }
+
+    public double[] getExecutionMicros() {
+        return executionMicros.clone();
+    }
+}
@@ -0,0 +1,42 @@
+package com.christianmol.booktracker.scheduler;
+
+/**
+ * Cost classes the {@link RequestScheduler} queues separately. The defaults give cheap
+ * lookups most of the dispatch share and the most concurrency, and charge expensive
+ * operations more of a client's rate limit.
+ *
+ * <p>A concurrency limit only caps how many operations are dispatched at once. With
+ * {@link ScheduledDatabaseManager} the point reads share one replica connection and one
+ * primary connection, so at most two of them make progress at a time.</p>
+ */
+public enum OperationClass {
+    /** Lookups of a single user or book, answered from an index. */
+    POINT_READ(8, 1, 4, 256),
+    /** Queries that scan whole tables, such as totals and the structure overview. */
+    AGGREGATE(2, 5, 1, 32),
+    /** Writes, from a single row up to renames and deletes across many habits. */
+    BULK_WRITE(1, 10, 1, 32);
+
+    private final int defaultWeight;
+    private final int tokenCost;
+    private final int defaultConcurrency;
+    private final int defaultQueueCapacity;
+
+    OperationClass(int defaultWeight, int tokenCost, int defaultConcurrency, int defaultQueueCapacity) {
+        this.defaultWeight = defaultWeight;
+        this.tokenCost = tokenCost;
+        this.defaultConcurrency = defaultConcurrency;
+        this.defaultQueueCapacity = defaultQueueCapacity;
+    }
+
+    /**
+     * Tokens one operation of this class takes from the client's bucket.
+     */
+    public int getTokenCost() {
+        return tokenCost;
+    }
+
+    public RequestScheduler.Limits defaultLimits() {
+        return new RequestScheduler.Limits(defaultConcurrency, defaultQueueCapacity, defaultWeight);
+    }
+}
@@ -0,0 +1,389 @@
+package com.christianmol.booktracker.scheduler;
+
+import com.christianmol.booktracker.analytics.QuantileSketch;
+
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs operations from several clients with a bounded queue and a concurrency limit per
+ * {@link OperationClass}, so a burst of expensive operations cannot hold up cheap ones.
+ *
+ * <p>Whenever a worker is free, the class to run next is chosen by stride scheduling:
+ * each class advances its pass by 1/weight per dispatch and the backlogged class with
+ * the lowest pass goes first, so busy classes share dispatches in proportion to their
+ * weights. A class that was idle rejoins at the current pass instead of catching up on
+ * the turns it missed. Exclusive operations additionally run one at a time across all
+ * classes; they wait in their queue until the previous one finished, so that wait is
+ * reported as queue time and the weighted order decides which class goes next.</p>
+ *
+ * <p>Each client has a token bucket, and an operation is rejected with a
+ * {@link RejectedExecutionException} when its client is out of tokens or its class
+ * queue is full, rather than waiting.</p>
+ */
+public class RequestScheduler implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(RequestScheduler.class.getName());
+    private static final OperationClass[] CLASSES = OperationClass.values();
+    private static final long STRIDE_BASE = 1L << 20;
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99};
+
+    public static final double DEFAULT_TOKENS_PER_SECOND = 200;
+    public static final double DEFAULT_BURST = 400;
+
+    private final ClassQueue[] queues = new ClassQueue[CLASSES.length];
+    private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+    private final double tokensPerSecond;
+    private final double burst;
+    private final Thread[] workers;
+    private long virtualTime;
+    private boolean exclusiveRunning;
+    private boolean closed;
+
+    public RequestScheduler() {
+        this(defaultLimits(), DEFAULT_TOKENS_PER_SECOND, DEFAULT_BURST);
+    }
+
+    /**
+     * Creates a scheduler with the given limit for each class; classes missing from the
+     * map use their defaults. A tokensPerSecond of 0 turns off the per-client rate limit.
+     */
+    public RequestScheduler(Map<OperationClass, Limits> limits, double tokensPerSecond, double burst) {
+        if (limits == null) {
+            throw new IllegalArgumentException("Limits cannot be null");
+        }
+        if (tokensPerSecond < 0) {
+            throw new IllegalArgumentException("Token rate cannot be negative");
+        }
+        if (tokensPerSecond > 0 && burst < maxTokenCost()) {
+            throw new IllegalArgumentException("Burst must cover the most expensive operation (" + maxTokenCost() + " tokens)");
+        }
+        this.tokensPerSecond = tokensPerSecond;
+        this.burst = burst;
+
+        int workerCount = 0;
+        for (OperationClass operationClass : CLASSES) {
+            Limits classLimits = limits.get(operationClass);
+            queues[operationClass.ordinal()] = new ClassQueue(operationClass,
+                    classLimits != null ? classLimits : operationClass.defaultLimits());
+            workerCount += queues[operationClass.ordinal()].limits.concurrency;
+        }
+        // Enough workers for every class to run at its limit at once
+        workers = new Thread[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            workers[i] = new Thread(this::work, "booktracker-scheduler-" + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+    }
+
+    public static Map<OperationClass, Limits> defaultLimits() {
+        Map<OperationClass, Limits> limits = new EnumMap<>(OperationClass.class);
+        for (OperationClass operationClass : CLASSES) {
+            limits.put(operationClass, operationClass.defaultLimits());
+        }
+        return limits;
+    }
+
+    /**
+     * Queues an operation for a client. The returned future completes with its result,
+     * or exceptionally with whatever it threw.
+     *
+     * @throws RejectedExecutionException if the client is over its rate limit, the class
+     *                                    queue is full, or the scheduler is closed
+     */
+    public <T> CompletableFuture<T> submit(String client, OperationClass operationClass, Callable<T> operation) {
+        return submit(client, operationClass, operation, false);
+    }
+
+    /**
+     * Queues an operation that must not run at the same time as any other exclusive
+     * operation, such as one that uses an unsynchronized resource.
+     *
+     * @throws RejectedExecutionException if the client is over its rate limit, the class
+     *                                    queue is full, or the scheduler is closed
+     */
+    public <T> CompletableFuture<T> submitExclusive(String client, OperationClass operationClass,
+                                                    Callable<T> operation) {
+        return submit(client, operationClass, operation, true);
+    }
+
+    private <T> CompletableFuture<T> submit(String client, OperationClass operationClass, Callable<T> operation,
+                                            boolean exclusive) {
+        if (client == null || client.isEmpty()) {
+            throw new IllegalArgumentException("Client cannot be null or empty");
+        }
+        if (operationClass == null || operation == null) {
+            throw new IllegalArgumentException("Operation class and operation cannot be null");
+        }
+
+        ClassQueue queue = queues[operationClass.ordinal()];
+        long now = System.nanoTime();
+        TokenBucket bucket = null;
+        if (tokensPerSecond > 0) {
+            bucket = buckets.computeIfAbsent(client, key -> new TokenBucket(tokensPerSecond, burst, now));
+            if (!bucket.tryAcquire(operationClass.getTokenCost(), now)) {
+                queue.recordRejected(true);
+                throw new RejectedExecutionException("Client " + client + " is over its rate limit");
+            }
+        }
+
+        Request<T> request = new Request<>(operation, exclusive, now);
+        synchronized (this) {
+            // A rejected operation did not run, so its client gets the tokens back
+            if (closed) {
+                refund(bucket, operationClass);
+                throw new RejectedExecutionException("Request scheduler is closed");
+            }
+            if (queue.pending.size() >= queue.limits.queueCapacity) {
+                refund(bucket, operationClass);
+                queue.recordRejected(false);
+                throw new RejectedExecutionException("Queue for " + operationClass + " is full");
+            }
+            if (queue.pending.isEmpty() && queue.running == 0) {
+                // An idle class does not bank the turns it skipped
+                queue.pass = Math.max(queue.pass, virtualTime);
+            }
+            queue.pending.add(request);
+            notifyAll();
+        }
+        return request.result;
+    }
+
+    public ClassStats getStats(OperationClass operationClass) {
+        ClassQueue queue = queues[operationClass.ordinal()];
+        int queued;
+        synchronized (this) {
+            queued = queue.pending.size();
+        }
+        return queue.snapshot(queued);
+    }
+
+    /**
+     * Formats the stats of every class as a table.
+     */
+    public String report() {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("%-11s %9s %6s %9s %10s %6s %24s %24s%n", "Class", "Completed", "Failed",
+                "Rate-lim.", "Queue-full", "Queued", "Queue wait p50/p90/p99", "Execution p50/p90/p99"));
+        for (OperationClass operationClass : CLASSES) {
+            ClassStats stats = getStats(operationClass);
+            report.append(String.format("%-11s %9d %6d %9d %10d %6d %24s %24s%n", operationClass,
+                    stats.getCompleted(), stats.getFailed(), stats.getRejectedRateLimited(),
+                    stats.getRejectedQueueFull(), stats.getQueued(),
+                    formatMicros(stats.getQueueWaitMicros()), formatMicros(stats.getExecutionMicros())));
+        }
+        return report.toString();
+    }
+
+    /**
+     * Stops accepting operations, runs everything already queued, and waits for the
+     * workers to finish.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        for (Thread worker : workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void work() {
+        while (true) {
+            ClassQueue queue;
+            Request<?> request;
+            synchronized (this) {
+                while ((queue = nextQueue()) == null) {
+                    if (closed && isEmpty()) {
+                        return;
+                    }
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                request = queue.pending.poll();
+                queue.running++;
+                exclusiveRunning |= request.exclusive;
+                virtualTime = queue.pass;
+                queue.pass += queue.stride;
+            }
+            try {
+                request.run(queue);
+            } finally {
+                synchronized (this) {
+                    queue.running--;
+                    if (request.exclusive) {
+                        exclusiveRunning = false;
+                    }
+                    notifyAll();
+                }
+            }
+        }
+    }
+
+    // The class with the lowest pass whose next request can start now, or null
+    private ClassQueue nextQueue() {
+        ClassQueue next = null;
+        for (ClassQueue queue : queues) {
+            Request<?> head = queue.pending.peek();
+            if (head != null && queue.running < queue.limits.concurrency && !(head.exclusive && exclusiveRunning)
+                    && (next == null || queue.pass < next.pass)) {
+                next = queue;
+            }
+        }
+        return next;
+    }
+
+    private boolean isEmpty() {
+        for (ClassQueue queue : queues) {
+            if (!queue.pending.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void refund(TokenBucket bucket, OperationClass operationClass) {
+        if (bucket != null) {
+            bucket.refund(operationClass.getTokenCost());
+        }
+    }
+
+    private static int maxTokenCost() {
+        int max = 0;
+        for (OperationClass operationClass : CLASSES) {
+            max = Math.max(max, operationClass.getTokenCost());
+        }
+        return max;
+    }
+
+    private static String formatMicros(double[] micros) {
+        if (Double.isNaN(micros[0])) {
+            return "-";
+        }
+        return String.format("%.0f/%.0f/%.0f us", micros[0], micros[1], micros[2]);
+    }
+
+    /**
+     * Concurrency limit, queue capacity and dispatch weight of one operation class.
+     */
+    public static final class Limits {
+        private final int concurrency;
+        private final int queueCapacity;
+        private final int weight;
+
+        public Limits(int concurrency, int queueCapacity, int weight) {
+            if (concurrency <= 0 || queueCapacity <= 0 || weight <= 0) {
+                throw new IllegalArgumentException("Concurrency, queue capacity and weight must be positive");
+            }
+            this.concurrency = concurrency;
+            this.queueCapacity = queueCapacity;
+            this.weight = weight;
+        }
+
+        public int getConcurrency() {
+            return concurrency;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public int getWeight() {
+            return weight;
+        }
+    }
+
+    /**
+     * Queue, dispatch state and stats of one class. The queue and dispatch fields are
+     * guarded by the scheduler, the stats by the class itself.
+     */
+    private static final class ClassQueue {
+        final OperationClass operationClass;
+        final Limits limits;
+        final long stride;
+        final ArrayDeque<Request<?>> pending = new ArrayDeque<>();
+        int running;
+        long pass;
+
+        private final QuantileSketch queueWait = new QuantileSketch();
+        private final QuantileSketch execution = new QuantileSketch();
+        private long completed;
+        private long failed;
+        private long rejectedQueueFull;
+        private long rejectedRateLimited;
+
+        ClassQueue(OperationClass operationClass, Limits limits) {
+            this.operationClass = operationClass;
+            this.limits = limits;
+            this.stride = STRIDE_BASE / limits.weight;
+        }
+
+        synchronized void recordRejected(boolean rateLimited) {
+            if (rateLimited) {
+                rejectedRateLimited++;
+            } else {
+                rejectedQueueFull++;
+            }
+        }
+
+        synchronized void recordCompleted(long waitNanos, long executionNanos, boolean success) {
+            queueWait.add(waitNanos / 1000);
+            execution.add(executionNanos / 1000);
+            completed++;
+            if (!success) {
+                failed++;
+            }
+        }
+
+        synchronized ClassStats snapshot(int queued) {
+            return new ClassStats(operationClass, completed, failed, rejectedQueueFull, rejectedRateLimited,
+                    queued, queueWait.quantiles(QUANTILES), execution.quantiles(QUANTILES));
+        }
+    }
+
+    private static final class Request<T> {
+        final Callable<T> operation;
+        final boolean exclusive;
+        final long submitted;
+        final CompletableFuture<T> result = new CompletableFuture<>();
+
+        Request(Callable<T> operation, boolean exclusive, long submitted) {
+            this.operation = operation;
+            this.exclusive = exclusive;
+            this.submitted = submitted;
+        }
+
+        void run(ClassQueue queue) {
+            long start = System.nanoTime();
+            boolean success = false;
+            try {
+                T value = operation.call();
+                success = true;
+                result.complete(value);
+            } catch (Throwable e) {
+                // Reported through the future; the worker carries on with the next request
+                LOGGER.log(Level.FINE, "Scheduled " + queue.operationClass + " operation failed", e);
+                result.completeExceptionally(e);
+            } finally {
+                queue.recordCompleted(start - submitted, System.nanoTime() - start, success);
+            }
+        }
+    }
+}
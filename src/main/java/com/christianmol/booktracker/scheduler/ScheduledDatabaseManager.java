@@ -0,0 +1,133 @@
+package com.christianmol.booktracker.scheduler;
+
+import com.christianmol.booktracker.analytics.CohortSummary;
+import com.christianmol.booktracker.database.DatabaseManager;
+import com.christianmol.booktracker.database.PointReader;
+import com.christianmol.booktracker.model.ReadingHabit;
+import com.christianmol.booktracker.recommend.CoOccurrenceIndex;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Shares one {@link DatabaseManager} between several clients by running its operations
+ * through a {@link RequestScheduler}. Each method names the calling client and returns
+ * a future for the operation's result. Reads print nothing; writes still print their
+ * usual one-line message, but as they run one at a time those lines do not interleave.
+ *
+ * <p>DatabaseManager has a single primary connection and unsynchronized caches, so
+ * writes and the lookups backed by the title, recommendation and cohort caches are
+ * submitted as exclusive operations and run one at a time. Point reads go to the
+ * manager's {@link PointReader} when the database uses WAL, and then never wait for an
+ * exclusive operation. Other plain SQL reads are served by the read replica when the
+ * storage profile has one and then run alongside everything else, up to the limit of
+ * their class; without a replica they are exclusive too. The point reader and the replica
+ * are single connections, so their reads still take turns on them.</p>
+ */
+public class ScheduledDatabaseManager implements AutoCloseable {
+    private final DatabaseManager db;
+    private final RequestScheduler scheduler;
+
+    public ScheduledDatabaseManager(DatabaseManager db, RequestScheduler scheduler) {
+        if (db == null || scheduler == null) {
+            throw new IllegalArgumentException("Database manager and scheduler cannot be null");
+        }
+        this.db = db;
+        this.scheduler = scheduler;
+    }
+
+    public RequestScheduler getScheduler() {
+        return scheduler;
+    }
+
+    public CompletableFuture<List<ReadingHabit>> getReadingHabitsForUser(String client, String input) {
+        PointReader reader = db.getPointReader();
+        return reader != null
+                ? scheduler.submit(client, OperationClass.POINT_READ, () -> reader.findReadingHabitsForUser(input))
+                : read(client, OperationClass.POINT_READ, () -> db.findReadingHabitsForUser(input));
+    }
+
+    public CompletableFuture<Integer> getUserCountForBook(String client, String bookTitle) {
+        PointReader reader = db.getPointReader();
+        return reader != null
+                ? scheduler.submit(client, OperationClass.POINT_READ, () -> reader.findUserCountForBook(bookTitle))
+                : primary(client, OperationClass.POINT_READ, () -> db.findUserCountForBook(bookTitle));
+    }
+
+    public CompletableFuture<List<CoOccurrenceIndex.Recommendation>> getBooksAlsoRead(String client, String bookTitle) {
+        PointReader reader = db.getPointReader();
+        return reader != null
+                ? scheduler.submit(client, OperationClass.POINT_READ, () -> reader.findBooksAlsoRead(bookTitle))
+                : primary(client, OperationClass.POINT_READ, () -> db.findBooksAlsoRead(bookTitle));
+    }
+
+    public CompletableFuture<Double> getMeanUserAge(String client) {
+        return read(client, OperationClass.AGGREGATE, db::findMeanUserAge);
+    }
+
+    public CompletableFuture<Long> getTotalPagesRead(String client) {
+        return read(client, OperationClass.AGGREGATE, db::findTotalPagesRead);
+    }
+
+    public CompletableFuture<Integer> getUsersWithMultipleBooks(String client) {
+        return read(client, OperationClass.AGGREGATE, db::findUsersWithMultipleBooks);
+    }
+
+    public CompletableFuture<String> viewDatabaseStructure(String client) {
+        return read(client, OperationClass.AGGREGATE, db::describeDatabaseStructure);
+    }
+
+    public CompletableFuture<List<CohortSummary>> getCohortStatistics(String client) {
+        return primary(client, OperationClass.AGGREGATE, db::findCohortStatistics);
+    }
+
+    /**
+     * Adds a user; the future completes with the new user's ID.
+     */
+    public CompletableFuture<Integer> addUser(String client, String name, int age, String gender) {
+        return primary(client, OperationClass.BULK_WRITE, () -> db.addUser(name, age, gender));
+    }
+
+    public CompletableFuture<Integer> changeBookTitle(String client, String oldTitle, String newTitle) {
+        return primary(client, OperationClass.BULK_WRITE, () -> db.changeBookTitle(oldTitle, newTitle));
+    }
+
+    public CompletableFuture<Integer> deleteReadingHabit(String client, int habitID) {
+        return primary(client, OperationClass.BULK_WRITE, () -> db.deleteReadingHabit(habitID));
+    }
+
+    public CompletableFuture<Integer> bulkChangeBookTitles(String client, Map<String, String> renames, boolean dryRun) {
+        return primary(client, OperationClass.BULK_WRITE, () -> db.bulkChangeBookTitles(renames, dryRun));
+    }
+
+    public CompletableFuture<Integer> bulkDeleteReadingHabits(String client, Collection<Integer> habitIDs, boolean dryRun) {
+        return primary(client, OperationClass.BULK_WRITE, () -> db.bulkDeleteReadingHabits(habitIDs, dryRun));
+    }
+
+    /**
+     * Stops the scheduler after the queued operations have run. The database manager is
+     * left open for its owner to close.
+     */
+    @Override
+    public void close() {
+        scheduler.close();
+    }
+
+    private <T> CompletableFuture<T> read(String client, OperationClass operationClass, Callable<T> operation) {
+        return call(client, operationClass, db.getReadReplica() == null, operation);
+    }
+
+    private <T> CompletableFuture<T> primary(String client, OperationClass operationClass, Callable<T> operation) {
+        return call(client, operationClass, true, operation);
+    }
+
+    private <T> CompletableFuture<T> call(String client, OperationClass operationClass, boolean needsPrimary,
+                                          Callable<T> operation) {
+        return needsPrimary
+                ? scheduler.submitExclusive(client, operationClass, operation)
+                : scheduler.submit(client, operationClass, operation);
+    }
+}
@@ -0,0 +1,38 @@
+package com.christianmol.booktracker.scheduler;
+
+/**
+ * Per-client rate limit: refills at a fixed rate up to its burst size, and an operation
+ * runs only if its whole cost is available.
+ */
+final class TokenBucket {
+    private final double tokensPerNano;
+    private final double burst;
+    private double tokens;
+    private long lastRefill;
+
+    TokenBucket(double tokensPerSecond, double burst, long now) {
+        this.tokensPerNano = tokensPerSecond / 1e9;
+        this.burst = burst;
+        this.tokens = burst;
+        this.lastRefill = now;
+    }
+
+    synchronized boolean tryAcquire(int cost, long now) {
+        if (now > lastRefill) {
+            tokens = Math.min(burst, tokens + (now - lastRefill) * tokensPerNano);
+            lastRefill = now;
+        }
+        if (tokens < cost) {
+            return false;
+        }
+        tokens -= cost;
+        return true;
+    }
+
+    /**
+     * Returns tokens taken for an operation that was then not run.
+     */
+    synchronized void refund(int cost) {
+        tokens = Math.min(burst, tokens + cost);
+    }
+}
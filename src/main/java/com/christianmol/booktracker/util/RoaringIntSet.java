@@ -0,0 +1,248 @@
+package com.christianmol.booktracker.util;
+
+import java.util.Arrays;
+
+/**
+ * Compressed set of ints in the style of a Roaring bitmap.
+ *
+ * <p>Values are split into a 16-bit high part, which selects a container, and a 16-bit
+ * low part stored inside it. A container holds a sorted {@code char[]} while it has at
+ * most 4096 values and switches to a 65536-bit bitmap (8 KB) once it grows beyond
+ * that. Dense ID ranges, such as auto-increment keys, therefore cost about one bit per
+ * ID, and sparse ranges about two bytes per ID.</p>
+ */
+public class RoaringIntSet {
+    private static final int ARRAY_LIMIT = 4096;
+    private static final int BITMAP_WORDS = 1 << 10;
+    private static final int DIRECTORY_THRESHOLD = 64;
+
+    private char[] highKeys = new char[4];
+    private Object[] containers = new Object[4];
+    private int[] cardinalities = new int[4];
+    private int containerCount;
+    private long size;
+
+    // Maps a high part straight to its container index + 1 once there are many containers
+    private int[] directory;
+
+    // Most lookups hit the same container as the previous one when IDs are scanned in order
+    private int lastIndex = -1;
+
+    public long size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean contains(int value) {
+        int index = containerIndex((char) (value >>> 16));
+        if (index < 0) {
+            return false;
+        }
+        char low = (char) value;
+        Object container = containers[index];
+        if (container instanceof long[]) {
+            return (((long[]) container)[low >>> 6] & (1L << low)) != 0;
+        }
+        return Arrays.binarySearch((char[]) container, 0, cardinalities[index], low) >= 0;
+    }
+
+    /**
+     * Adds the value and returns true if it was not already present.
+     */
+    public boolean add(int value) {
+        char high = (char) (value >>> 16);
+        int index = containerIndex(high);
+        if (index < 0) {
+            index = insertContainer(-index - 1, high);
+        }
+        char low = (char) value;
+        Object container = containers[index];
+
+        if (container instanceof long[]) {
+            long[] bitmap = (long[]) container;
+            long bit = 1L << low;
+            if ((bitmap[low >>> 6] & bit) != 0) {
+                return false;
+            }
+            bitmap[low >>> 6] |= bit;
+        } else {
+            char[] array = (char[]) container;
+            int count = cardinalities[index];
+            int position = Arrays.binarySearch(array, 0, count, low);
+            if (position >= 0) {
+                return false;
+            }
+            position = -position - 1;
+            if (count == ARRAY_LIMIT) {
+                long[] bitmap = toBitmap(array, count);
+                bitmap[low >>> 6] |= 1L << low;
+                containers[index] = bitmap;
+            } else {
+                if (count == array.length) {
+                    array = Arrays.copyOf(array, Math.min(ARRAY_LIMIT, count * 2));
+                    containers[index] = array;
+                }
+                System.arraycopy(array, position, array, position + 1, count - position);
+                array[position] = low;
+            }
+        }
+        cardinalities[index]++;
+        size++;
+        return true;
+    }
+
+    /**
+     * Removes the value and returns true if it was present.
+     */
+    public boolean remove(int value) {
+        int index = containerIndex((char) (value >>> 16));
+        if (index < 0) {
+            return false;
+        }
+        char low = (char) value;
+        Object container = containers[index];
+
+        if (container instanceof long[]) {
+            long[] bitmap = (long[]) container;
+            long bit = 1L << low;
+            if ((bitmap[low >>> 6] & bit) == 0) {
+                return false;
+            }
+            bitmap[low >>> 6] &= ~bit;
+            if (cardinalities[index] - 1 == ARRAY_LIMIT) {
+                containers[index] = toArray(bitmap, ARRAY_LIMIT);
+            }
+        } else {
+            char[] array = (char[]) container;
+            int count = cardinalities[index];
+            int position = Arrays.binarySearch(array, 0, count, low);
+            if (position < 0) {
+                return false;
+            }
+            System.arraycopy(array, position + 1, array, position, count - position - 1);
+        }
+        size--;
+        if (--cardinalities[index] == 0) {
+            removeContainer(index);
+        }
+        return true;
+    }
+
+    public void clear() {
+        highKeys = new char[4];
+        containers = new Object[4];
+        cardinalities = new int[4];
+        containerCount = 0;
+        size = 0;
+        directory = null;
+        lastIndex = -1;
+    }
+
+    /**
+     * Approximate heap footprint in bytes, counting array headers and the container
+     * directory.
+     */
+    public long sizeInBytes() {
+        long bytes = 16L + highKeys.length * 2L + containers.length * 8L + cardinalities.length * 4L;
+        if (directory != null) {
+            bytes += directory.length * 4L;
+        }
+        for (int i = 0; i < containerCount; i++) {
+            Object container = containers[i];
+            bytes += 16;
+            bytes += container instanceof long[] ? BITMAP_WORDS * 8L : ((char[]) container).length * 2L;
+        }
+        return bytes;
+    }
+
+    private int containerIndex(char high) {
+        if (directory != null) {
+            int entry = directory[high];
+            // A miss still needs the insertion point for add()
+            return entry != 0 ? entry - 1 : Arrays.binarySearch(highKeys, 0, containerCount, high);
+        }
+        int last = lastIndex;
+        if (last >= 0 && last < containerCount && highKeys[last] == high) {
+            return last;
+        }
+        int index = Arrays.binarySearch(highKeys, 0, containerCount, high);
+        if (index >= 0) {
+            lastIndex = index;
+        }
+        return index;
+    }
+
+    private int insertContainer(int position, char high) {
+        if (containerCount == highKeys.length) {
+            int capacity = containerCount * 2;
+            highKeys = Arrays.copyOf(highKeys, capacity);
+            containers = Arrays.copyOf(containers, capacity);
+            cardinalities = Arrays.copyOf(cardinalities, capacity);
+        }
+        System.arraycopy(highKeys, position, highKeys, position + 1, containerCount - position);
+        System.arraycopy(containers, position, containers, position + 1, containerCount - position);
+        System.arraycopy(cardinalities, position, cardinalities, position + 1, containerCount - position);
+        highKeys[position] = high;
+        containers[position] = new char[4];
+        cardinalities[position] = 0;
+        containerCount++;
+        lastIndex = position;
+        updateDirectory(position);
+        return position;
+    }
+
+    private void removeContainer(int index) {
+        int tail = containerCount - index - 1;
+        if (directory != null) {
+            directory[highKeys[index]] = 0;
+        }
+        System.arraycopy(highKeys, index + 1, highKeys, index, tail);
+        System.arraycopy(containers, index + 1, containers, index, tail);
+        System.arraycopy(cardinalities, index + 1, cardinalities, index, tail);
+        containerCount--;
+        containers[containerCount] = null;
+        lastIndex = -1;
+        updateDirectory(index);
+    }
+
+    /**
+     * Refreshes directory entries from the given container index onwards after the
+     * container arrays were shifted, creating the directory once it pays off.
+     */
+    private void updateDirectory(int from) {
+        if (directory == null) {
+            if (containerCount < DIRECTORY_THRESHOLD) {
+                return;
+            }
+            directory = new int[1 << 16];
+            from = 0;
+        }
+        for (int i = from; i < containerCount; i++) {
+            directory[highKeys[i]] = i + 1;
+        }
+    }
+
+    private static long[] toBitmap(char[] array, int count) {
+        long[] bitmap = new long[BITMAP_WORDS];
+        for (int i = 0; i < count; i++) {
+            bitmap[array[i] >>> 6] |= 1L << array[i];
+        }
+        return bitmap;
+    }
+
+    private static char[] toArray(long[] bitmap, int count) {
+        char[] array = new char[count];
+        int position = 0;
+        for (int word = 0; word < BITMAP_WORDS; word++) {
+            long bits = bitmap[word];
+            while (bits != 0) {
+                array[position++] = (char) ((word << 6) + Long.numberOfTrailingZeros(bits));
+                bits &= bits - 1;
+            }
+        }
+        return array;
+    }
+}
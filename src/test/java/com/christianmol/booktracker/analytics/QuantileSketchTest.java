@@ -0,0 +1,109 @@
+package com.christianmol.booktracker.analytics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QuantileSketchTest {
+    private static final double[] QUANTILES = {0, 0.01, 0.1, 0.25, 0.5, 0.75, 0.9, 0.99, 0.999, 1};
+
+    @Test
+    void quantilesStayWithinTheRelativeAccuracy() {
+        for (double accuracy : new double[] {0.01, 0.05}) {
+            Random random = new Random(3);
+            QuantileSketch sketch = new QuantileSketch(accuracy);
+            long[] values = new long[100_000];
+            for (int i = 0; i < values.length; i++) {
+                // Heavy-tailed, like pages per reader, from 1 to about 10^7
+                values[i] = 1 + (long) Math.exp(random.nextDouble() * 16);
+                sketch.add(values[i]);
+            }
+            assertWithinAccuracy(sketch, values);
+        }
+    }
+
+    @Test
+    void countsZerosExactly() {
+        QuantileSketch sketch = new QuantileSketch();
+        long[] values = new long[1000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i < 300 ? 0 : i;
+            sketch.add(values[i]);
+        }
+        assertEquals(0, sketch.quantile(0.25));
+        assertEquals(0, sketch.quantile(0.299));
+        assertWithinAccuracy(sketch, values);
+    }
+
+    @Test
+    void mergedSketchesMatchOneSketchOverAllValues() {
+        Random random = new Random(5);
+        QuantileSketch all = new QuantileSketch();
+        QuantileSketch left = new QuantileSketch();
+        QuantileSketch right = new QuantileSketch();
+        for (int i = 0; i < 10_000; i++) {
+            long value = random.nextInt(5000);
+            all.add(value);
+            (i % 3 == 0 ? left : right).add(value);
+        }
+        QuantileSketch merged = left.copy();
+        merged.merge(right);
+
+        assertEquals(all.getCount(), merged.getCount());
+        assertArrayEquals(all.quantiles(QUANTILES), merged.quantiles(QUANTILES));
+    }
+
+    @Test
+    void removeUndoesAdd() {
+        QuantileSketch sketch = new QuantileSketch();
+        QuantileSketch expected = new QuantileSketch();
+        for (long value = 0; value < 500; value++) {
+            sketch.add(value);
+            expected.add(value);
+        }
+        sketch.add(0);
+        sketch.add(100_000);
+        sketch.remove(100_000);
+        sketch.remove(0);
+
+        assertEquals(expected.getCount(), sketch.getCount());
+        assertArrayEquals(expected.quantiles(QUANTILES), sketch.quantiles(QUANTILES));
+    }
+
+    @Test
+    void rejectsInvalidUse() {
+        QuantileSketch sketch = new QuantileSketch();
+        assertTrue(Double.isNaN(sketch.quantile(0.5)));
+        assertThrows(IllegalArgumentException.class, () -> sketch.add(-1));
+        assertThrows(IllegalStateException.class, () -> sketch.remove(0));
+        assertThrows(IllegalStateException.class, () -> sketch.remove(42));
+        sketch.add(1);
+        assertThrows(IllegalArgumentException.class, () -> sketch.quantile(1.5));
+        assertThrows(IllegalArgumentException.class, () -> sketch.merge(new QuantileSketch(0.02)));
+        assertThrows(IllegalArgumentException.class, () -> new QuantileSketch(0));
+        assertThrows(IllegalArgumentException.class, () -> new QuantileSketch(1));
+    }
+
+    /**
+     * Checks every quantile against the value of the same rank in the sorted input.
+     */
+    private static void assertWithinAccuracy(QuantileSketch sketch, long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        double[] estimates = sketch.quantiles(QUANTILES);
+        for (int i = 0; i < QUANTILES.length; i++) {
+            long exact = sorted[(int) (QUANTILES[i] * (sorted.length - 1))];
+            double error = Math.abs(estimates[i] - exact);
+            // A small slack for floating point at the bucket boundaries
+            assertTrue(error <= sketch.getRelativeAccuracy() * exact * (1 + 1e-9),
+                    String.format("q=%s: estimate %.3f, exact %d, accuracy %s",
+                            QUANTILES[i], estimates[i], exact, sketch.getRelativeAccuracy()));
+        }
+    }
+}
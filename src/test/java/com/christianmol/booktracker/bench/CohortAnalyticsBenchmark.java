@@ -0,0 +1,156 @@
+package com.christianmol.booktracker.bench;
+
+import com.christianmol.booktracker.analytics.CohortAnalytics;
+import com.christianmol.booktracker.analytics.CohortSummary;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Measures building the cohort statistics sequentially and in parallel, compares them
+ * with the equivalent SQL, and times incremental updates against a rebuild.
+ *
+ * <p>Usage: {@code CohortAnalyticsBenchmark [--users=20000] [--books=5000]
+ * [--habits=300000] [--updates=10000]}</p>
+ */
+public class CohortAnalyticsBenchmark {
+    private static final int ROUNDS = 5;
+    private static final String COHORT_SQL = "SELECT CASE WHEN u.age IS NULL THEN 7 WHEN u.age < 18 THEN 0"
+            + " WHEN u.age < 25 THEN 1 WHEN u.age < 35 THEN 2 WHEN u.age < 45 THEN 3 WHEN u.age < 55 THEN 4"
+            + " WHEN u.age < 65 THEN 5 ELSE 6 END AS band, u.gender,"
+            + " COUNT(DISTINCT rh.user), SUM(rh.pagesRead)"
+            + " FROM ReadingHabit rh JOIN User u ON u.userID = rh.user GROUP BY band, u.gender";
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = WorkloadGenerator.parseOptions(args);
+        int users = Integer.parseInt(options.getOrDefault("users", "20000"));
+        int books = Integer.parseInt(options.getOrDefault("books", "5000"));
+        int habits = Integer.parseInt(options.getOrDefault("habits", "300000"));
+        int updates = Integer.parseInt(options.getOrDefault("updates", "10000"));
+
+        File database = Files.createTempFile("booktracker-cohorts", ".db").toFile();
+        database.delete();
+        try (WorkloadGenerator.Sink sink = WorkloadGenerator.openSink("sqlite", database)) {
+            new WorkloadGenerator(users, books, habits, 365, 1.1, 0.8, 42).generate(sink);
+        }
+
+        int[] userIDs = new int[users];
+        int[] ages = new int[users];
+        String[] genders = new String[users];
+        int[] habitUsers = new int[habits];
+        String[] habitBooks = new String[habits];
+        int[] habitPages = new int[habits];
+        long sqlNanos;
+        long sqlPages = 0;
+        int sqlCohorts = 0;
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + database.getPath());
+             Statement stmt = connection.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("SELECT userID, age, gender FROM User")) {
+                for (int i = 0; rs.next(); i++) {
+                    userIDs[i] = rs.getInt(1);
+                    ages[i] = rs.getInt(2);
+                    genders[i] = rs.getString(3);
+                }
+            }
+            try (ResultSet rs = stmt.executeQuery("SELECT user, book, pagesRead FROM ReadingHabit")) {
+                for (int i = 0; rs.next(); i++) {
+                    habitUsers[i] = rs.getInt(1);
+                    habitBooks[i] = rs.getString(2);
+                    habitPages[i] = rs.getInt(3);
+                }
+            }
+            long start = System.nanoTime();
+            try (ResultSet rs = stmt.executeQuery(COHORT_SQL)) {
+                while (rs.next()) {
+                    sqlCohorts++;
+                    sqlPages += rs.getLong(4);
+                }
+            }
+            sqlNanos = System.nanoTime() - start;
+        } finally {
+            database.delete();
+        }
+
+        // The last habits arrive as updates after the initial build
+        int initial = habits - Math.min(updates, habits);
+        ForkJoinPool single = new ForkJoinPool(1);
+        long[] sequential = new long[ROUNDS];
+        long[] parallel = new long[ROUNDS];
+        CohortAnalytics analytics = null;
+        for (int round = 0; round < ROUNDS; round++) {
+            CohortAnalytics.Builder builder = builder(userIDs, ages, genders, habitUsers, habitBooks, habitPages, initial);
+            long start = System.nanoTime();
+            builder.build(single);
+            sequential[round] = System.nanoTime() - start;
+
+            builder = builder(userIDs, ages, genders, habitUsers, habitBooks, habitPages, initial);
+            start = System.nanoTime();
+            analytics = builder.build(ForkJoinPool.commonPool());
+            parallel[round] = System.nanoTime() - start;
+        }
+        single.shutdown();
+
+        long start = System.nanoTime();
+        for (int i = initial; i < habits; i++) {
+            analytics.addHabit(habitUsers[i], habitBooks[i], habitPages[i]);
+        }
+        long incremental = System.nanoTime() - start;
+
+        CohortAnalytics rebuilt = builder(userIDs, ages, genders, habitUsers, habitBooks, habitPages, habits).build();
+        CohortSummary updatedTotal = analytics.total(5);
+        CohortSummary rebuiltTotal = rebuilt.total(5);
+
+        System.out.printf("Dataset: %d users, %d habits, %d cohorts with readers%n%n", users, habits, sqlCohorts);
+        System.out.printf("SQL GROUP BY (pages and readers only): %8.1f ms%n", sqlNanos / 1e6);
+        System.out.printf("Build, 1 thread (median of %d):         %8.1f ms%n", ROUNDS, median(sequential) / 1e6);
+        System.out.printf("Build, parallelism %d (median of %d):    %8.1f ms%n",
+                ForkJoinPool.commonPool().getParallelism(), ROUNDS, median(parallel) / 1e6);
+        System.out.printf("%d incremental habit updates:         %8.1f ms (%.2f us each)%n",
+                habits - initial, incremental / 1e6, incremental / 1e3 / Math.max(1, habits - initial));
+        System.out.println();
+        System.out.printf("Total pages: SQL %d, updated %d, rebuilt %d%n",
+                sqlPages, updatedTotal.getPages(), rebuiltTotal.getPages());
+        System.out.printf("Readers: updated %d, rebuilt %d%n", updatedTotal.getReaders(), rebuiltTotal.getReaders());
+        System.out.printf("Books per reader p50/p90/p99: updated %s, rebuilt %s%n",
+                Arrays.toString(updatedTotal.getBooksPerReader()), Arrays.toString(rebuiltTotal.getBooksPerReader()));
+        System.out.printf("Top titles: updated %s%n            rebuilt %s%n",
+                updatedTotal.getTopTitles(), rebuiltTotal.getTopTitles());
+        System.out.printf("Exact pages per habit p50/p90/p99: %s, sketch: %s%n",
+                Arrays.toString(exactPercentiles(habitPages)), Arrays.toString(rebuiltTotal.getPagesPerHabit()));
+    }
+
+    private static CohortAnalytics.Builder builder(int[] userIDs, int[] ages, String[] genders, int[] habitUsers,
+                                                   String[] habitBooks, int[] habitPages, int habitCount) {
+        CohortAnalytics.Builder builder = CohortAnalytics.builder();
+        for (int i = 0; i < userIDs.length; i++) {
+            builder.addUser(userIDs[i], ages[i], genders[i]);
+        }
+        for (int i = 0; i < habitCount; i++) {
+            builder.addHabit(habitUsers[i], habitBooks[i], habitPages[i]);
+        }
+        return builder;
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    private static int[] exactPercentiles(int[] values) {
+        int[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return new int[]{
+                sorted[(int) (0.5 * (sorted.length - 1))],
+                sorted[(int) (0.9 * (sorted.length - 1))],
+                sorted[(int) (0.99 * (sorted.length - 1))]
+        };
+    }
+}
@@ -0,0 +1,101 @@
+package com.christianmol.booktracker.bench;
+
+import com.christianmol.booktracker.util.RoaringIntSet;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Measures heap footprint and lookup throughput of the ID registry's set compared with
+ * the boxed {@code HashSet<Integer>} it replaced.
+ *
+ * <p>Usage: {@code IdRegistryBenchmark [idCount] [boxedIdCount]}. Defaults are 50,000,000
+ * IDs for the compressed set and 5,000,000 for the boxed set, whose footprint is
+ * extrapolated because 50M boxed IDs need several gigabytes of heap.</p>
+ */
+public class IdRegistryBenchmark {
+    private static final int LOOKUPS = 20_000_000;
+
+    public static void main(String[] args) {
+        int idCount = args.length > 0 ? Integer.parseInt(args[0]) : 50_000_000;
+        int boxedCount = args.length > 1 ? Integer.parseInt(args[1]) : 5_000_000;
+
+        System.out.printf("%-28s %12s %14s %14s %12s%n", "structure", "ids", "heap (MB)", "bytes/id", "ns/lookup");
+        runRoaring("RoaringIntSet dense", idCount, 1);
+        runRoaring("RoaringIntSet 1-in-10", idCount, 10);
+        runBoxed("HashSet<Integer> dense", boxedCount);
+    }
+
+    private static void runRoaring(String label, int idCount, int stride) {
+        long before = usedHeap();
+        RoaringIntSet ids = new RoaringIntSet();
+        for (int i = 0; i < idCount; i++) {
+            ids.add(1 + i * stride);
+        }
+        long heap = usedHeap() - before;
+
+        int maxId = idCount * stride;
+        Random random = new Random(42);
+        int[] probes = new int[1 << 20];
+        for (int i = 0; i < probes.length; i++) {
+            probes[i] = 1 + random.nextInt(maxId);
+        }
+        // Warm up before timing
+        long hits = 0;
+        for (int i = 0; i < LOOKUPS / 4; i++) {
+            hits += ids.contains(probes[i & (probes.length - 1)]) ? 1 : 0;
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < LOOKUPS; i++) {
+            hits += ids.contains(probes[i & (probes.length - 1)]) ? 1 : 0;
+        }
+        double nsPerLookup = (double) (System.nanoTime() - start) / LOOKUPS;
+
+        report(label, ids.size(), heap, nsPerLookup, hits);
+        System.out.printf("%-28s %12s %14.1f%n", "  (structural estimate)", "", ids.sizeInBytes() / 1048576.0);
+    }
+
+    private static void runBoxed(String label, int idCount) {
+        long before = usedHeap();
+        Set<Integer> ids = new HashSet<>();
+        for (int i = 0; i < idCount; i++) {
+            ids.add(1 + i);
+        }
+        long heap = usedHeap() - before;
+
+        Random random = new Random(42);
+        int[] probes = new int[1 << 20];
+        for (int i = 0; i < probes.length; i++) {
+            probes[i] = 1 + random.nextInt(idCount);
+        }
+        long hits = 0;
+        for (int i = 0; i < LOOKUPS / 4; i++) {
+            hits += ids.contains(probes[i & (probes.length - 1)]) ? 1 : 0;
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < LOOKUPS; i++) {
+            hits += ids.contains(probes[i & (probes.length - 1)]) ? 1 : 0;
+        }
+        double nsPerLookup = (double) (System.nanoTime() - start) / LOOKUPS;
+
+        report(label, ids.size(), heap, nsPerLookup, hits);
+        System.out.printf("%-28s %12s %14.1f%n", "  (extrapolated to 50M)", "",
+                heap / 1048576.0 * 50_000_000 / idCount);
+    }
+
+    private static void report(String label, long size, long heap, double nsPerLookup, long hits) {
+        System.out.printf("%-28s %12d %14.1f %14.2f %12.1f%n",
+                label, size, heap / 1048576.0, (double) heap / size, nsPerLookup);
+        // Print the hit count so the JIT cannot drop the lookups
+        System.out.printf("%-28s %12s hits=%d%n", "", "", hits);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,38 @@
+package com.christianmol.booktracker.bench;
+
+import java.util.Arrays;
+
+/**
+ * Keeps every latency sample; percentiles are computed by sorting once at the end.
+ */
+final class LatencyRecorder {
+    private long[] samples = new long[1024];
+    private int count;
+    private boolean sorted;
+    long elapsedNanos;
+    int failures;
+
+    int count() {
+        return count;
+    }
+
+    void record(long nanos) {
+        if (count == samples.length) {
+            samples = Arrays.copyOf(samples, count * 2);
+        }
+        samples[count++] = nanos;
+        sorted = false;
+    }
+
+    long percentile(double quantile) {
+        if (count == 0) {
+            return 0;
+        }
+        if (!sorted) {
+            Arrays.sort(samples, 0, count);
+            sorted = true;
+        }
+        int rank = (int) Math.ceil(quantile * count) - 1;
+        return samples[Math.max(0, Math.min(count - 1, rank))];
+    }
+}
@@ -0,0 +1,193 @@
+package com.christianmol.booktracker.bench;
+
+import com.christianmol.booktracker.changelog.ChangeLog;
+import com.christianmol.booktracker.database.DatabaseManager;
+import com.christianmol.booktracker.database.StorageProfile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compares read-only query latency on the database file with the in-memory read replica
+ * while a second {@code DatabaseManager} writes to the same file.
+ *
+ * <p>The writer adds users and deletes habits at a fixed rate and records its changes in
+ * a change log, which the replica follows to refresh itself. Both runs use WAL so the
+ * writer never waits for the reader.</p>
+ *
+ * <p>Usage: {@code ReadReplicaBenchmark [--users=20000] [--books=5000] [--habits=200000]
+ * [--queries=100] [--write-rate=20]}</p>
+ */
+public class ReadReplicaBenchmark {
+    private static final String[] QUERIES = {
+            "mean age", "total pages", "multi-book users", "book readers", "user habits", "structure"
+    };
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = WorkloadGenerator.parseOptions(args);
+        int users = Integer.parseInt(options.getOrDefault("users", "20000"));
+        int books = Integer.parseInt(options.getOrDefault("books", "5000"));
+        int habits = Integer.parseInt(options.getOrDefault("habits", "200000"));
+        int queries = Integer.parseInt(options.getOrDefault("queries", "100"));
+        int writeRate = Integer.parseInt(options.getOrDefault("write-rate", "20"));
+
+        File workDir = Files.createTempDirectory("booktracker-replica").toFile();
+        File database = new File(workDir, "replica-bench.db");
+        try (WorkloadGenerator.Sink sink = WorkloadGenerator.openSink("sqlite", database)) {
+            new WorkloadGenerator(users, books, habits, 365, 1.1, 0.8, 42).generate(sink);
+        }
+        StorageProfile profile = StorageProfile.preset("read-heavy").withDatabasePath(database.getPath());
+        List<String> titles = new ArrayList<>();
+        try (Connection connection = DriverManager.getConnection(profile.getJdbcUrl());
+             Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT DISTINCT book FROM ReadingHabit")) {
+            while (rs.next()) {
+                titles.add(rs.getString(1));
+            }
+        }
+        System.out.printf("Dataset: %d users, %d books, %d habits; %d rounds of queries, %d writes/s%n%n",
+                users, books, habits, queries, writeRate);
+
+        PrintStream console = System.out;
+        LatencyRecorder[] disk;
+        LatencyRecorder[] replica;
+        int[] writes = new int[2];
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        }));
+        try {
+            disk = run(profile.withReplicaRefreshSeconds(0), new File(workDir, "changelog-disk"), titles, users,
+                    habits, queries, writeRate, writes, 0);
+            replica = run(profile.withReplicaRefreshSeconds(30), new File(workDir, "changelog-replica"), titles,
+                    users, habits, queries, writeRate, writes, 1);
+        } finally {
+            System.setOut(console);
+        }
+
+        System.out.printf("%-18s %12s %12s %14s %14s%n", "query", "disk p50", "disk p99", "replica p50", "replica p99");
+        for (int q = 0; q < QUERIES.length; q++) {
+            System.out.printf("%-18s %12.2f %12.2f %14.2f %14.2f%n", QUERIES[q],
+                    disk[q].percentile(0.50) / 1e6, disk[q].percentile(0.99) / 1e6,
+                    replica[q].percentile(0.50) / 1e6, replica[q].percentile(0.99) / 1e6);
+        }
+        System.out.printf("(ms; writes completed during the run: disk %d, replica %d)%n", writes[0], writes[1]);
+
+        for (File file : workDir.listFiles()) {
+            deleteRecursively(file);
+        }
+        workDir.delete();
+    }
+
+    private static LatencyRecorder[] run(StorageProfile profile, File changeLogDir, List<String> titles, int users,
+                                         int habits, int rounds, int writeRate, int[] writes, int slot)
+            throws InterruptedException {
+        LatencyRecorder[] recorders = new LatencyRecorder[QUERIES.length];
+        for (int q = 0; q < recorders.length; q++) {
+            recorders[q] = new LatencyRecorder();
+        }
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicInteger completedWrites = new AtomicInteger();
+
+        try (ChangeLog changeLog = new ChangeLog(changeLogDir);
+             DatabaseManager writer = new DatabaseManager(profile.withReplicaRefreshSeconds(0));
+             DatabaseManager reader = new DatabaseManager(profile)) {
+            writer.setChangeLog(changeLog);
+            if (reader.getReadReplica() != null) {
+                reader.getReadReplica().follow(changeLog);
+            }
+
+            Thread writerThread = new Thread(() -> {
+                Random random = new Random(11);
+                long interval = TimeUnit.SECONDS.toNanos(1) / writeRate;
+                long next = System.nanoTime();
+                while (running.get()) {
+                    try {
+                        if (random.nextBoolean()) {
+                            writer.addUser("Writer " + completedWrites.get(), 18 + random.nextInt(60), "Male");
+                        } else {
+                            writer.deleteReadingHabit(1 + random.nextInt(habits));
+                        }
+                        completedWrites.incrementAndGet();
+                    } catch (RuntimeException e) {
+                        // Busy or failed writes are not counted
+                    }
+                    next += interval;
+                    long sleep = next - System.nanoTime();
+                    if (sleep > 0) {
+                        try {
+                            TimeUnit.NANOSECONDS.sleep(sleep);
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                    }
+                }
+            }, "replica-bench-writer");
+            writerThread.start();
+
+            Random random = new Random(5);
+            for (int round = 0; round < rounds; round++) {
+                for (int q = 0; q < QUERIES.length; q++) {
+                    long start = System.nanoTime();
+                    switch (q) {
+                        case 0:
+                            reader.getMeanUserAge();
+                            break;
+                        case 1:
+                            reader.getTotalPagesRead();
+                            break;
+                        case 2:
+                            reader.getUsersWithMultipleBooks();
+                            break;
+                        case 3:
+                            reader.getUserCountForBook(titles.get(random.nextInt(titles.size())));
+                            break;
+                        case 4:
+                            reader.getReadingHabitsForUser(String.valueOf(1 + random.nextInt(users)));
+                            break;
+                        default:
+                            // The full overview is expensive; sample it less often
+                            if (round % 10 != 0) {
+                                continue;
+                            }
+                            reader.viewDatabaseStructure();
+                    }
+                    recorders[q].record(System.nanoTime() - start);
+                }
+            }
+            running.set(false);
+            writerThread.join();
+        }
+        writes[slot] = completedWrites.get();
+        return recorders;
+    }
+
+    private static void deleteRecursively(File file) throws IOException {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        Files.deleteIfExists(file.toPath());
+    }
+}
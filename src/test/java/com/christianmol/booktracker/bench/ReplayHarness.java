@@ -0,0 +1,365 @@
+package com.christianmol.booktracker.bench;
+
+import com.christianmol.booktracker.database.DatabaseManager;
+import com.christianmol.booktracker.database.StorageProfile;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives the operations behind the {@code Main} menu against a database at a fixed rate
+ * and reports throughput and latency percentiles per operation.
+ *
+ * <p>Operations come either from a weighted synthetic mix, whose arguments are sampled
+ * from the users, books and habits already in the database, or from a script file with
+ * one operation per line: the menu number followed by its tab-separated arguments. The
+ * synthetic sequence can be saved as a script to replay exactly the same load later.</p>
+ *
+ * <p>Requests are scheduled open-loop: each has a planned start time derived from the
+ * target rate, and its latency is measured from that planned time. When an operation
+ * stalls, the requests queued behind it are charged for the wait, as real users would
+ * be. Write operations modify the database, so point the harness at a copy.</p>
+ *
+ * <p>Usage: {@code ReplayHarness --db=<path> [--rate=200] [--duration=30] [--warmup=5]
+ * [--mix=2:40,6:15,10:10,5:5,7:5,8:5,1:5,3:5,4:10] [--script=<file>]
+ * [--save-script=<file>] [--seed=42]}. Storage settings such as {@code --profile=read-heavy}
+ * are passed through to the {@link StorageProfile}.</p>
+ */
+public class ReplayHarness {
+    private static final String DEFAULT_MIX = "2:40,6:15,10:10,5:5,7:5,8:5,1:5,3:5,4:10";
+    private static final int SAMPLE_LIMIT = 100_000;
+
+    /**
+     * The menu entries of {@code Main} that the harness can drive, keyed by menu number.
+     */
+    enum Operation {
+        ADD_USER("1"),
+        VIEW_HABITS("2"),
+        CHANGE_TITLE("3"),
+        DELETE_HABIT("4"),
+        MEAN_AGE("5"),
+        BOOK_READERS("6"),
+        TOTAL_PAGES("7"),
+        MULTI_BOOK_USERS("8"),
+        VIEW_STRUCTURE("9"),
+        ALSO_READ("10"),
+        COHORTS("12");
+
+        private final String menuOption;
+
+        Operation(String menuOption) {
+            this.menuOption = menuOption;
+        }
+
+        static Operation fromMenuOption(String option) {
+            for (Operation operation : values()) {
+                if (operation.menuOption.equals(option.trim())) {
+                    return operation;
+                }
+            }
+            throw new IllegalArgumentException("Unknown menu option: " + option);
+        }
+    }
+
+    private static final class Request {
+        final Operation operation;
+        final String[] args;
+
+        Request(Operation operation, String... args) {
+            this.operation = operation;
+            this.args = args;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = WorkloadGenerator.parseOptions(args);
+        String db = options.get("db");
+        if (db == null) {
+            System.err.println("Usage: ReplayHarness --db=<path> [--rate=N] [--duration=S] [--warmup=S] [--mix=op:weight,...]"
+                    + " [--script=<file>] [--save-script=<file>] [--seed=N] [--profile=<preset>]");
+            System.exit(1);
+        }
+        double rate = Double.parseDouble(options.getOrDefault("rate", "200"));
+        int duration = Integer.parseInt(options.getOrDefault("duration", "30"));
+        int warmup = Integer.parseInt(options.getOrDefault("warmup", "5"));
+        int total = (int) Math.ceil(rate * (duration + warmup));
+        int warmupCount = (int) Math.ceil(rate * warmup);
+
+        List<Request> requests;
+        if (options.containsKey("script")) {
+            requests = readScript(new File(options.get("script")));
+        } else {
+            requests = synthesize(db, parseMix(options.getOrDefault("mix", DEFAULT_MIX)), total,
+                    new Random(Long.parseLong(options.getOrDefault("seed", "42"))));
+        }
+        if (options.containsKey("save-script")) {
+            writeScript(requests, new File(options.get("save-script")));
+        }
+
+        PrintStream console = System.out;
+        // The harness's own options are not storage settings, so only those are passed on
+        Properties storage = new Properties();
+        for (String key : StorageProfile.KEYS) {
+            if (options.containsKey(key)) {
+                storage.setProperty(key, options.get(key));
+            }
+        }
+        StorageProfile profile = StorageProfile.fromProperties(storage).withDatabasePath(db);
+        try (DatabaseManager dbManager = new DatabaseManager(profile)) {
+            dbManager.initializeDatabase();
+            console.printf("Replaying %d requests at %.0f/s (%d warm-up) against %s with profile %s%n",
+                    Math.min(total, requests.size()), rate, warmupCount, db, profile.getName());
+            Map<Operation, LatencyRecorder> results = new EnumMap<>(Operation.class);
+            LatencyRecorder all = new LatencyRecorder();
+            // The menu operations print their results; that output would dominate the timings
+            System.setOut(new PrintStream(new OutputStream() {
+                @Override
+                public void write(int b) {
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) {
+                }
+            }));
+            try {
+                run(dbManager, requests, Math.min(total, requests.size()), warmupCount, rate, results, all);
+            } finally {
+                System.setOut(console);
+            }
+            report(console, results, all);
+        }
+    }
+
+    private static void run(DatabaseManager dbManager, List<Request> requests, int total, int warmupCount,
+                            double rate, Map<Operation, LatencyRecorder> results, LatencyRecorder all) {
+        long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+        long start = System.nanoTime();
+        long measuredStart = start;
+        int failures = 0;
+
+        for (int i = 0; i < total; i++) {
+            if (i == warmupCount) {
+                measuredStart = System.nanoTime();
+            }
+            long planned = start + i * intervalNanos;
+            long now;
+            while ((now = System.nanoTime()) < planned) {
+                LockSupport.parkNanos(planned - now);
+            }
+            Request request = requests.get(i);
+            try {
+                execute(dbManager, request);
+            } catch (RuntimeException e) {
+                if (i >= warmupCount) {
+                    failures++;
+                }
+            }
+            long latency = System.nanoTime() - planned;
+            if (i >= warmupCount) {
+                results.computeIfAbsent(request.operation, k -> new LatencyRecorder()).record(latency);
+                all.record(latency);
+            }
+        }
+        all.elapsedNanos = System.nanoTime() - measuredStart;
+        all.failures = failures;
+    }
+
+    private static void execute(DatabaseManager dbManager, Request request) {
+        String[] args = request.args;
+        switch (request.operation) {
+            case ADD_USER:
+                dbManager.addUser(args[0], Integer.parseInt(args[1]), args[2]);
+                break;
+            case VIEW_HABITS:
+                dbManager.getReadingHabitsForUser(args[0]);
+                break;
+            case CHANGE_TITLE:
+                dbManager.changeBookTitle(args[0], args[1]);
+                break;
+            case DELETE_HABIT:
+                dbManager.deleteReadingHabit(Integer.parseInt(args[0]));
+                break;
+            case MEAN_AGE:
+                dbManager.getMeanUserAge();
+                break;
+            case BOOK_READERS:
+                dbManager.getUserCountForBook(args[0]);
+                break;
+            case TOTAL_PAGES:
+                dbManager.getTotalPagesRead();
+                break;
+            case MULTI_BOOK_USERS:
+                dbManager.getUsersWithMultipleBooks();
+                break;
+            case VIEW_STRUCTURE:
+                dbManager.viewDatabaseStructure();
+                break;
+            case ALSO_READ:
+                dbManager.getBooksAlsoRead(args[0]);
+                break;
+            case COHORTS:
+                dbManager.getCohortStatistics();
+                break;
+            default:
+                throw new IllegalStateException("Unhandled operation " + request.operation);
+        }
+    }
+
+    private static Map<Operation, Integer> parseMix(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String part : mix.split(",")) {
+            String[] pair = part.split(":");
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("Mix entries must look like option:weight, got " + part);
+            }
+            weights.put(Operation.fromMenuOption(pair[0]), Integer.parseInt(pair[1].trim()));
+        }
+        return weights;
+    }
+
+    /**
+     * Builds a synthetic request sequence. Users and books are sampled uniformly from
+     * what the database holds, so hot books are requested as often as they appear in
+     * the data. Deletes use distinct habit IDs so every delete removes a row.
+     */
+    private static List<Request> synthesize(String db, Map<Operation, Integer> weights, int count, Random random)
+            throws SQLException {
+        int[] userIDs;
+        String[] books;
+        int[] habitIDs;
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + db)) {
+            userIDs = sampleInts(connection, "SELECT userID FROM User ORDER BY random() LIMIT " + SAMPLE_LIMIT);
+            habitIDs = sampleInts(connection, "SELECT habitID FROM ReadingHabit ORDER BY random() LIMIT " + SAMPLE_LIMIT);
+            List<String> titles = new ArrayList<>();
+            try (Statement stmt = connection.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT book FROM ReadingHabit ORDER BY random() LIMIT " + SAMPLE_LIMIT)) {
+                while (rs.next()) {
+                    titles.add(rs.getString(1));
+                }
+            }
+            books = titles.toArray(new String[0]);
+        }
+        if (userIDs.length == 0 || books.length == 0) {
+            throw new IllegalStateException("Database " + db + " has no users or habits to sample from");
+        }
+
+        Operation[] operations = weights.keySet().toArray(new Operation[0]);
+        int[] cumulative = new int[operations.length];
+        int totalWeight = 0;
+        for (int i = 0; i < operations.length; i++) {
+            totalWeight += weights.get(operations[i]);
+            cumulative[i] = totalWeight;
+        }
+
+        List<Request> requests = new ArrayList<>(count);
+        int nextDelete = 0;
+        for (int i = 0; i < count; i++) {
+            int pick = Arrays.binarySearch(cumulative, random.nextInt(totalWeight) + 1);
+            Operation operation = operations[pick >= 0 ? pick : -pick - 1];
+            String book = books[random.nextInt(books.length)];
+            switch (operation) {
+                case ADD_USER:
+                    requests.add(new Request(operation, "Replay User " + i, String.valueOf(13 + random.nextInt(70)),
+                            random.nextBoolean() ? "Male" : "Female"));
+                    break;
+                case VIEW_HABITS:
+                    requests.add(new Request(operation, String.valueOf(userIDs[random.nextInt(userIDs.length)])));
+                    break;
+                case CHANGE_TITLE:
+                    // Renaming a title onto itself exercises the full write path without drifting the data
+                    requests.add(new Request(operation, book, book));
+                    break;
+                case DELETE_HABIT:
+                    if (nextDelete < habitIDs.length) {
+                        requests.add(new Request(operation, String.valueOf(habitIDs[nextDelete++])));
+                    } else {
+                        requests.add(new Request(Operation.VIEW_HABITS,
+                                String.valueOf(userIDs[random.nextInt(userIDs.length)])));
+                    }
+                    break;
+                case BOOK_READERS:
+                case ALSO_READ:
+                    requests.add(new Request(operation, book));
+                    break;
+                default:
+                    requests.add(new Request(operation));
+            }
+        }
+        return requests;
+    }
+
+    private static int[] sampleInts(Connection connection, String sql) throws SQLException {
+        int[] values = new int[16];
+        int count = 0;
+        try (Statement stmt = connection.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+            while (rs.next()) {
+                if (count == values.length) {
+                    values = Arrays.copyOf(values, count * 2);
+                }
+                values[count++] = rs.getInt(1);
+            }
+        }
+        return Arrays.copyOf(values, count);
+    }
+
+    private static List<Request> readScript(File file) throws IOException {
+        List<Request> requests = new ArrayList<>();
+        for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+            if (line.trim().isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.split("\t");
+            requests.add(new Request(Operation.fromMenuOption(fields[0]), Arrays.copyOfRange(fields, 1, fields.length)));
+        }
+        return requests;
+    }
+
+    private static void writeScript(List<Request> requests, File file) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            for (Request request : requests) {
+                writer.write(request.operation.menuOption);
+                for (String arg : request.args) {
+                    writer.write('\t');
+                    writer.write(arg);
+                }
+                writer.newLine();
+            }
+        }
+    }
+
+    private static void report(PrintStream out, Map<Operation, LatencyRecorder> results, LatencyRecorder all) {
+        double seconds = all.elapsedNanos / 1e9;
+        out.printf("%nCompleted %d requests in %.1f s: %.1f requests/s, %d failed%n",
+                all.count(), seconds, all.count() / seconds, all.failures);
+        out.printf("%-18s %8s %10s %10s %10s %10s%n", "operation", "count", "p50 (ms)", "p95 (ms)", "p99 (ms)", "max (ms)");
+        for (Map.Entry<Operation, LatencyRecorder> entry : results.entrySet()) {
+            printRow(out, entry.getKey().menuOption + " " + entry.getKey().name().toLowerCase(), entry.getValue());
+        }
+        printRow(out, "all", all);
+    }
+
+    private static void printRow(PrintStream out, String label, LatencyRecorder recorder) {
+        out.printf("%-18s %8d %10.2f %10.2f %10.2f %10.2f%n", label, recorder.count(),
+                recorder.percentile(0.50) / 1e6, recorder.percentile(0.95) / 1e6,
+                recorder.percentile(0.99) / 1e6, recorder.percentile(1.0) / 1e6);
+    }
+}
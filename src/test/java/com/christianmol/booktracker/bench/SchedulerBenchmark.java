@@ -0,0 +1,316 @@
+package com.christianmol.booktracker.bench;
+
+import com.christianmol.booktracker.database.DatabaseManager;
+import com.christianmol.booktracker.database.StorageProfile;
+import com.christianmol.booktracker.scheduler.RequestScheduler;
+import com.christianmol.booktracker.scheduler.ScheduledDatabaseManager;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Measures point lookup latency while other clients share the same
+ * {@code DatabaseManager} for analytic queries and title renames, with and without the
+ * {@link RequestScheduler}, and with and without the read replica.
+ *
+ * <p>The interactive client runs point reads at a fixed rate, in turn a user's habits and
+ * the number of readers of a popular book; latency is taken
+ * from the planned start, so time spent stuck behind another client counts, and a run
+ * ends on time even if lookups are still behind. Analysts run the aggregate queries back
+ * to back, the structure overview among them, and the editor renames a popular title
+ * every second. Without the scheduler the clients take turns on one fair lock, which is
+ * how a DatabaseManager has to be shared otherwise.</p>
+ *
+ * <p>Usage: {@code SchedulerBenchmark [--users=20000] [--books=5000] [--habits=200000]
+ * [--seconds=20] [--lookup-rate=5] [--analysts=2]}</p>
+ */
+public class SchedulerBenchmark {
+    private static final long EDIT_INTERVAL_MILLIS = 1000;
+    private static final int AGGREGATE_QUERIES = 4;
+    private static final int LOOKUP_TITLES = 50;
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = WorkloadGenerator.parseOptions(args);
+        int users = Integer.parseInt(options.getOrDefault("users", "20000"));
+        int books = Integer.parseInt(options.getOrDefault("books", "5000"));
+        int habits = Integer.parseInt(options.getOrDefault("habits", "200000"));
+        int seconds = Integer.parseInt(options.getOrDefault("seconds", "20"));
+        int lookupRate = Integer.parseInt(options.getOrDefault("lookup-rate", "5"));
+        int analysts = Integer.parseInt(options.getOrDefault("analysts", "2"));
+
+        File workDir = Files.createTempDirectory("booktracker-scheduler").toFile();
+        File database = new File(workDir, "scheduler-bench.db");
+        try (WorkloadGenerator.Sink sink = WorkloadGenerator.openSink("sqlite", database)) {
+            new WorkloadGenerator(users, books, habits, 365, 1.1, 0.8, 42).generate(sink);
+        }
+        StorageProfile profile = StorageProfile.preset("read-heavy").withDatabasePath(database.getPath());
+        // The most popular title is renamed back and forth; the others are looked up
+        List<String> popularTitles = new ArrayList<>();
+        try (Connection connection = DriverManager.getConnection(profile.getJdbcUrl());
+             Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT book FROM ReadingHabit GROUP BY book ORDER BY COUNT(*) DESC LIMIT "
+                     + LOOKUP_TITLES)) {
+            while (rs.next()) {
+                popularTitles.add(rs.getString(1));
+            }
+        }
+        System.out.printf("Dataset: %d users, %d habits; %d s per run, %d lookups/s, %d analysts, 1 rename/s%n%n",
+                users, habits, seconds, lookupRate, analysts);
+
+        String[] names = {"Shared lock", "Scheduler", "Shared lock, replica", "Scheduler, replica"};
+        Result[] results = new Result[names.length];
+        List<String> reports = new ArrayList<>();
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        }));
+        try {
+            for (int i = 0; i < names.length; i++) {
+                boolean replica = i >= 2;
+                boolean scheduled = i % 2 == 1;
+                results[i] = run(profile.withReplicaRefreshSeconds(replica ? 30 : 0), scheduled, users, popularTitles,
+                        seconds, lookupRate, analysts, reports);
+            }
+        } finally {
+            System.setOut(console);
+        }
+
+        System.out.printf("%-22s %10s %10s %10s %10s %11s %8s%n",
+                "", "lookups", "p50 ms", "p99 ms", "max ms", "aggregates", "renames");
+        for (int i = 0; i < names.length; i++) {
+            Result result = results[i];
+            System.out.printf("%-22s %10d %10.1f %10.1f %10.1f %11d %8d%n", names[i], result.lookups.count(),
+                    result.lookups.percentile(0.50) / 1e6, result.lookups.percentile(0.99) / 1e6,
+                    result.lookups.percentile(1.0) / 1e6, result.aggregates.get(), result.renames.get());
+        }
+        System.out.println();
+        System.out.println("Scheduler, primary only:");
+        System.out.print(reports.get(0));
+        System.out.println("Scheduler, replica:");
+        System.out.print(reports.get(1));
+
+        for (File file : workDir.listFiles()) {
+            Files.deleteIfExists(file.toPath());
+        }
+        workDir.delete();
+    }
+
+    private static Result run(StorageProfile profile, boolean scheduled, int users, List<String> popularTitles, int seconds,
+                              int lookupRate, int analysts, List<String> reports) throws InterruptedException {
+        Result result = new Result();
+        AtomicBoolean running = new AtomicBoolean(true);
+        try (DatabaseManager db = new DatabaseManager(profile)) {
+            ScheduledDatabaseManager scheduler = scheduled
+                    ? new ScheduledDatabaseManager(db, new RequestScheduler()) : null;
+            Client client = scheduled ? new ScheduledClient(scheduler) : new SharedLockClient(db);
+            List<Thread> threads = new ArrayList<>();
+
+            for (int a = 0; a < analysts; a++) {
+                String name = "analyst-" + a;
+                int first = a;
+                threads.add(new Thread(() -> {
+                    for (int query = first; running.get(); query++) {
+                        if (client.call(name, Operation.AGGREGATE, query % AGGREGATE_QUERIES)) {
+                            result.aggregates.incrementAndGet();
+                        }
+                    }
+                }, name));
+            }
+            threads.add(new Thread(() -> {
+                String[] titles = {popularTitles.get(0), popularTitles.get(0) + " (Revised)"};
+                int turn = 0;
+                while (running.get()) {
+                    if (client.call("editor", Operation.RENAME, titles)) {
+                        result.renames.incrementAndGet();
+                        turn++;
+                        titles = new String[]{titles[1], titles[0]};
+                    }
+                    sleep(TimeUnit.MILLISECONDS.toNanos(EDIT_INTERVAL_MILLIS));
+                }
+                if (turn % 2 == 1) {
+                    client.call("editor", Operation.RENAME, titles);
+                }
+            }, "editor"));
+            for (Thread thread : threads) {
+                thread.start();
+            }
+
+            Random random = new Random(5);
+            long interval = TimeUnit.SECONDS.toNanos(1) / lookupRate;
+            long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+            Operation[] lookups = {Operation.HABITS, Operation.READERS};
+            int lookup = 0;
+            for (long planned = System.nanoTime(); planned < end && System.nanoTime() < end; planned += interval) {
+                sleep(planned - System.nanoTime());
+                Operation operation = lookups[lookup++ % lookups.length];
+                String argument = operation == Operation.HABITS ? String.valueOf(1 + random.nextInt(users))
+                        : popularTitles.get(1 + random.nextInt(popularTitles.size() - 1));
+                if (client.call("interactive", operation, argument)) {
+                    result.lookups.record(System.nanoTime() - planned);
+                }
+            }
+            running.set(false);
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            if (scheduler != null) {
+                scheduler.close();
+                reports.add(scheduler.getScheduler().report());
+            }
+        }
+        return result;
+    }
+
+    private static void sleep(long nanos) {
+        if (nanos <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private enum Operation {
+        HABITS, READERS, AGGREGATE, RENAME
+    }
+
+    private interface Client {
+        /**
+         * Runs one operation and waits for it; false if it was rejected or failed.
+         */
+        boolean call(String client, Operation operation, Object argument);
+    }
+
+    private static final class SharedLockClient implements Client {
+        private final DatabaseManager db;
+        private final ReentrantLock lock = new ReentrantLock(true);
+
+        SharedLockClient(DatabaseManager db) {
+            this.db = db;
+        }
+
+        @Override
+        public boolean call(String client, Operation operation, Object argument) {
+            lock.lock();
+            try {
+                switch (operation) {
+                    case HABITS:
+                        db.getReadingHabitsForUser((String) argument);
+                        break;
+                    case READERS:
+                        db.getUserCountForBook((String) argument);
+                        break;
+                    case AGGREGATE:
+                        aggregate((Integer) argument);
+                        break;
+                    default:
+                        String[] titles = (String[]) argument;
+                        db.changeBookTitle(titles[0], titles[1]);
+                }
+                return true;
+            } catch (RuntimeException e) {
+                return false;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void aggregate(int query) {
+            switch (query) {
+                case 0:
+                    db.getUsersWithMultipleBooks();
+                    break;
+                case 1:
+                    db.getTotalPagesRead();
+                    break;
+                case 2:
+                    db.getMeanUserAge();
+                    break;
+                default:
+                    db.viewDatabaseStructure();
+            }
+        }
+    }
+
+    private static final class ScheduledClient implements Client {
+        private final ScheduledDatabaseManager db;
+
+        ScheduledClient(ScheduledDatabaseManager db) {
+            this.db = db;
+        }
+
+        @Override
+        public boolean call(String client, Operation operation, Object argument) {
+            try {
+                switch (operation) {
+                    case HABITS:
+                        db.getReadingHabitsForUser(client, (String) argument).get();
+                        break;
+                    case READERS:
+                        db.getUserCountForBook(client, (String) argument).get();
+                        break;
+                    case AGGREGATE:
+                        aggregate(client, (Integer) argument).get();
+                        break;
+                    default:
+                        String[] titles = (String[]) argument;
+                        db.changeBookTitle(client, titles[0], titles[1]).get();
+                }
+                return true;
+            } catch (RejectedExecutionException e) {
+                // Over the rate limit or queue full: back off briefly before the next attempt
+                sleep(TimeUnit.MILLISECONDS.toNanos(10));
+                return false;
+            } catch (ExecutionException e) {
+                return false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        private CompletableFuture<?> aggregate(String client, int query) {
+            switch (query) {
+                case 0:
+                    return db.getUsersWithMultipleBooks(client);
+                case 1:
+                    return db.getTotalPagesRead(client);
+                case 2:
+                    return db.getMeanUserAge(client);
+                default:
+                    return db.viewDatabaseStructure(client);
+            }
+        }
+    }
+
+    private static final class Result {
+        final LatencyRecorder lookups = new LatencyRecorder();
+        final AtomicInteger aggregates = new AtomicInteger();
+        final AtomicInteger renames = new AtomicInteger();
+    }
+}
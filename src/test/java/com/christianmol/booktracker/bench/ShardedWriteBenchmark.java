@@ -0,0 +1,110 @@
+package com.christianmol.booktracker.bench;
+
+import com.christianmol.booktracker.database.ShardedDatabaseManager;
+import com.christianmol.booktracker.database.StorageProfile;
+import com.christianmol.booktracker.model.ReadingHabit;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures write throughput of {@link ShardedDatabaseManager} for several shard counts.
+ *
+ * <p>The batch workload inserts habits from one thread in batches that span all shards,
+ * each batch being one all-or-nothing write. The single-row workload has several client
+ * threads that each commit one habit at a time, which is where separate writer threads
+ * and files can overlap their fsyncs. Every shard count starts from empty files, after an
+ * untimed warm-up run so the first row does not pay for JIT compilation. The shards are
+ * opened with the given storage preset.</p>
+ *
+ * <p>Usage: {@code ShardedWriteBenchmark [--shards=1,2,4,8] [--habits=200000]
+ * [--batch=1000] [--single-rows=4000] [--clients=8] [--profile=read-heavy]}</p>
+ */
+public class ShardedWriteBenchmark {
+    private static final int USERS = 20000;
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = WorkloadGenerator.parseOptions(args);
+        String[] shardCounts = options.getOrDefault("shards", "1,2,4,8").split(",");
+        int habits = Integer.parseInt(options.getOrDefault("habits", "200000"));
+        int batch = Integer.parseInt(options.getOrDefault("batch", "1000"));
+        int singleRows = Integer.parseInt(options.getOrDefault("single-rows", "4000"));
+        int clients = Integer.parseInt(options.getOrDefault("clients", "8"));
+        StorageProfile profile = StorageProfile.preset(options.getOrDefault("profile", "read-heavy"));
+
+        System.out.printf("%d habits in batches of %d; %d single-row commits from %d clients; profile %s; %d CPU(s)%n%n",
+                habits, batch, singleRows, clients, profile.getName(), Runtime.getRuntime().availableProcessors());
+        run(profile, 2, habits, batch, singleRows, clients);
+        System.out.printf("%-7s %16s %20s%n", "shards", "batch rows/s", "single-row commits/s");
+        for (String value : shardCounts) {
+            int shards = Integer.parseInt(value.trim());
+            double[] rates = run(profile, shards, habits, batch, singleRows, clients);
+            System.out.printf("%-7d %16.0f %20.0f%n", shards, rates[0], rates[1]);
+        }
+    }
+
+    private static double[] run(StorageProfile profile, int shards, int habits, int batch, int singleRows,
+                                int clients) throws Exception {
+        File workDir = Files.createTempDirectory("booktracker-shards").toFile();
+        StorageProfile shardProfile = profile.withDatabasePath(new File(workDir, "bench.db").getPath())
+                .withShardCount(shards);
+        try (ShardedDatabaseManager db = new ShardedDatabaseManager(shardProfile)) {
+            double batchRate = batchInserts(db, habits, batch);
+            double singleRate = singleRowCommits(db, habits, singleRows, clients);
+            return new double[] { batchRate, singleRate };
+        } finally {
+            for (File file : workDir.listFiles()) {
+                Files.deleteIfExists(file.toPath());
+            }
+            workDir.delete();
+        }
+    }
+
+    private static double batchInserts(ShardedDatabaseManager db, int habits, int batch) {
+        Random random = new Random(42);
+        long start = System.nanoTime();
+        for (int first = 1; first <= habits; first += batch) {
+            List<ReadingHabit> rows = new ArrayList<>(batch);
+            for (int habitID = first; habitID < first + batch && habitID <= habits; habitID++) {
+                rows.add(habit(habitID, random));
+            }
+            db.addReadingHabits(rows);
+        }
+        return habits / ((System.nanoTime() - start) / 1e9);
+    }
+
+    private static double singleRowCommits(ShardedDatabaseManager db, int firstHabitID, int rows, int clients)
+            throws InterruptedException {
+        AtomicInteger nextHabitID = new AtomicInteger(firstHabitID);
+        int last = firstHabitID + rows;
+        List<Thread> threads = new ArrayList<>();
+        for (int c = 0; c < clients; c++) {
+            Random random = new Random(c);
+            threads.add(new Thread(() -> {
+                for (int habitID = nextHabitID.incrementAndGet(); habitID <= last;
+                     habitID = nextHabitID.incrementAndGet()) {
+                    db.addReadingHabit(habit(habitID, random));
+                }
+            }, "client-" + c));
+        }
+        long start = System.nanoTime();
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return rows / ((System.nanoTime() - start) / 1e9);
+    }
+
+    private static ReadingHabit habit(int habitID, Random random) {
+        return new ReadingHabit(habitID, "Book " + random.nextInt(5000), 1 + random.nextInt(400),
+                LocalDateTime.of(2024, 1, 1, 0, 0).plusMinutes(random.nextInt(525600)), 1 + random.nextInt(USERS));
+    }
+}
@@ -0,0 +1,199 @@
+package com.christianmol.booktracker.bench;
+
+import com.christianmol.booktracker.database.DatabaseManager;
+import com.christianmol.booktracker.database.StorageProfile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Runs the {@code DatabaseManager} workloads under each storage preset and prints the
+ * elapsed time of every workload as a matrix.
+ *
+ * <p>A synthetic dataset is generated once. For every preset it is bulk-loaded into a
+ * fresh database opened with that preset, so page size and journal settings apply
+ * from the start, and then exercised through {@code DatabaseManager}.</p>
+ *
+ * <p>Usage: {@code StorageProfileBenchmark [--users=20000] [--books=5000]
+ * [--habits=200000] [--profiles=default,bulk-import,read-heavy,durable]}</p>
+ */
+public class StorageProfileBenchmark {
+    private static final int POINT_READS = 200;
+    private static final int BOOK_LOOKUPS = 100;
+    private static final int AGGREGATES = 20;
+    private static final int SINGLE_WRITES = 300;
+    private static final int BULK_RENAMES = 500;
+
+    private static final String[] WORKLOADS = {
+            "bulk load", "point reads", "book lookups", "aggregates",
+            "single-row commits", "single deletes", "bulk rename", "bulk delete"
+    };
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = WorkloadGenerator.parseOptions(args);
+        int users = Integer.parseInt(options.getOrDefault("users", "20000"));
+        int books = Integer.parseInt(options.getOrDefault("books", "5000"));
+        int habits = Integer.parseInt(options.getOrDefault("habits", "200000"));
+        String[] presets = options.getOrDefault("profiles", String.join(",", StorageProfile.PRESETS)).split(",");
+
+        File workDir = Files.createTempDirectory("booktracker-profiles").toFile();
+        File dataset = new File(workDir, "dataset.db");
+        try (WorkloadGenerator.Sink sink = WorkloadGenerator.openSink("sqlite", dataset)) {
+            new WorkloadGenerator(users, books, habits, 365, 1.1, 0.8, 42).generate(sink);
+        }
+        System.out.printf("Dataset: %d users, %d books, %d habits in %s%n%n", users, books, habits, workDir);
+
+        Map<String, long[]> results = new LinkedHashMap<>();
+        for (String preset : presets) {
+            File database = new File(workDir, preset + ".db");
+            // Only the pragmas are compared here; ReadReplicaBenchmark covers the replica
+            StorageProfile profile = StorageProfile.preset(preset.trim()).withDatabasePath(database.getPath())
+                    .withReplicaRefreshSeconds(0);
+            results.put(preset, run(profile, dataset, habits));
+            deleteDatabase(database);
+        }
+
+        System.out.printf("%-20s", "workload (ms)");
+        for (String preset : results.keySet()) {
+            System.out.printf(" %12s", preset);
+        }
+        System.out.println();
+        for (int w = 0; w < WORKLOADS.length; w++) {
+            System.out.printf("%-20s", WORKLOADS[w]);
+            for (long[] timings : results.values()) {
+                System.out.printf(" %12.1f", timings[w] / 1e6);
+            }
+            System.out.println();
+        }
+        deleteDatabase(dataset);
+        workDir.delete();
+    }
+
+    private static long[] run(StorageProfile profile, File dataset, int habits) throws SQLException {
+        long[] timings = new long[WORKLOADS.length];
+        long start = System.nanoTime();
+        bulkLoad(profile, dataset);
+        timings[0] = System.nanoTime() - start;
+
+        Random random = new Random(7);
+        List<String> titles = new ArrayList<>();
+        int userCount;
+        try (Connection connection = DriverManager.getConnection(profile.getJdbcUrl());
+             Statement stmt = connection.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("SELECT DISTINCT book FROM ReadingHabit")) {
+                while (rs.next()) {
+                    titles.add(rs.getString(1));
+                }
+            }
+            try (ResultSet rs = stmt.executeQuery("SELECT MAX(userID) FROM User")) {
+                userCount = rs.getInt(1);
+            }
+        }
+
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        }));
+        try (DatabaseManager dbManager = new DatabaseManager(profile)) {
+            dbManager.initializeDatabase();
+
+            start = System.nanoTime();
+            for (int i = 0; i < POINT_READS; i++) {
+                dbManager.getReadingHabitsForUser(String.valueOf(1 + random.nextInt(userCount)));
+            }
+            timings[1] = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < BOOK_LOOKUPS; i++) {
+                dbManager.getUserCountForBook(titles.get(random.nextInt(titles.size())));
+            }
+            timings[2] = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < AGGREGATES; i++) {
+                dbManager.getTotalPagesRead();
+                dbManager.getMeanUserAge();
+                dbManager.getUsersWithMultipleBooks();
+            }
+            timings[3] = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < SINGLE_WRITES; i++) {
+                dbManager.addUser("Benchmark User " + i, 20 + random.nextInt(50), "Female");
+            }
+            timings[4] = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < SINGLE_WRITES; i++) {
+                dbManager.deleteReadingHabit(1 + random.nextInt(habits));
+            }
+            timings[5] = System.nanoTime() - start;
+
+            Map<String, String> renames = new LinkedHashMap<>();
+            for (int i = 0; i < BULK_RENAMES && i < titles.size(); i++) {
+                renames.put(titles.get(i), titles.get(i) + " Revised");
+            }
+            start = System.nanoTime();
+            dbManager.bulkChangeBookTitles(renames, false);
+            timings[6] = System.nanoTime() - start;
+
+            List<Integer> deletes = new ArrayList<>();
+            for (int id = 1; id <= habits; id += 10) {
+                deletes.add(id);
+            }
+            start = System.nanoTime();
+            dbManager.bulkDeleteReadingHabits(deletes, false);
+            timings[7] = System.nanoTime() - start;
+        } finally {
+            System.setOut(console);
+        }
+        return timings;
+    }
+
+    /**
+     * Copies the dataset into a new database over a connection configured by the profile.
+     */
+    private static void bulkLoad(StorageProfile profile, File dataset) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(profile.getJdbcUrl())) {
+            profile.apply(connection);
+            try (Statement stmt = connection.createStatement()) {
+                stmt.execute("ATTACH DATABASE '" + dataset.getPath().replace("'", "''") + "' AS source");
+                connection.setAutoCommit(false);
+                stmt.execute("CREATE TABLE User (userID INTEGER PRIMARY KEY, age INTEGER, gender TEXT, Name TEXT)");
+                stmt.execute("CREATE TABLE ReadingHabit (habitID INTEGER PRIMARY KEY, book TEXT, pagesRead INTEGER,"
+                        + " submissionMoment DATETIME, user INTEGER, FOREIGN KEY (user) REFERENCES User(userID))");
+                stmt.execute("INSERT INTO User SELECT userID, age, gender, Name FROM source.User");
+                stmt.execute("INSERT INTO ReadingHabit SELECT habitID, book, pagesRead, submissionMoment, user"
+                        + " FROM source.ReadingHabit");
+                connection.commit();
+                connection.setAutoCommit(true);
+                stmt.execute("DETACH DATABASE source");
+            }
+        }
+    }
+
+    private static void deleteDatabase(File database) throws IOException {
+        for (String suffix : new String[]{"", "-wal", "-shm", "-journal"}) {
+            Files.deleteIfExists(new File(database.getPath() + suffix).toPath());
+        }
+    }
+}
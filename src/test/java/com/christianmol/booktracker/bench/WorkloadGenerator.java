@@ -0,0 +1,459 @@
+package com.christianmol.booktracker.bench;
+
+import com.christianmol.booktracker.database.Schema;
+
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Generates a synthetic reading habit dataset at a configurable scale.
+ *
+ * <p>Book popularity and user activity both follow a Zipf distribution, so a few books
+ * and readers account for most habits as in real usage. Submission times are spread
+ * over the requested number of days before 2025-01-01 with an evening peak, so the same
+ * seed always gives the same dataset. The output can be a SQLite database with the
+ * application's schema, an xlsx workbook in the layout the importer reads, or a pair of
+ * CSV files. For xlsx, {@code --dirty} damages that fraction of the
+ * rows (blank or mistyped cells) to exercise the importer's validation.</p>
+ *
+ * <p>Usage: {@code WorkloadGenerator --out=<path> [--format=sqlite|xlsx|csv]
+ * [--users=10000] [--books=5000] [--habits=200000] [--days=365] [--book-skew=1.1]
+ * [--user-skew=0.8] [--seed=42] [--dirty=0.0]}</p>
+ */
+public class WorkloadGenerator {
+    private static final int XLSX_MAX_ROWS = 1_048_575;
+    private static final int SQLITE_BATCH_SIZE = 10_000;
+    private static final String[] GENDERS = {"Male", "Female", "Other"};
+    // Submission times end here rather than at the current time, so a seed always yields the same data
+    private static final LocalDateTime END = LocalDateTime.of(2025, 1, 1, 0, 0);
+    // The format SQLite's datetime() produces and the application reads back
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final String[] ADJECTIVES = {
+            "Silent", "Hidden", "Broken", "Golden", "Last", "Crimson", "Distant", "Forgotten",
+            "Burning", "Quiet", "Endless", "Wild", "Frozen", "Secret", "Lost", "Midnight"
+    };
+    private static final String[] NOUNS = {
+            "River", "Garden", "Empire", "Library", "Mountain", "Kingdom", "Harbor", "Letter",
+            "Winter", "Orchard", "Station", "Island", "Machine", "Forest", "Sea", "Archive"
+    };
+    // Relative weight of each hour of the day; people mostly log reading in the evening
+    private static final double[] HOUR_WEIGHTS = {
+            1, 0.5, 0.3, 0.2, 0.2, 0.3, 0.8, 1.5, 2, 2, 2, 2,
+            2.5, 2.5, 2, 2, 2.5, 3, 4, 5, 6, 6, 4.5, 2.5
+    };
+
+    private final int users;
+    private final int books;
+    private final int habits;
+    private final int days;
+    private final double bookSkew;
+    private final double userSkew;
+    private final long seed;
+
+    public WorkloadGenerator(int users, int books, int habits, int days, double bookSkew, double userSkew, long seed) {
+        if (users < 1 || books < 1 || habits < 0 || days < 1) {
+            throw new IllegalArgumentException("Users, books and days must be positive and habits non-negative");
+        }
+        this.users = users;
+        this.books = books;
+        this.habits = habits;
+        this.days = days;
+        this.bookSkew = bookSkew;
+        this.userSkew = userSkew;
+        this.seed = seed;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        String out = options.get("out");
+        if (out == null) {
+            System.err.println("Usage: WorkloadGenerator --out=<path> [--format=sqlite|xlsx|csv] [--users=N] [--books=N]"
+                    + " [--habits=N] [--days=N] [--book-skew=S] [--user-skew=S] [--seed=N] [--dirty=F]");
+            System.exit(1);
+        }
+        WorkloadGenerator generator = new WorkloadGenerator(
+                Integer.parseInt(options.getOrDefault("users", "10000")),
+                Integer.parseInt(options.getOrDefault("books", "5000")),
+                Integer.parseInt(options.getOrDefault("habits", "200000")),
+                Integer.parseInt(options.getOrDefault("days", "365")),
+                Double.parseDouble(options.getOrDefault("book-skew", "1.1")),
+                Double.parseDouble(options.getOrDefault("user-skew", "0.8")),
+                Long.parseLong(options.getOrDefault("seed", "42")));
+
+        String format = options.getOrDefault("format", "sqlite");
+        long start = System.nanoTime();
+        double dirty = Double.parseDouble(options.getOrDefault("dirty", "0"));
+        try (Sink sink = openSink(format, new File(out), dirty)) {
+            generator.generate(sink);
+        }
+        System.out.printf("Generated %d users, %d books and %d habits as %s in %.1f s%n",
+                generator.users, generator.books, generator.habits, format, (System.nanoTime() - start) / 1e9);
+    }
+
+    static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument: " + arg);
+            }
+            int equals = arg.indexOf('=');
+            if (equals < 0) {
+                options.put(arg.substring(2), "true");
+            } else {
+                options.put(arg.substring(2, equals), arg.substring(equals + 1));
+            }
+        }
+        return options;
+    }
+
+    static Sink openSink(String format, File out) throws IOException, SQLException {
+        return openSink(format, out, 0);
+    }
+
+    static Sink openSink(String format, File out, double dirtyFraction) throws IOException, SQLException {
+        if (dirtyFraction < 0 || dirtyFraction > 1) {
+            throw new IllegalArgumentException("Dirty fraction must be between 0 and 1");
+        }
+        if (dirtyFraction > 0 && !"xlsx".equals(format)) {
+            throw new IllegalArgumentException("Dirty rows are only supported for xlsx");
+        }
+        switch (format) {
+            case "sqlite":
+                return new SqliteSink(out);
+            case "xlsx":
+                return new XlsxSink(out, dirtyFraction);
+            case "csv":
+                return new CsvSink(out);
+            default:
+                throw new IllegalArgumentException("Unknown format: " + format);
+        }
+    }
+
+    /**
+     * Writes all users followed by all habits to the sink. Habit and user IDs start at 1.
+     */
+    public void generate(Sink sink) throws IOException, SQLException {
+        Random random = new Random(seed);
+        for (int userID = 1; userID <= users; userID++) {
+            int age = Math.max(13, Math.min(90, (int) Math.round(35 + random.nextGaussian() * 14)));
+            double g = random.nextDouble();
+            String gender = g < 0.48 ? GENDERS[0] : g < 0.96 ? GENDERS[1] : GENDERS[2];
+            sink.user(userID, age, gender);
+        }
+
+        String[] titles = bookTitles(random);
+        ZipfSampler bookSampler = new ZipfSampler(books, bookSkew);
+        ZipfSampler userSampler = new ZipfSampler(users, userSkew);
+        // Shuffle ranks so the most active users are not simply the lowest IDs
+        int[] userByRank = shuffledIdentity(users, random);
+        double[] hourCdf = cumulative(HOUR_WEIGHTS);
+        long end = END.toEpochSecond(ZoneOffset.UTC);
+        long firstDay = end / 86400 - days;
+
+        for (int habitID = 1; habitID <= habits; habitID++) {
+            int userID = userByRank[userSampler.sample(random)] + 1;
+            String book = titles[bookSampler.sample(random)];
+            // Log-normal session length: median around 30 pages with a long tail
+            int pagesRead = (int) Math.max(1, Math.min(1000, Math.round(Math.exp(3.4 + 0.7 * random.nextGaussian()))));
+            long day = firstDay + random.nextInt(days);
+            int hour = search(hourCdf, random.nextDouble());
+            long second = day * 86400 + hour * 3600L + random.nextInt(3600);
+            sink.habit(habitID, userID, pagesRead, book, LocalDateTime.ofEpochSecond(second, 0, ZoneOffset.UTC));
+        }
+    }
+
+    private String[] bookTitles(Random random) {
+        String[] titles = new String[books];
+        for (int i = 0; i < books; i++) {
+            // The number keeps titles unique once the word combinations run out
+            titles[i] = "The " + ADJECTIVES[random.nextInt(ADJECTIVES.length)] + " "
+                    + NOUNS[random.nextInt(NOUNS.length)] + " " + (i + 1);
+        }
+        return titles;
+    }
+
+    private static int[] shuffledIdentity(int n, Random random) {
+        int[] values = new int[n];
+        for (int i = 0; i < n; i++) {
+            values[i] = i;
+        }
+        for (int i = n - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = values[i];
+            values[i] = values[j];
+            values[j] = tmp;
+        }
+        return values;
+    }
+
+    private static double[] cumulative(double[] weights) {
+        double[] cdf = new double[weights.length];
+        double total = 0;
+        for (int i = 0; i < weights.length; i++) {
+            total += weights[i];
+            cdf[i] = total;
+        }
+        for (int i = 0; i < cdf.length; i++) {
+            cdf[i] /= total;
+        }
+        return cdf;
+    }
+
+    private static int search(double[] cdf, double u) {
+        int index = Arrays.binarySearch(cdf, u);
+        return Math.min(cdf.length - 1, index >= 0 ? index : -index - 1);
+    }
+
+    /**
+     * Samples ranks 0..n-1 where rank k has probability proportional to 1/(k+1)^skew,
+     * using a precomputed cumulative table and binary search.
+     */
+    static final class ZipfSampler {
+        private final double[] cdf;
+
+        ZipfSampler(int n, double skew) {
+            double[] weights = new double[n];
+            for (int k = 0; k < n; k++) {
+                weights[k] = 1.0 / Math.pow(k + 1, skew);
+            }
+            cdf = cumulative(weights);
+        }
+
+        int sample(Random random) {
+            return search(cdf, random.nextDouble());
+        }
+    }
+
+    /**
+     * Destination for generated rows.
+     */
+    public interface Sink extends Closeable {
+        void user(int userID, int age, String gender) throws IOException, SQLException;
+
+        void habit(int habitID, int userID, int pagesRead, String book, LocalDateTime submissionMoment)
+                throws IOException, SQLException;
+    }
+
+    private static final class SqliteSink implements Sink {
+        private final Connection connection;
+        private final PreparedStatement insertUser;
+        private final PreparedStatement insertHabit;
+        private int batched;
+
+        SqliteSink(File file) throws SQLException {
+            if (file.exists() && !file.delete()) {
+                throw new SQLException("Cannot replace existing database " + file);
+            }
+            connection = DriverManager.getConnection("jdbc:sqlite:" + file.getPath());
+            try (Statement stmt = connection.createStatement()) {
+                // Nothing to protect while generating; a failed run is simply regenerated
+                stmt.execute("PRAGMA journal_mode=OFF");
+                stmt.execute("PRAGMA synchronous=OFF");
+                stmt.execute(Schema.CREATE_USER_TABLE);
+                stmt.execute(Schema.CREATE_READING_HABIT_TABLE);
+            }
+            connection.setAutoCommit(false);
+            insertUser = connection.prepareStatement("INSERT INTO User(userID, age, gender, Name) VALUES(?, ?, ?, ?)");
+            insertHabit = connection.prepareStatement(
+                    "INSERT INTO ReadingHabit(habitID, book, pagesRead, submissionMoment, user) VALUES(?, ?, ?, ?, ?)");
+        }
+
+        @Override
+        public void user(int userID, int age, String gender) throws SQLException {
+            insertUser.setInt(1, userID);
+            insertUser.setInt(2, age);
+            insertUser.setString(3, gender);
+            insertUser.setString(4, "User " + userID);
+            insertUser.addBatch();
+            flushIfFull(insertUser);
+        }
+
+        @Override
+        public void habit(int habitID, int userID, int pagesRead, String book, LocalDateTime submissionMoment)
+                throws SQLException {
+            insertHabit.setInt(1, habitID);
+            insertHabit.setString(2, book);
+            insertHabit.setInt(3, pagesRead);
+            insertHabit.setString(4, DATE_FORMAT.format(submissionMoment));
+            insertHabit.setInt(5, userID);
+            insertHabit.addBatch();
+            flushIfFull(insertHabit);
+        }
+
+        private void flushIfFull(PreparedStatement statement) throws SQLException {
+            if (++batched % SQLITE_BATCH_SIZE == 0) {
+                statement.executeBatch();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                insertUser.executeBatch();
+                insertHabit.executeBatch();
+                connection.commit();
+                insertUser.close();
+                insertHabit.close();
+                connection.close();
+            } catch (SQLException e) {
+                throw new IOException("Failed to finish generated database", e);
+            }
+        }
+    }
+
+    /**
+     * Streams rows into a workbook with the habit sheet first and a "User" sheet, which
+     * is the layout the importer expects. Only a window of rows is kept in memory.
+     */
+    private static final class XlsxSink implements Sink {
+        private final File file;
+        private final SXSSFWorkbook workbook = new SXSSFWorkbook(1000);
+        private final Sheet habitSheet;
+        private final Sheet userSheet;
+        private final CellStyle dateStyle;
+        private final double dirtyFraction;
+        // Separate from the data generator so dirty output has the same rows otherwise
+        private final Random dirtyRandom = new Random(7);
+        private int habitRow;
+        private int userRow;
+
+        XlsxSink(File file, double dirtyFraction) {
+            this.file = file;
+            this.dirtyFraction = dirtyFraction;
+            habitSheet = workbook.createSheet("ReadingHabit");
+            userSheet = workbook.createSheet("User");
+            dateStyle = workbook.createCellStyle();
+            dateStyle.setDataFormat(workbook.getCreationHelper().createDataFormat().getFormat("yyyy-mm-dd hh:mm:ss"));
+            header(habitSheet, "habitID", "userID", "pagesRead", "book", "submissionMoment");
+            header(userSheet, "userID", "age", "gender");
+        }
+
+        private static void header(Sheet sheet, String... names) {
+            Row row = sheet.createRow(0);
+            for (int i = 0; i < names.length; i++) {
+                row.createCell(i).setCellValue(names[i]);
+            }
+        }
+
+        @Override
+        public void user(int userID, int age, String gender) throws IOException {
+            if (userRow == XLSX_MAX_ROWS) {
+                throw new IOException("xlsx supports at most " + XLSX_MAX_ROWS + " users; use sqlite or csv");
+            }
+            Row row = userSheet.createRow(++userRow);
+            row.createCell(0).setCellValue(userID);
+            row.createCell(1).setCellValue(age);
+            row.createCell(2).setCellValue(gender);
+            if (dirtyFraction > 0 && dirtyRandom.nextDouble() < dirtyFraction) {
+                if (dirtyRandom.nextBoolean()) {
+                    row.getCell(1).setCellValue("unknown");
+                } else {
+                    row.removeCell(row.getCell(2));
+                }
+            }
+        }
+
+        @Override
+        public void habit(int habitID, int userID, int pagesRead, String book, LocalDateTime submissionMoment)
+                throws IOException {
+            if (habitRow == XLSX_MAX_ROWS) {
+                throw new IOException("xlsx supports at most " + XLSX_MAX_ROWS + " habits; use sqlite or csv");
+            }
+            Row row = habitSheet.createRow(++habitRow);
+            row.createCell(0).setCellValue(habitID);
+            row.createCell(1).setCellValue(userID);
+            row.createCell(2).setCellValue(pagesRead);
+            row.createCell(3).setCellValue(book);
+            row.createCell(4).setCellValue(submissionMoment);
+            row.getCell(4).setCellStyle(dateStyle);
+            if (dirtyFraction > 0 && dirtyRandom.nextDouble() < dirtyFraction) {
+                switch (dirtyRandom.nextInt(5)) {
+                    case 0:
+                        row.removeCell(row.getCell(0));
+                        break;
+                    case 1:
+                        row.getCell(1).setCellValue(-userID);
+                        break;
+                    case 2:
+                        row.getCell(2).setCellValue("n/a");
+                        break;
+                    case 3:
+                        row.removeCell(row.getCell(3));
+                        break;
+                    default:
+                        row.getCell(4).setCellValue("yesterday");
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try (OutputStream out = new FileOutputStream(file)) {
+                workbook.write(out);
+            } finally {
+                workbook.dispose();
+                workbook.close();
+            }
+        }
+    }
+
+    /**
+     * Writes {@code <name>-users.csv} and {@code <name>-habits.csv} next to the given path.
+     */
+    private static final class CsvSink implements Sink {
+        private final BufferedWriter users;
+        private final BufferedWriter habits;
+
+        CsvSink(File file) throws IOException {
+            String base = file.getPath().endsWith(".csv") ? file.getPath().substring(0, file.getPath().length() - 4) : file.getPath();
+            users = Files.newBufferedWriter(new File(base + "-users.csv").toPath(), StandardCharsets.UTF_8);
+            habits = Files.newBufferedWriter(new File(base + "-habits.csv").toPath(), StandardCharsets.UTF_8);
+            users.write("userID,age,gender\n");
+            habits.write("habitID,userID,pagesRead,book,submissionMoment\n");
+        }
+
+        @Override
+        public void user(int userID, int age, String gender) throws IOException {
+            users.write(userID + "," + age + "," + gender + "\n");
+        }
+
+        @Override
+        public void habit(int habitID, int userID, int pagesRead, String book, LocalDateTime submissionMoment)
+                throws IOException {
+            // Generated titles never contain commas or quotes
+            habits.write(habitID + "," + userID + "," + pagesRead + "," + book + "," + DATE_FORMAT.format(submissionMoment) + "\n");
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                users.close();
+            } finally {
+                habits.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.christianmol.booktracker.changelog;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Simulates crashes in the middle of a change log append: a torn record is one whose
+ * length was already written but whose body or checksum was not.
+ */
+class ChangeLogRecoveryTest {
+    private static final int SEGMENT_SIZE = 4096;
+    private static final int MAX_SEGMENTS = 3;
+    private static final int RECORDS = 1000;
+
+    @TempDir
+    File directory;
+
+    private long end;
+
+    @BeforeEach
+    void writeRecords() {
+        try (ChangeLog log = new ChangeLog(directory, SEGMENT_SIZE, MAX_SEGMENTS)) {
+            for (int sequence = 1; sequence <= RECORDS; sequence++) {
+                log.append(sequence, new ChangeEvent.HabitDeleted(System.currentTimeMillis(), sequence));
+            }
+            log.force();
+            end = log.getEndOffset();
+        }
+    }
+
+    @Test
+    void keepsOnlyTheNewestSegments() {
+        assertTrue(segmentFiles().length <= MAX_SEGMENTS, "segments kept: " + segmentFiles().length);
+        try (ChangeLog log = new ChangeLog(directory, SEGMENT_SIZE, MAX_SEGMENTS)) {
+            List<ChangeLog.Entry> entries = log.read(0);
+            assertTrue(entries.size() > 0 && entries.size() < RECORDS, "records left: " + entries.size());
+            assertEquals(RECORDS, entries.get(entries.size() - 1).getSequence());
+        }
+    }
+
+    @Test
+    void discardsRecordWithLengthButNoBody() throws IOException {
+        tearLastRecord(false);
+        assertRecoveredAtEnd();
+    }
+
+    @Test
+    void discardsRecordWithBodyButWrongChecksum() throws IOException {
+        tearLastRecord(true);
+        assertRecoveredAtEnd();
+    }
+
+    @Test
+    void subscriberReplaysRetainedRecordsBeforeLiveOnes() throws IOException {
+        tearLastRecord(true);
+        try (ChangeLog log = new ChangeLog(directory, SEGMENT_SIZE, MAX_SEGMENTS)) {
+            int retained = log.read(0).size();
+            List<Long> replayed = new ArrayList<>();
+            ChangeLog.Subscription subscription = log.subscribe(0, entry -> replayed.add(entry.getSequence()));
+            assertEquals(retained, replayed.size());
+            assertEquals(RECORDS, (long) replayed.get(replayed.size() - 1));
+
+            log.append(RECORDS + 1, new ChangeEvent.HabitDeleted(System.currentTimeMillis(), RECORDS + 1));
+            assertEquals(RECORDS + 1, (long) replayed.get(replayed.size() - 1));
+            assertEquals(log.getEndOffset(), subscription.getPosition());
+            subscription.close();
+        }
+    }
+
+    /**
+     * Reopens the log and checks that the torn record is gone and the next append lands
+     * where it started.
+     */
+    private void assertRecoveredAtEnd() {
+        try (ChangeLog log = new ChangeLog(directory, SEGMENT_SIZE, MAX_SEGMENTS)) {
+            assertEquals(end, log.getEndOffset());
+            assertEquals(RECORDS, log.getLastSequence());
+            assertEquals(end, log.append(RECORDS + 1, new ChangeEvent.HabitDeleted(System.currentTimeMillis(), 1)));
+        }
+    }
+
+    private void tearLastRecord(boolean withBody) throws IOException {
+        File[] segments = segmentFiles();
+        File newest = segments[segments.length - 1];
+        long base = Long.parseLong(newest.getName().replace(".log", ""));
+        try (RandomAccessFile file = new RandomAccessFile(newest, "rw")) {
+            file.seek(end - base);
+            file.writeInt(64);
+            file.writeInt(withBody ? 0x12345678 : 0);
+            if (withBody) {
+                file.writeLong(RECORDS + 1);
+            }
+        }
+    }
+
+    private File[] segmentFiles() {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(".log"));
+        Arrays.sort(files);
+        return files;
+    }
+}
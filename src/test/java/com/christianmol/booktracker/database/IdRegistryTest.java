@@ -0,0 +1,63 @@
+package com.christianmol.booktracker.database;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IdRegistryTest {
+
+    @Test
+    void loadsExistingIdsFromBothTables() throws SQLException {
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+             Statement stmt = connection.createStatement()) {
+            stmt.execute(Schema.CREATE_USER_TABLE);
+            stmt.execute(Schema.CREATE_READING_HABIT_TABLE);
+            stmt.execute("INSERT INTO User(userID, age, gender, Name) VALUES (1, 30, 'f', 'User 1'), "
+                    + "(2, 40, 'm', 'User 2'), (100000, 50, 'f', 'User 100000')");
+            stmt.execute("INSERT INTO ReadingHabit(habitID, book, pagesRead, submissionMoment, user) VALUES "
+                    + "(10, 'Dune', 100, '2024-01-01 10:00:00', 1), (11, 'Emma', 50, '2024-01-02 10:00:00', 2)");
+
+            IdRegistry registry = IdRegistry.load(connection);
+
+            assertEquals(3, registry.getUserCount());
+            assertEquals(2, registry.getHabitCount());
+            assertTrue(registry.containsUser(1));
+            assertTrue(registry.containsUser(100000));
+            assertFalse(registry.containsUser(3));
+            assertTrue(registry.containsHabit(10));
+            // User and habit IDs are separate sets
+            assertFalse(registry.containsHabit(1));
+            assertFalse(registry.containsUser(10));
+        }
+    }
+
+    @Test
+    void tracksAddedAndRemovedIds() throws SQLException {
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+             Statement stmt = connection.createStatement()) {
+            stmt.execute(Schema.CREATE_USER_TABLE);
+            stmt.execute(Schema.CREATE_READING_HABIT_TABLE);
+            IdRegistry registry = IdRegistry.load(connection);
+            assertEquals(0, registry.getUserCount());
+
+            registry.addUser(5);
+            registry.addHabit(7);
+            registry.addHabit(8);
+            registry.removeHabit(7);
+            registry.removeHabit(9);
+
+            assertTrue(registry.containsUser(5));
+            assertFalse(registry.containsHabit(7));
+            assertTrue(registry.containsHabit(8));
+            assertEquals(1, registry.getHabitCount());
+            assertTrue(registry.sizeInBytes() > 0);
+        }
+    }
+}
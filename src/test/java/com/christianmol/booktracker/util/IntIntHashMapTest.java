@@ -0,0 +1,113 @@
+package com.christianmol.booktracker.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IntIntHashMapTest {
+
+    @Test
+    void missingKeysReadAsZero() {
+        IntIntHashMap map = new IntIntHashMap();
+        assertTrue(map.isEmpty());
+        assertFalse(map.containsKey(0));
+        assertEquals(0, map.get(12));
+        assertEquals(0, map.remove(12));
+    }
+
+    @Test
+    void putAddToAndRemove() {
+        IntIntHashMap map = new IntIntHashMap();
+        map.put(0, 5);
+        map.put(0, 6);
+        assertEquals(6, map.get(0));
+        assertEquals(1, map.size());
+
+        assertEquals(3, map.addTo(9, 3));
+        assertEquals(1, map.addTo(9, -2));
+        assertEquals(2, map.size());
+
+        assertEquals(1, map.remove(9));
+        assertFalse(map.containsKey(9));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    void rejectsNegativeKeys() {
+        IntIntHashMap map = new IntIntHashMap();
+        assertThrows(IllegalArgumentException.class, () -> map.put(-1, 1));
+        assertThrows(IllegalArgumentException.class, () -> map.get(-1));
+    }
+
+    @Test
+    void removeKeepsCollidingKeysReachable() {
+        IntIntHashMap map = new IntIntHashMap(4);
+        // Keys that share a home slot in a map that stays at its initial 8 slots
+        List<Integer> colliding = new ArrayList<>();
+        for (int key = 0; colliding.size() < 4; key++) {
+            if ((IntIntHashMap.mix(key) & 7) == 3) {
+                colliding.add(key);
+            }
+        }
+        for (int key : colliding) {
+            map.put(key, key + 1);
+        }
+        map.remove(colliding.get(0));
+        map.remove(colliding.get(2));
+        assertEquals(colliding.get(1) + 1, map.get(colliding.get(1)));
+        assertEquals(colliding.get(3) + 1, map.get(colliding.get(3)));
+        assertFalse(map.containsKey(colliding.get(0)));
+        assertFalse(map.containsKey(colliding.get(2)));
+        assertEquals(2, map.size());
+    }
+
+    @Test
+    void matchesHashMapUnderRandomUpdates() {
+        Random random = new Random(11);
+        IntIntHashMap map = new IntIntHashMap();
+        Map<Integer, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 100_000; i++) {
+            int key = random.nextInt(5_000);
+            int operation = random.nextInt(4);
+            if (operation == 0) {
+                Integer removed = expected.remove(key);
+                assertEquals(removed == null ? 0 : removed, map.remove(key));
+            } else if (operation == 1) {
+                expected.put(key, i);
+                map.put(key, i);
+            } else {
+                assertEquals((int) expected.merge(key, 1, Integer::sum), map.addTo(key, 1));
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        Map<Integer, Integer> seen = new HashMap<>();
+        map.forEach(seen::put);
+        assertEquals(expected, seen);
+    }
+
+    @Test
+    void addAllSumsValues() {
+        IntIntHashMap map = new IntIntHashMap();
+        map.put(1, 10);
+        map.put(2, 20);
+        IntIntHashMap other = new IntIntHashMap();
+        other.put(2, 5);
+        other.put(3, 7);
+
+        map.addAll(other);
+
+        assertEquals(10, map.get(1));
+        assertEquals(25, map.get(2));
+        assertEquals(7, map.get(3));
+        assertEquals(3, map.size());
+    }
+}
@@ -0,0 +1,125 @@
+package com.christianmol.booktracker.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RoaringIntSetTest {
+
+    @Test
+    void addContainsAndRemove() {
+        RoaringIntSet set = new RoaringIntSet();
+        assertTrue(set.isEmpty());
+
+        assertTrue(set.add(42));
+        assertFalse(set.add(42));
+        assertTrue(set.contains(42));
+        assertFalse(set.contains(43));
+        assertEquals(1, set.size());
+
+        assertTrue(set.remove(42));
+        assertFalse(set.remove(42));
+        assertFalse(set.contains(42));
+        assertTrue(set.isEmpty());
+    }
+
+    @Test
+    void keepsValuesOfEveryContainerApart() {
+        RoaringIntSet set = new RoaringIntSet();
+        int[] values = {0, 65535, 65536, Integer.MAX_VALUE, -1, Integer.MIN_VALUE};
+        for (int value : values) {
+            assertTrue(set.add(value));
+        }
+        for (int value : values) {
+            assertTrue(set.contains(value), "missing " + value);
+        }
+        assertFalse(set.contains(1));
+        assertFalse(set.contains(65537));
+        assertFalse(set.contains(-2));
+        assertEquals(values.length, set.size());
+    }
+
+    @Test
+    void switchesToBitmapAndBackAtTheArrayLimit() {
+        RoaringIntSet set = new RoaringIntSet();
+        // Every other value, so a full container cannot be mistaken for a range
+        for (int i = 0; i < 4096; i++) {
+            set.add(i * 2);
+        }
+        // The 4097th value turns the container into a bitmap
+        assertTrue(set.add(1));
+        assertFalse(set.add(1));
+        assertFalse(set.remove(3));
+        for (int i = 0; i < 8192; i++) {
+            assertEquals(i % 2 == 0 || i == 1, set.contains(i), "value " + i);
+        }
+
+        // Dropping back to 4096 values turns it into an array again
+        assertTrue(set.remove(1));
+        assertFalse(set.remove(1));
+        assertTrue(set.add(3));
+        assertTrue(set.remove(3));
+        for (int i = 0; i < 8192; i++) {
+            assertEquals(i % 2 == 0, set.contains(i), "value " + i);
+        }
+        assertEquals(4096, set.size());
+    }
+
+    @Test
+    void findsContainersThroughTheDirectory() {
+        RoaringIntSet set = new RoaringIntSet();
+        // Enough containers for the directory, added in reverse so inserts shift it
+        for (int high = 199; high >= 0; high--) {
+            set.add(high << 16 | 7);
+        }
+        for (int high = 0; high < 200; high += 2) {
+            assertTrue(set.remove(high << 16 | 7));
+        }
+        for (int high = 0; high < 200; high++) {
+            assertEquals(high % 2 == 1, set.contains(high << 16 | 7), "container " + high);
+            assertFalse(set.contains(high << 16 | 8));
+        }
+        assertTrue(set.add(4 << 16 | 7));
+        assertTrue(set.contains(4 << 16 | 7));
+        assertEquals(101, set.size());
+    }
+
+    @Test
+    void matchesHashSetUnderRandomUpdates() {
+        Random random = new Random(7);
+        RoaringIntSet set = new RoaringIntSet();
+        Set<Integer> expected = new HashSet<>();
+        for (int i = 0; i < 200_000; i++) {
+            // A few dense containers, so arrays and bitmaps both see adds and removes
+            int value = random.nextInt(4) << 16 | random.nextInt(12_000);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(value), set.remove(value));
+            } else {
+                assertEquals(expected.add(value), set.add(value));
+            }
+        }
+        assertEquals(expected.size(), set.size());
+        for (int value = 0; value < 4 << 16; value++) {
+            assertEquals(expected.contains(value), set.contains(value));
+        }
+    }
+
+    @Test
+    void clearRemovesEverything() {
+        RoaringIntSet set = new RoaringIntSet();
+        for (int i = 0; i < 100_000; i += 3) {
+            set.add(i);
+        }
+        set.clear();
+        assertTrue(set.isEmpty());
+        assertFalse(set.contains(0));
+        assertTrue(set.add(0));
+        assertEquals(1, set.size());
+    }
+}